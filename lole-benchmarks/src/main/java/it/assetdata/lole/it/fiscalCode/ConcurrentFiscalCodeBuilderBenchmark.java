@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.valid.Conditions;
+
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link ConcurrentFiscalCodeBuilder} benchmarks.<br/>
+ * One builder is shared by every benchmark thread, so running with more
+ * threads shows how it scales.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+public class ConcurrentFiscalCodeBuilderBenchmark {
+	
+	/**
+	 * Per thread position in the shared people.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		
+		/**
+		 * Next person index.
+		 */
+		private int index;
+		
+		/**
+		 * @param size
+		 *            number of people, a power of two
+		 * @return next person index
+		 */
+		int next(final int size) {
+			final int i = index;
+			index = (i + 1) & (size - 1);
+			return i;
+		}
+		
+	}
+	
+	/**
+	 * Birth dates of {@link #population}.
+	 */
+	private LocalDate[] birthDates;
+	
+	/**
+	 * Shared builder under benchmark.
+	 */
+	private ConcurrentFiscalCodeBuilder concurrentFiscalCodeBuilder;
+	
+	/**
+	 * Conditions check utility.
+	 */
+	private Conditions conditions;
+	
+	/**
+	 * People to build codes of.
+	 */
+	private Population population;
+	
+	/**
+	 * Benchmarks {@link ConcurrentFiscalCodeBuilder#build(LocalDate, Conditions, String, String, it.assetdata.lole.it.SexIt, String)}.
+	 * 
+	 * @param cursor
+	 *            per thread position
+	 * @return built code
+	 */
+	@Benchmark
+	public FiscalCode build(final Cursor cursor) {
+		final int i = cursor.next(population.size());
+		return concurrentFiscalCodeBuilder.build(birthDates[i], conditions, population.name(i), population.placeCode(i), population.sex(i), population.surname(i));
+	}
+	
+	/**
+	 * Creates the builder and the people.
+	 */
+	@Setup
+	public void setUp() {
+		concurrentFiscalCodeBuilder = BenchmarkFixtures.newConcurrentFiscalCodeBuilder();
+		conditions = BenchmarkFixtures.newConditions();
+		population = new Population(14, 42L);
+		birthDates = new LocalDate[population.size()];
+		for (int i = 0; i < population.size(); i++) {
+			birthDates[i] = new LocalDate(population.year(i), population.month(i), population.day(i));
+		}
+	}
+	
+}
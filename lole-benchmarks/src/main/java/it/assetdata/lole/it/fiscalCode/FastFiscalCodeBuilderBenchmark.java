@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.valid.Conditions;
+
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FastFiscalCodeBuilder} benchmarks.<br/>
+ * Every thread owns its builder, as {@link FastFiscalCodeBuilder} cannot be
+ * shared.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class FastFiscalCodeBuilderBenchmark {
+	
+	/**
+	 * Birth dates of {@link #population}.
+	 */
+	private LocalDate[] birthDates;
+	
+	/**
+	 * Destination of byte encoding.
+	 */
+	private byte[] bytes;
+	
+	/**
+	 * Conditions check utility.
+	 */
+	private Conditions conditions;
+	
+	/**
+	 * Next person index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Builder under benchmark.
+	 */
+	private FastFiscalCodeBuilder fastFiscalCodeBuilder;
+	
+	/**
+	 * People to build codes of.
+	 */
+	private Population population;
+	
+	/**
+	 * Destination of char encoding and of name or surname encoding.
+	 */
+	private char[] value;
+	
+	/**
+	 * Benchmarks {@link FastFiscalCodeBuilder#build(LocalDate, Conditions, String, String, it.assetdata.lole.it.SexIt, String)}.
+	 * 
+	 * @return built code
+	 */
+	@Benchmark
+	public FiscalCode build() {
+		final int i = next();
+		return fastFiscalCodeBuilder.build(birthDates[i], conditions, population.name(i), population.placeCode(i), population.sex(i), population.surname(i));
+	}
+	
+	/**
+	 * Benchmarks encoding into {@code byte[]}.
+	 * 
+	 * @return encoded code
+	 */
+	@Benchmark
+	public byte[] encodeIntoBytes() {
+		final int i = next();
+		fastFiscalCodeBuilder.encodeInto(bytes, 0, population.surname(i), population.name(i), population.year(i), population.month(i), population.day(i), population.sex(i), population.placeCode(i));
+		return bytes;
+	}
+	
+	/**
+	 * Benchmarks encoding into {@code char[]}.
+	 * 
+	 * @return encoded code
+	 */
+	@Benchmark
+	public char[] encodeIntoChars() {
+		final int i = next();
+		fastFiscalCodeBuilder.encodeInto(value, 0, population.surname(i), population.name(i), population.year(i), population.month(i), population.day(i), population.sex(i), population.placeCode(i));
+		return value;
+	}
+	
+	/**
+	 * Benchmarks name and surname ("xame") encoding alone.
+	 * 
+	 * @return encoded name and surname
+	 */
+	@Benchmark
+	public char[] encodeXame() {
+		final int i = next();
+		fastFiscalCodeBuilder.addXameValue(value, population.surname(i), 0);
+		fastFiscalCodeBuilder.addXameValue(value, population.name(i), 3);
+		return value;
+	}
+	
+	/**
+	 * @return next person index, cycling over {@link #population}
+	 */
+	private int next() {
+		final int i = cursor;
+		cursor = (i + 1) & (population.size() - 1);
+		return i;
+	}
+	
+	/**
+	 * Creates the builder and the people.
+	 */
+	@Setup
+	public void setUp() {
+		conditions = BenchmarkFixtures.newConditions();
+		bytes = new byte[16];
+		fastFiscalCodeBuilder = BenchmarkFixtures.newFastFiscalCodeBuilder();
+		population = new Population(14, 42L);
+		value = new char[16];
+		birthDates = new LocalDate[population.size()];
+		for (int i = 0; i < population.size(); i++) {
+			birthDates[i] = new LocalDate(population.year(i), population.month(i), population.day(i));
+		}
+	}
+	
+}
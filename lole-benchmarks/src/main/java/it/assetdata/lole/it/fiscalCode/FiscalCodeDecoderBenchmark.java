@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.lole.it.ItalianAlphabet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FiscalCodeDecoder} benchmarks over canonical and omocodic codes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class FiscalCodeDecoderBenchmark {
+	
+	/**
+	 * Codes to decode.
+	 */
+	private String[] codes;
+	
+	/**
+	 * Next code index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Decoder under benchmark.
+	 */
+	private FiscalCodeDecoder fiscalCodeDecoder;
+	
+	/**
+	 * Whether {@link #codes} are canonical or have omocodia.
+	 */
+	@Param({ "canonical", "omocodic" })
+	private String input;
+	
+	/**
+	 * Creates the decoder and the codes: omocodic ones have a random subset of
+	 * their digits replaced.
+	 */
+	@Setup
+	public void setUp() {
+		fiscalCodeDecoder = BenchmarkFixtures.newFiscalCodeDecoder();
+		final Population population = new Population(14, 42L);
+		final OmocodiaVariants omocodiaVariants = new OmocodiaVariants(ItalianAlphabet.getInstance().getUpperCaseAlphabet());
+		codes = new String[population.size()];
+		for (int i = 0; i < codes.length; i++) {
+			codes[i] = population.code(i);
+			if ("omocodic".equals(input) && omocodiaVariants.reset(codes[i])) { //$NON-NLS-1$
+				for (int j = i % OmocodiaVariants.variantsCount; j >= 0; j--) {
+					omocodiaVariants.next();
+				}
+				codes[i] = String.valueOf(omocodiaVariants.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * Benchmarks {@link FiscalCodeDecoder#decode(CharSequence)}.
+	 * 
+	 * @return decoded fiscal code
+	 */
+	@Benchmark
+	public FiscalCode decode() {
+		final int i = cursor;
+		cursor = (i + 1) & (codes.length - 1);
+		return fiscalCodeDecoder.decode(codes[i]);
+	}
+	
+	/**
+	 * Benchmarks {@link FiscalCodeDecoder#decodeLazily(CharSequence)}.
+	 * 
+	 * @return lazily decoded fiscal code
+	 */
+	@Benchmark
+	public LazyFiscalCode decodeLazily() {
+		final int i = cursor;
+		cursor = (i + 1) & (codes.length - 1);
+		return fiscalCodeDecoder.decodeLazily(codes[i]);
+	}
+	
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.lole.it.fiscalCode.store.MappedFiscalCodeIndex;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FiscalCodePrefixRanges} benchmarks: finding the codes of the people
+ * with a given surname, name and year of birth in a
+ * {@link MappedFiscalCodeIndex}, with range scans and with a full scan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class FiscalCodePrefixRangesBenchmark {
+	
+	/**
+	 * Next person index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Ranges under benchmark.
+	 */
+	private FiscalCodePrefixRanges fiscalCodePrefixRanges;
+	
+	/**
+	 * Verifier of the full scan.
+	 */
+	private FiscalCodeVerifier fiscalCodeVerifier;
+	
+	/**
+	 * Index of the population codes.
+	 */
+	private MappedFiscalCodeIndex mappedFiscalCodeIndex;
+	
+	/**
+	 * Index file.
+	 */
+	private Path path;
+	
+	/**
+	 * People to search.
+	 */
+	private Population population;
+	
+	/**
+	 * Full scan value buffer.
+	 */
+	private final char[] value = new char[16];
+	
+	/**
+	 * Full scan value, a view of {@link #value}.
+	 */
+	private final CharBuffer valueSequence = CharBuffer.wrap(value);
+	
+	/**
+	 * Benchmarks a full scan of the index checking the surname, name and
+	 * year of birth segments of every code.
+	 * 
+	 * @return number of codes found
+	 */
+	@Benchmark
+	public int fullScan() {
+		final int i = cursor;
+		cursor = (i + 1) & (population.size() - 1);
+		final int segments = FiscalCodeVerifier.surname | FiscalCodeVerifier.name | FiscalCodeVerifier.birthYear;
+		int found = 0;
+		for (long position = 0; position < mappedFiscalCodeIndex.size(); position++) {
+			PackedFiscalCode.unpack(mappedFiscalCodeIndex.getHigh(position), value, 0);
+			PackedFiscalCode.unpack(mappedFiscalCodeIndex.getLow(position), value, PackedFiscalCode.charactersPerLong);
+			if ((fiscalCodeVerifier.verify(valueSequence, population.surname(i), population.name(i), population.year(i), population.month(i), population.day(i), population.sex(i), population.placeCode(i)) & segments) == 0) {
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Benchmarks range scans of the index over the ranges of
+	 * {@link FiscalCodePrefixRanges}.
+	 * 
+	 * @return number of codes found
+	 */
+	@Benchmark
+	public int rangeScan() {
+		final int i = cursor;
+		cursor = (i + 1) & (population.size() - 1);
+		fiscalCodePrefixRanges.reset(population.surname(i), population.name(i), population.year(i), FiscalCodePrefixRanges.unknown, FiscalCodePrefixRanges.unknown, null, null);
+		int found = 0;
+		while (fiscalCodePrefixRanges.next()) {
+			final long from = mappedFiscalCodeIndex.lowerBound(fiscalCodePrefixRanges.getFromHigh(), fiscalCodePrefixRanges.getFromLow());
+			final long to = mappedFiscalCodeIndex.upperBound(fiscalCodePrefixRanges.getToHigh(), fiscalCodePrefixRanges.getToLow());
+			found += (int) (to - from);
+		}
+		return found;
+	}
+	
+	/**
+	 * Writes and opens an index of the codes of a population.
+	 * 
+	 * @throws IOException
+	 *             if the index cannot be written
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		fiscalCodePrefixRanges = new FiscalCodePrefixRanges(BenchmarkFixtures.newFastFiscalCodeBuilder());
+		fiscalCodeVerifier = BenchmarkFixtures.newFiscalCodeVerifier();
+		population = new Population(18, 42L);
+		final long[] highs = new long[population.size()];
+		final long[] lows = new long[population.size()];
+		for (int i = 0; i < population.size(); i++) {
+			highs[i] = PackedFiscalCode.pack(population.code(i), 0);
+			lows[i] = PackedFiscalCode.pack(population.code(i), PackedFiscalCode.charactersPerLong);
+		}
+		path = Files.createTempFile("lole-index", ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+		MappedFiscalCodeIndex.write(path, highs, lows, highs.length);
+		mappedFiscalCodeIndex = new MappedFiscalCodeIndex(path);
+	}
+	
+	/**
+	 * Closes and deletes the index.
+	 * 
+	 * @throws IOException
+	 *             if the index cannot be deleted
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		mappedFiscalCodeIndex.close();
+		Files.deleteIfExists(path);
+	}
+	
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.valid.Conditions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FiscalCode} Java serialization benchmarks, one fiscal code per
+ * stream like in cache entries and remote calls.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class FiscalCodeSerializationBenchmark {
+	
+	/**
+	 * Next fiscal code index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Fiscal codes to serialize.
+	 */
+	private FiscalCode[] fiscalCodes;
+	
+	/**
+	 * Serialized fiscal codes.
+	 */
+	private byte[][] serializedFiscalCodes;
+	
+	/**
+	 * Serializes a fiscal code.
+	 * 
+	 * @param fiscalCode
+	 *            to serialize
+	 * @return serialized form
+	 * @throws IOException
+	 *             if the fiscal code cannot be serialized
+	 */
+	private static byte[] serialize(final FiscalCode fiscalCode) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(fiscalCode);
+		}
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Benchmarks deserialization.
+	 * 
+	 * @return deserialized fiscal code
+	 * @throws IOException
+	 *             if the fiscal code cannot be deserialized
+	 * @throws ClassNotFoundException
+	 *             if a class cannot be found
+	 */
+	@Benchmark
+	public Object read() throws IOException, ClassNotFoundException {
+		final int i = cursor;
+		cursor = (i + 1) & (serializedFiscalCodes.length - 1);
+		try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serializedFiscalCodes[i]))) {
+			return in.readObject();
+		}
+	}
+	
+	/**
+	 * Builds and serializes the fiscal codes.
+	 * 
+	 * @throws IOException
+	 *             if a fiscal code cannot be serialized
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		final Population population = new Population(12, 42L);
+		final FastFiscalCodeBuilder fastFiscalCodeBuilder = BenchmarkFixtures.newFastFiscalCodeBuilder();
+		final Conditions conditions = BenchmarkFixtures.newConditions();
+		fiscalCodes = new FiscalCode[population.size()];
+		serializedFiscalCodes = new byte[population.size()][];
+		for (int i = 0; i < fiscalCodes.length; i++) {
+			final LocalDate birthDate = new LocalDate(population.year(i), population.month(i), population.day(i));
+			fiscalCodes[i] = fastFiscalCodeBuilder.build(birthDate, conditions, population.name(i), population.placeCode(i), population.sex(i), population.surname(i));
+			serializedFiscalCodes[i] = serialize(fiscalCodes[i]);
+		}
+	}
+	
+	/**
+	 * Benchmarks serialization.
+	 * 
+	 * @return serialized form
+	 * @throws IOException
+	 *             if the fiscal code cannot be serialized
+	 */
+	@Benchmark
+	public byte[] write() throws IOException {
+		final int i = cursor;
+		cursor = (i + 1) & (fiscalCodes.length - 1);
+		return serialize(fiscalCodes[i]);
+	}
+	
+}
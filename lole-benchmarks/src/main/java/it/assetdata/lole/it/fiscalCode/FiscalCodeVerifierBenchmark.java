@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.lole.it.ItalianAlphabet;
+import it.assetdata.valid.Conditions;
+
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FiscalCodeVerifier} benchmarks over canonical and omocodic codes,
+ * against building the expected fiscal code and comparing the values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class FiscalCodeVerifierBenchmark {
+	
+	/**
+	 * Dates of birth.
+	 */
+	private LocalDate[] birthDates;
+	
+	/**
+	 * Codes to verify.
+	 */
+	private String[] codes;
+	
+	/**
+	 * Conditions check utility.
+	 */
+	private Conditions conditions;
+	
+	/**
+	 * Next code index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Builder of the baseline.
+	 */
+	private FastFiscalCodeBuilder fastFiscalCodeBuilder;
+	
+	/**
+	 * Verifier under benchmark.
+	 */
+	private FiscalCodeVerifier fiscalCodeVerifier;
+	
+	/**
+	 * Whether {@link #codes} are canonical or have omocodia.
+	 */
+	@Param({ "canonical", "omocodic" })
+	private String input;
+	
+	/**
+	 * Declared personal data.
+	 */
+	private Population population;
+	
+	/**
+	 * Benchmarks the baseline: {@link FastFiscalCodeBuilder#build(LocalDate,
+	 * Conditions, String, String, it.assetdata.lole.it.SexIt, String)} then
+	 * comparing the values, which does not tolerate omocodia.
+	 * 
+	 * @return {@code true} if the code matches
+	 */
+	@Benchmark
+	public boolean buildAndCompare() {
+		final int i = cursor;
+		cursor = (i + 1) & (codes.length - 1);
+		return fastFiscalCodeBuilder.build(birthDates[i], conditions, population.name(i), population.placeCode(i), population.sex(i), population.surname(i)).getValue().equals(codes[i]);
+	}
+	
+	/**
+	 * Benchmarks {@link FiscalCodeVerifier#matches(CharSequence, String,
+	 * String, int, int, int, it.assetdata.lole.it.SexIt, String)}.
+	 * 
+	 * @return {@code true} if the code matches
+	 */
+	@Benchmark
+	public boolean matches() {
+		final int i = cursor;
+		cursor = (i + 1) & (codes.length - 1);
+		return fiscalCodeVerifier.matches(codes[i], population.surname(i), population.name(i), population.year(i), population.month(i), population.day(i), population.sex(i), population.placeCode(i));
+	}
+	
+	/**
+	 * Creates the verifier, the builder and the codes: omocodic ones have a
+	 * random subset of their digits replaced.
+	 */
+	@Setup
+	public void setUp() {
+		fiscalCodeVerifier = BenchmarkFixtures.newFiscalCodeVerifier();
+		fastFiscalCodeBuilder = BenchmarkFixtures.newFastFiscalCodeBuilder();
+		conditions = BenchmarkFixtures.newConditions();
+		population = new Population(14, 42L);
+		final OmocodiaVariants omocodiaVariants = new OmocodiaVariants(ItalianAlphabet.getInstance().getUpperCaseAlphabet());
+		birthDates = new LocalDate[population.size()];
+		codes = new String[population.size()];
+		for (int i = 0; i < codes.length; i++) {
+			birthDates[i] = new LocalDate(population.year(i), population.month(i), population.day(i));
+			codes[i] = population.code(i);
+			if ("omocodic".equals(input) && omocodiaVariants.reset(codes[i])) { //$NON-NLS-1$
+				for (int j = i % OmocodiaVariants.variantsCount; j >= 0; j--) {
+					omocodiaVariants.next();
+				}
+				codes[i] = String.valueOf(omocodiaVariants.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * Benchmarks {@link FiscalCodeVerifier#verify(CharSequence, String,
+	 * String, int, int, int, it.assetdata.lole.it.SexIt, String)}.
+	 * 
+	 * @return bits of the segments that do not match
+	 */
+	@Benchmark
+	public int verify() {
+		final int i = cursor;
+		cursor = (i + 1) & (codes.length - 1);
+		return fiscalCodeVerifier.verify(codes[i], population.surname(i), population.name(i), population.year(i), population.month(i), population.day(i), population.sex(i), population.placeCode(i));
+	}
+	
+}
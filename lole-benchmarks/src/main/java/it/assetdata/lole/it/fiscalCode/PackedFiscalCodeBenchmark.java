@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link PackedFiscalCode} codec benchmarks, against the {@link String}
+ * operations they replace.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class PackedFiscalCodeBenchmark {
+	
+	/**
+	 * Codes to pack and compare.
+	 */
+	private String[] codes;
+	
+	/**
+	 * Next code index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Packed {@link #codes} high halves.
+	 */
+	private long[] highs;
+	
+	/**
+	 * Packed {@link #codes} low halves.
+	 */
+	private long[] lows;
+	
+	/**
+	 * Unpacking buffer.
+	 */
+	private final char[] value = new char[16];
+	
+	/**
+	 * @return next code index, cycling over {@link #codes}
+	 */
+	private int nextIndex() {
+		final int i = cursor;
+		cursor = (i + 1) & (codes.length - 1);
+		return i;
+	}
+	
+	/**
+	 * Creates the codes and packs them.
+	 */
+	@Setup
+	public void setUp() {
+		final Population population = new Population(14, 42L);
+		codes = new String[population.size()];
+		highs = new long[population.size()];
+		lows = new long[population.size()];
+		for (int i = 0; i < codes.length; i++) {
+			codes[i] = population.code(i);
+			highs[i] = PackedFiscalCode.pack(codes[i], 0);
+			lows[i] = PackedFiscalCode.pack(codes[i], PackedFiscalCode.charactersPerLong);
+		}
+	}
+	
+	/**
+	 * Benchmarks {@link PackedFiscalCode#compare(long, long, long, long)} of
+	 * consecutive codes.
+	 * 
+	 * @return comparison result
+	 */
+	@Benchmark
+	public int compare() {
+		final int i = nextIndex();
+		final int j = (i + 1) & (codes.length - 1);
+		return PackedFiscalCode.compare(highs[i], lows[i], highs[j], lows[j]);
+	}
+	
+	/**
+	 * Benchmarks {@link String#compareTo(String)} of consecutive codes, as a
+	 * baseline for {@link #compare()}.
+	 * 
+	 * @return comparison result
+	 */
+	@Benchmark
+	public int compareStrings() {
+		final int i = nextIndex();
+		return codes[i].compareTo(codes[(i + 1) & (codes.length - 1)]);
+	}
+	
+	/**
+	 * Benchmarks {@link PackedFiscalCode#pack(CharSequence, int)} of both
+	 * halves.
+	 * 
+	 * @return packed halves, combined
+	 */
+	@Benchmark
+	public long pack() {
+		final String code = codes[nextIndex()];
+		return PackedFiscalCode.pack(code, 0) ^ PackedFiscalCode.pack(code, PackedFiscalCode.charactersPerLong);
+	}
+	
+	/**
+	 * Benchmarks {@link PackedFiscalCode#unpack(long, char[], int)} of both
+	 * halves.
+	 * 
+	 * @return unpacked value buffer
+	 */
+	@Benchmark
+	public char[] unpack() {
+		final int i = nextIndex();
+		PackedFiscalCode.unpack(highs[i], value, 0);
+		PackedFiscalCode.unpack(lows[i], value, PackedFiscalCode.charactersPerLong);
+		return value;
+	}
+	
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link StandardFiscalCodeValidator} benchmarks over valid and invalid codes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class StandardFiscalCodeValidatorBenchmark {
+	
+	/**
+	 * {@link #codes} as consecutive ASCII bytes.
+	 */
+	private byte[] codeBytes;
+	
+	/**
+	 * {@link #codes} as consecutive ASCII bytes in a direct buffer.
+	 */
+	private ByteBuffer codeBuffer;
+	
+	/**
+	 * Codes to validate.
+	 */
+	private String[] codes;
+	
+	/**
+	 * Next code index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Whether {@link #codes} are valid, have a wrong control character or are
+	 * malformed.
+	 */
+	@Param({ "valid", "invalid", "garbage" })
+	private String input;
+	
+	/**
+	 * Validator under benchmark.
+	 */
+	private StandardFiscalCodeValidator standardFiscalCodeValidator;
+	
+	/**
+	 * @return next code, cycling over {@link #codes}
+	 */
+	private String next() {
+		return codes[nextIndex()];
+	}
+	
+	/**
+	 * @return next code index, cycling over {@link #codes}
+	 */
+	private int nextIndex() {
+		final int i = cursor;
+		cursor = (i + 1) & (codes.length - 1);
+		return i;
+	}
+	
+	/**
+	 * Creates the validator and the codes.
+	 */
+	@Setup
+	public void setUp() {
+		standardFiscalCodeValidator = BenchmarkFixtures.newStandardFiscalCodeValidator();
+		final Population population = new Population(14, 42L);
+		codes = new String[population.size()];
+		for (int i = 0; i < codes.length; i++) {
+			if ("valid".equals(input)) { //$NON-NLS-1$
+				codes[i] = population.code(i);
+			} else if ("invalid".equals(input)) { //$NON-NLS-1$
+				codes[i] = population.invalidCode(i);
+			} else if ((i % 2) == 0) {
+				codes[i] = population.code(i).toLowerCase();
+			} else {
+				codes[i] = population.code(i).replace(population.code(i).charAt(i % 16), '-');
+			}
+		}
+		codeBytes = new byte[codes.length * 16];
+		for (int i = 0; i < codes.length; i++) {
+			for (int j = 0; j < 16; j++) {
+				codeBytes[(i * 16) + j] = (byte) codes[i].charAt(j);
+			}
+		}
+		codeBuffer = ByteBuffer.allocateDirect(codeBytes.length);
+		codeBuffer.put(codeBytes).clear();
+	}
+	
+	/**
+	 * Benchmarks {@link StandardFiscalCodeValidator#validate(String)}.
+	 * 
+	 * @return validation result
+	 */
+	@Benchmark
+	public boolean validate() {
+		return standardFiscalCodeValidator.validate(next());
+	}
+	
+	/**
+	 * Benchmarks {@link StandardFiscalCodeValidator#validate(ByteBuffer)} over
+	 * a direct buffer.
+	 * 
+	 * @return validation result
+	 */
+	@Benchmark
+	public boolean validateByteBuffer() {
+		codeBuffer.position(nextIndex() * 16);
+		return standardFiscalCodeValidator.validate(codeBuffer);
+	}
+	
+	/**
+	 * Benchmarks {@link StandardFiscalCodeValidator#validate(byte[], int)}.
+	 * 
+	 * @return validation result
+	 */
+	@Benchmark
+	public boolean validateBytes() {
+		return standardFiscalCodeValidator.validate(codeBytes, nextIndex() * 16);
+	}
+	
+	/**
+	 * Benchmarks {@link StandardFiscalCodeValidator#validateTolerant(CharSequence)}.
+	 * 
+	 * @return validation result
+	 */
+	@Benchmark
+	public boolean validateTolerant() {
+		return standardFiscalCodeValidator.validateTolerant(next());
+	}
+	
+	/**
+	 * Benchmarks {@link StandardFiscalCodeValidator#validateControlCharacter(CharSequence)}.
+	 * 
+	 * @return validation result
+	 */
+	@Benchmark
+	public boolean validateControlCharacter() {
+		return standardFiscalCodeValidator.validateControlCharacter(next());
+	}
+	
+}
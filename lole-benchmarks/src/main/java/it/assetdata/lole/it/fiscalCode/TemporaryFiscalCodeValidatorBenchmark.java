@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.lole.it.ItalianAlphabet;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link TemporaryFiscalCodeValidator} benchmarks over valid and invalid
+ * codes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class TemporaryFiscalCodeValidatorBenchmark {
+	
+	/**
+	 * Number of codes, a power of two.
+	 */
+	private static final int codesLength = 1 << 14;
+	
+	/**
+	 * Codes to validate.
+	 */
+	private String[] codes;
+	
+	/**
+	 * Next code index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Whether {@link #codes} are valid or have a wrong control character.
+	 */
+	@Param({ "valid", "invalid" })
+	private String input;
+	
+	/**
+	 * Validator under benchmark.
+	 */
+	private TemporaryFiscalCodeValidator temporaryFiscalCodeValidator;
+	
+	/**
+	 * @return next code, cycling over {@link #codes}
+	 */
+	private String next() {
+		final int i = cursor;
+		cursor = (i + 1) & (codes.length - 1);
+		return codes[i];
+	}
+	
+	/**
+	 * Creates the validator and random codes: ten digits followed by the
+	 * control character the validator expects, or by another one.
+	 */
+	@Setup
+	public void setUp() {
+		temporaryFiscalCodeValidator = BenchmarkFixtures.newTemporaryFiscalCodeValidator();
+		final boolean valid = "valid".equals(input); //$NON-NLS-1$
+		final Random random = new Random(42L);
+		final char[] value = new char[11];
+		codes = new String[codesLength];
+		for (int i = 0; i < codesLength; i++) {
+			for (int j = 0; j < 10; j++) {
+				value[j] = (char) ('0' + random.nextInt(10));
+			}
+			int expected = 0;
+			for (final Character character : ItalianAlphabet.getInstance().getUpperCaseAlphabet()) {
+				value[10] = character.charValue();
+				if (temporaryFiscalCodeValidator.validateControlCharacter(String.valueOf(value))) {
+					break;
+				}
+				expected++;
+			}
+			value[10] = (char) ('A' + (valid ? expected : ((expected + 1 + random.nextInt(25)) % 26)));
+			codes[i] = String.valueOf(value);
+		}
+	}
+	
+	/**
+	 * Benchmarks {@link TemporaryFiscalCodeValidator#validate(String)}.
+	 * 
+	 * @return validation result
+	 */
+	@Benchmark
+	public boolean validate() {
+		return temporaryFiscalCodeValidator.validate(next());
+	}
+	
+	/**
+	 * Benchmarks {@link TemporaryFiscalCodeValidator#validateControlCharacter(CharSequence)}.
+	 * 
+	 * @return validation result
+	 */
+	@Benchmark
+	public boolean validateControlCharacter() {
+		return temporaryFiscalCodeValidator.validateControlCharacter(next());
+	}
+	
+}
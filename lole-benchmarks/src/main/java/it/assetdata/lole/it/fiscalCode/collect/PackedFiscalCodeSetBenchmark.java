@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.collect;
+
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+import it.assetdata.lole.it.fiscalCode.Population;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link PackedFiscalCodeSet} membership benchmarks, on and off the heap,
+ * against a {@link HashSet} of {@link String}s.<br/>
+ * Half of the looked up codes are in the sets.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class PackedFiscalCodeSetBenchmark {
+	
+	/**
+	 * Codes to look up.
+	 */
+	private String[] codes;
+	
+	/**
+	 * Next code index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Whether {@link #packedFiscalCodeSet} is off the heap.
+	 */
+	@Param({ "false", "true" })
+	private boolean direct;
+	
+	/**
+	 * Packed {@link #codes} high halves.
+	 */
+	private long[] highs;
+	
+	/**
+	 * Packed {@link #codes} low halves.
+	 */
+	private long[] lows;
+	
+	/**
+	 * Set under benchmark.
+	 */
+	private PackedFiscalCodeSet packedFiscalCodeSet;
+	
+	/**
+	 * Number of codes in the sets, as a power of two.
+	 */
+	@Param({ "16", "22" })
+	private int sizeLog2;
+	
+	/**
+	 * Baseline set.
+	 */
+	private Set<String> stringSet;
+	
+	/**
+	 * @return next code index, cycling over {@link #codes}
+	 */
+	private int nextIndex() {
+		final int i = cursor;
+		cursor = (i + 1) & (codes.length - 1);
+		return i;
+	}
+	
+	/**
+	 * Creates the sets with every other code of a population.
+	 */
+	@Setup
+	public void setUp() {
+		final Population population = new Population(sizeLog2 + 1, 42L);
+		codes = new String[population.size()];
+		highs = new long[population.size()];
+		lows = new long[population.size()];
+		packedFiscalCodeSet = new PackedFiscalCodeSet(population.size() / 2, direct);
+		stringSet = new HashSet<String>();
+		for (int i = 0; i < codes.length; i++) {
+			codes[i] = population.code(i);
+			highs[i] = PackedFiscalCode.pack(codes[i], 0);
+			lows[i] = PackedFiscalCode.pack(codes[i], PackedFiscalCode.charactersPerLong);
+			if ((i % 2) == 0) {
+				packedFiscalCodeSet.add(highs[i], lows[i]);
+				stringSet.add(codes[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Benchmarks {@link PackedFiscalCodeSet#contains(long, long)}.
+	 * 
+	 * @return membership
+	 */
+	@Benchmark
+	public boolean contains() {
+		final int i = nextIndex();
+		return packedFiscalCodeSet.contains(highs[i], lows[i]);
+	}
+	
+	/**
+	 * Benchmarks {@link HashSet#contains(Object)}, as a baseline for
+	 * {@link #contains()}.
+	 * 
+	 * @return membership
+	 */
+	@Benchmark
+	public boolean containsString() {
+		return stringSet.contains(codes[nextIndex()]);
+	}
+	
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.columnar;
+
+import it.assetdata.lole.it.fiscalCode.Population;
+import it.assetdata.lole.it.place.PlaceCodes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FiscalCodeColumnarReader} benchmarks: a full scan of a file of
+ * 2^20 rows against a scan projecting two columns and skipping blocks by
+ * their statistics.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class FiscalCodeColumnarReaderBenchmark {
+	
+	/**
+	 * Reused batch.
+	 */
+	private FiscalCodeBatch batch;
+	
+	/**
+	 * File.
+	 */
+	private Path path;
+	
+	/**
+	 * Place code key the projected scan counts.
+	 */
+	private int placeCodeKey;
+	
+	/**
+	 * Reader under benchmark.
+	 */
+	private FiscalCodeColumnarReader reader;
+	
+	/**
+	 * Writes the file and opens it.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		final Population population = new Population(20, 42L);
+		path = Files.createTempFile("lole-columnar", ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+		try (final FiscalCodeColumnarWriter writer = new FiscalCodeColumnarWriter(path, 1 << 16)) {
+			for (int i = 0; i < population.size(); i++) {
+				writer.write(population.code(i), PlaceCodes.epochDay(population.year(i), population.month(i), population.day(i)), population.sex(i), PlaceCodes.pack(population.placeCode(i)));
+			}
+		}
+		placeCodeKey = PlaceCodes.pack(population.placeCode(0));
+		reader = new FiscalCodeColumnarReader(path);
+		batch = reader.newBatch();
+	}
+	
+	/**
+	 * Closes and deletes the file.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be deleted
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		reader.close();
+		Files.delete(path);
+	}
+	
+	/**
+	 * Benchmarks reading every column of every block.
+	 * 
+	 * @return number of females
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	@Benchmark
+	public int fullScan() throws IOException {
+		int females = 0;
+		for (int i = 0; i < reader.getBlocks().size(); i++) {
+			reader.read(i, ColumnarFormat.allColumns, batch);
+			for (int row = 0; row < batch.size(); row++) {
+				females += batch.isFemale(row) ? 1 : 0;
+			}
+		}
+		return females;
+	}
+	
+	/**
+	 * Benchmarks counting the females born in a place, reading only the
+	 * place code and sex columns of the blocks that may hold it.
+	 * 
+	 * @return number of females born in the place
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	@Benchmark
+	public int projectedScan() throws IOException {
+		int females = 0;
+		for (int i = 0; i < reader.getBlocks().size(); i++) {
+			if (reader.getBlocks().get(i).mayContainPlaceCodeKey(placeCodeKey)) {
+				reader.read(i, ColumnarFormat.placeCode | ColumnarFormat.sex, batch);
+				for (int row = 0; row < batch.size(); row++) {
+					females += ((batch.getPlaceCodeKey(row) == placeCodeKey) && batch.isFemale(row)) ? 1 : 0;
+				}
+			}
+		}
+		return females;
+	}
+	
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.store;
+
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+import it.assetdata.lole.it.fiscalCode.Population;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FiscalCodeBloomFilter} benchmarks: lookups, half of them of codes
+ * added to the filter, and the same lookups in a {@link MappedFiscalCodeIndex}
+ * of the same codes guarded by the filter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class FiscalCodeBloomFilterBenchmark {
+	
+	/**
+	 * Next code index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Filter under benchmark.
+	 */
+	private FiscalCodeBloomFilter fiscalCodeBloomFilter;
+	
+	/**
+	 * Filter file.
+	 */
+	private Path filterPath;
+	
+	/**
+	 * Packed codes to look up high halves.
+	 */
+	private long[] highs;
+	
+	/**
+	 * Index file.
+	 */
+	private Path indexPath;
+	
+	/**
+	 * Packed codes to look up low halves.
+	 */
+	private long[] lows;
+	
+	/**
+	 * Index of the codes in the filter.
+	 */
+	private MappedFiscalCodeIndex mappedFiscalCodeIndex;
+	
+	/**
+	 * Benchmarks {@link MappedFiscalCodeIndex#contains(long, long)} guarded
+	 * by {@link FiscalCodeBloomFilter#mightContain(long, long)}.
+	 * 
+	 * @return membership
+	 */
+	@Benchmark
+	public boolean guardedContains() {
+		final int i = cursor;
+		cursor = (i + 1) & (highs.length - 1);
+		return fiscalCodeBloomFilter.mightContain(highs[i], lows[i]) && mappedFiscalCodeIndex.contains(highs[i], lows[i]);
+	}
+	
+	/**
+	 * Benchmarks {@link FiscalCodeBloomFilter#mightContain(long, long)}.
+	 * 
+	 * @return possible membership
+	 */
+	@Benchmark
+	public boolean mightContain() {
+		final int i = cursor;
+		cursor = (i + 1) & (highs.length - 1);
+		return fiscalCodeBloomFilter.mightContain(highs[i], lows[i]);
+	}
+	
+	/**
+	 * Writes and opens an index and a filter of every other code of a
+	 * population.
+	 * 
+	 * @throws IOException
+	 *             if the index or the filter cannot be written
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		final Population population = new Population(23, 42L);
+		highs = new long[population.size()];
+		lows = new long[population.size()];
+		final long[] indexHighs = new long[population.size() / 2];
+		final long[] indexLows = new long[population.size() / 2];
+		for (int i = 0; i < highs.length; i++) {
+			highs[i] = PackedFiscalCode.pack(population.code(i), 0);
+			lows[i] = PackedFiscalCode.pack(population.code(i), PackedFiscalCode.charactersPerLong);
+			if ((i % 2) == 0) {
+				indexHighs[i / 2] = highs[i];
+				indexLows[i / 2] = lows[i];
+			}
+		}
+		indexPath = Files.createTempFile("lole-index", ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+		MappedFiscalCodeIndex.write(indexPath, indexHighs, indexLows, indexHighs.length);
+		mappedFiscalCodeIndex = new MappedFiscalCodeIndex(indexPath);
+		filterPath = Files.createTempFile("lole-bloom", ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+		FiscalCodeBloomFilter.write(filterPath, mappedFiscalCodeIndex, FiscalCodeBloomFilter.defaultBitsPerCode);
+		fiscalCodeBloomFilter = new FiscalCodeBloomFilter(filterPath);
+	}
+	
+	/**
+	 * Closes and deletes the index and the filter.
+	 * 
+	 * @throws IOException
+	 *             if the files cannot be deleted
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		fiscalCodeBloomFilter.close();
+		mappedFiscalCodeIndex.close();
+		Files.deleteIfExists(filterPath);
+		Files.deleteIfExists(indexPath);
+	}
+	
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.store;
+
+import it.assetdata.lole.it.fiscalCode.Population;
+import it.assetdata.lole.it.place.PlaceCodes;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FiscalCodeRecordStore} benchmarks: appends under several sync
+ * policies and flyweight reads.<br/>
+ * Every iteration starts from an empty store, deleted afterwards, so disk
+ * usage stays bounded.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class FiscalCodeRecordStoreBenchmark {
+	
+	/**
+	 * Number of records of the store read by {@link #read()}.
+	 */
+	private static final int readRecords = 1 << 16;
+	
+	/**
+	 * Next person index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Store directory.
+	 */
+	private Path directory;
+	
+	/**
+	 * Maximum number of records not forced, see {@link SyncPolicy}.
+	 */
+	@Param({ "0", "1000", "100000" })
+	private int maxUnforcedRecords;
+	
+	/**
+	 * Place code keys of the sample people.
+	 */
+	private int[] placeCodeKeys;
+	
+	/**
+	 * Sample people.
+	 */
+	private Population population;
+	
+	/**
+	 * Flyweight reused by {@link #read()}.
+	 */
+	private final FiscalCodeRecord record = new FiscalCodeRecord();
+	
+	/**
+	 * Store under benchmark.
+	 */
+	private FiscalCodeRecordStore store;
+	
+	/**
+	 * Creates the sample people.
+	 */
+	@Setup
+	public void setUp() {
+		population = new Population(16, 42L);
+		placeCodeKeys = new int[population.size()];
+		for (int i = 0; i < placeCodeKeys.length; i++) {
+			placeCodeKeys[i] = PlaceCodes.pack(population.placeCode(i));
+		}
+	}
+	
+	/**
+	 * Creates an empty store and appends the records {@link #read()} reads.
+	 * 
+	 * @throws IOException
+	 *             if the store cannot be created
+	 */
+	@Setup(Level.Iteration)
+	public void setUpIteration() throws IOException {
+		directory = Files.createTempDirectory("lole-records"); //$NON-NLS-1$
+		store = new FiscalCodeRecordStore(directory, 20, new SyncPolicy(maxUnforcedRecords, 0));
+		for (int i = 0; i < readRecords; i++) {
+			append();
+		}
+	}
+	
+	/**
+	 * Deletes the store.
+	 * 
+	 * @throws IOException
+	 *             if the store cannot be deleted
+	 */
+	@TearDown(Level.Iteration)
+	public void tearDownIteration() throws IOException {
+		store.close();
+		store = null;
+		System.gc(); // Unmaps the segments, so they can be deleted on any platform.
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (final Path path : stream) {
+				Files.delete(path);
+			}
+		}
+		Files.delete(directory);
+	}
+	
+	/**
+	 * Benchmarks {@link FiscalCodeRecordStore#append(CharSequence, int, int, int, it.assetdata.lole.it.SexIt, int)}.
+	 * 
+	 * @return record position
+	 * @throws IOException
+	 *             if a segment cannot be created
+	 */
+	@Benchmark
+	public long append() throws IOException {
+		final int i = cursor;
+		cursor = (i + 1) & (population.size() - 1);
+		return store.append(population.code(i), population.year(i), population.month(i), population.day(i), population.sex(i), placeCodeKeys[i]);
+	}
+	
+	/**
+	 * Benchmarks {@link FiscalCodeRecordStore#read(long, FiscalCodeRecord)}
+	 * and reading the fields that need no allocation.
+	 * 
+	 * @return sum of the fields
+	 */
+	@Benchmark
+	public int read() {
+		final int i = cursor;
+		cursor = (i + 1) & (readRecords - 1);
+		final FiscalCodeRecord fiscalCodeRecord = store.read(i, record);
+		return fiscalCodeRecord.charAt(15) + fiscalCodeRecord.getBirthYear() + fiscalCodeRecord.getPlaceCodeKey();
+	}
+	
+}
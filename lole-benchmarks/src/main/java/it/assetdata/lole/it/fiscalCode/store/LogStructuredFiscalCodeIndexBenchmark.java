@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.store;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link LogStructuredFiscalCodeIndex} benchmarks: concurrent writes and
+ * lookups, with the background thread flushing and merging runs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 5, time = 1)
+public class LogStructuredFiscalCodeIndexBenchmark {
+	
+	/**
+	 * Number of distinct packed codes, as a power of two.
+	 */
+	private static final int codesLog2 = 20;
+	
+	/**
+	 * Packed code values limit, {@code 36^8}.
+	 */
+	private static final long packedLimit = 2821109907456L;
+	
+	/**
+	 * Packed codes high halves.
+	 */
+	private long[] highs;
+	
+	/**
+	 * Index under benchmark.
+	 */
+	private LogStructuredFiscalCodeIndex index;
+	
+	/**
+	 * Packed codes low halves.
+	 */
+	private long[] lows;
+	
+	/**
+	 * Creates an index holding half of the codes.
+	 * 
+	 * @throws IOException
+	 *             if the index cannot be created
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		final Random random = new Random(42L);
+		highs = new long[1 << codesLog2];
+		lows = new long[1 << codesLog2];
+		for (int i = 0; i < highs.length; i++) {
+			highs[i] = (long) (random.nextDouble() * packedLimit);
+			lows[i] = (long) (random.nextDouble() * packedLimit);
+		}
+		index = new LogStructuredFiscalCodeIndex(Files.createTempDirectory("lole-lsm"), 1 << 16, 8); //$NON-NLS-1$
+		for (int i = 0; i < highs.length; i += 2) {
+			index.add(highs[i], lows[i]);
+		}
+		index.flush();
+	}
+	
+	/**
+	 * Closes and deletes the index.
+	 * 
+	 * @throws IOException
+	 *             if the index cannot be deleted
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		index.close();
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(index.getDirectory())) {
+			for (final Path path : stream) {
+				Files.delete(path);
+			}
+		}
+		Files.delete(index.getDirectory());
+	}
+	
+	/**
+	 * Benchmarks {@link LogStructuredFiscalCodeIndex#add(long, long)},
+	 * freezing and waiting for flushes included.
+	 * 
+	 * @param cursor
+	 *            per thread code index
+	 * @throws IOException
+	 *             if a background flush or merge failed
+	 */
+	@Benchmark
+	public void add(final Cursor cursor) throws IOException {
+		final int i = cursor.next();
+		index.add(highs[i], lows[i]);
+	}
+	
+	/**
+	 * Benchmarks {@link LogStructuredFiscalCodeIndex#contains(long, long)},
+	 * half of the codes are in the index.
+	 * 
+	 * @param cursor
+	 *            per thread code index
+	 * @return membership
+	 */
+	@Benchmark
+	public boolean contains(final Cursor cursor) {
+		final int i = cursor.next();
+		return index.contains(highs[i], lows[i]);
+	}
+	
+	/**
+	 * Per thread position in the codes.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		
+		/**
+		 * Next code index.
+		 */
+		private int next = (int) (Thread.currentThread().getId() << 12);
+		
+		/**
+		 * @return next code index
+		 */
+		int next() {
+			final int i = next & ((1 << codesLog2) - 1);
+			next = i + 1;
+			return i;
+		}
+		
+	}
+	
+}
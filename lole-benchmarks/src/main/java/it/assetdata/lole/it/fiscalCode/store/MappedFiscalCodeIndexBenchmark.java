@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.store;
+
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+import it.assetdata.lole.it.fiscalCode.Population;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link MappedFiscalCodeIndex} benchmarks: opening and lookups, half of
+ * them of codes in the index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class MappedFiscalCodeIndexBenchmark {
+	
+	/**
+	 * Next code index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Packed codes to look up high halves.
+	 */
+	private long[] highs;
+	
+	/**
+	 * Packed codes to look up low halves.
+	 */
+	private long[] lows;
+	
+	/**
+	 * Index under benchmark.
+	 */
+	private MappedFiscalCodeIndex mappedFiscalCodeIndex;
+	
+	/**
+	 * Index file.
+	 */
+	private Path path;
+	
+	/**
+	 * Number of codes in the index, as a power of two.
+	 */
+	@Param({ "16", "22" })
+	private int sizeLog2;
+	
+	/**
+	 * Writes and opens an index of every other code of a population.
+	 * 
+	 * @throws IOException
+	 *             if the index cannot be written
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		final Population population = new Population(sizeLog2 + 1, 42L);
+		highs = new long[population.size()];
+		lows = new long[population.size()];
+		final long[] indexHighs = new long[population.size() / 2];
+		final long[] indexLows = new long[population.size() / 2];
+		for (int i = 0; i < highs.length; i++) {
+			highs[i] = PackedFiscalCode.pack(population.code(i), 0);
+			lows[i] = PackedFiscalCode.pack(population.code(i), PackedFiscalCode.charactersPerLong);
+			if ((i % 2) == 0) {
+				indexHighs[i / 2] = highs[i];
+				indexLows[i / 2] = lows[i];
+			}
+		}
+		path = Files.createTempFile("lole-index", ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+		MappedFiscalCodeIndex.write(path, indexHighs, indexLows, indexHighs.length);
+		mappedFiscalCodeIndex = new MappedFiscalCodeIndex(path);
+	}
+	
+	/**
+	 * Closes and deletes the index.
+	 * 
+	 * @throws IOException
+	 *             if the index cannot be deleted
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		mappedFiscalCodeIndex.close();
+		Files.deleteIfExists(path);
+	}
+	
+	/**
+	 * Benchmarks {@link MappedFiscalCodeIndex#contains(long, long)}.
+	 * 
+	 * @return membership
+	 */
+	@Benchmark
+	public boolean contains() {
+		final int i = cursor;
+		cursor = (i + 1) & (highs.length - 1);
+		return mappedFiscalCodeIndex.contains(highs[i], lows[i]);
+	}
+	
+	/**
+	 * Benchmarks opening the index, see
+	 * {@link MappedFiscalCodeIndex#MappedFiscalCodeIndex(Path)}.
+	 * 
+	 * @return number of codes
+	 * @throws IOException
+	 *             if the index cannot be opened
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public long open() throws IOException {
+		try (final MappedFiscalCodeIndex index = new MappedFiscalCodeIndex(path)) {
+			return index.size();
+		}
+	}
+	
+}
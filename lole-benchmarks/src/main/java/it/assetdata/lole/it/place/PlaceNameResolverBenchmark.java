@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.place;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link PlaceNameResolver} benchmarks over about as many synthetic places as
+ * there are Italian municipalities, looked up by names written as users do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class PlaceNameResolverBenchmark {
+	
+	/**
+	 * Number of names to look up, a power of two.
+	 */
+	private static final int namesLength = 1 << 14;
+	
+	/**
+	 * Number of places.
+	 */
+	private static final int placesCount = 8000;
+	
+	/**
+	 * Syllables of synthetic place names.
+	 */
+	private static final String[] syllables = {
+			"SAN", "TA", "RO", "MA", "VEC", "CHIO", "MON", "TE", "DEL", "LA", "PO", "NO", "CA", "STEL", "LU", "GO" };
+	
+	/**
+	 * Next name index.
+	 */
+	private int cursor;
+	
+	/**
+	 * Names to look up.
+	 */
+	private String[] names;
+	
+	/**
+	 * Resolver under benchmark.
+	 */
+	private PlaceNameResolver placeNameResolver;
+	
+	/**
+	 * Provinces of {@link #names}.
+	 */
+	private String[] provinces;
+	
+	/**
+	 * Creates the places and the names to look up: half upper case as in
+	 * data files, half lower case with spaces turned into apostrophes.
+	 */
+	@Setup
+	public void setUp() {
+		final Random random = new Random(42L);
+		final List<PlaceCodeRecord> records = new ArrayList<PlaceCodeRecord>(placesCount);
+		final StringBuilder name = new StringBuilder();
+		for (int i = 0; i < placesCount; i++) {
+			name.setLength(0);
+			final int syllablesCount = 2 + random.nextInt(4);
+			for (int j = 0; j < syllablesCount; j++) {
+				if ((j > 0) && (random.nextInt(4) == 0)) {
+					name.append(' ');
+				}
+				name.append(syllables[random.nextInt(syllables.length)]);
+			}
+			final String province = String.valueOf(new char[] { (char) ('A' + random.nextInt(26)), (char) ('A' + random.nextInt(26)) });
+			records.add(new PlaceCodeRecord(PlaceCodes.unpack(i), name.toString(), province));
+		}
+		placeNameResolver = new PlaceNameResolver(records);
+		names = new String[namesLength];
+		provinces = new String[namesLength];
+		for (int i = 0; i < namesLength; i++) {
+			final PlaceCodeRecord record = records.get(random.nextInt(placesCount));
+			names[i] = random.nextBoolean() ? record.getName() : record.getName().toLowerCase().replace(' ', '\'');
+			provinces[i] = record.getProvince();
+		}
+	}
+	
+	/**
+	 * Benchmarks {@link PlaceNameResolver#resolve(CharSequence, CharSequence)}
+	 * without province.
+	 * 
+	 * @return place code
+	 */
+	@Benchmark
+	public String resolve() {
+		final int i = cursor;
+		cursor = (i + 1) & (namesLength - 1);
+		return placeNameResolver.resolve(names[i], null);
+	}
+	
+	/**
+	 * Benchmarks {@link PlaceNameResolver#resolve(CharSequence, CharSequence)}
+	 * with province.
+	 * 
+	 * @return place code
+	 */
+	@Benchmark
+	public String resolveWithProvince() {
+		final int i = cursor;
+		cursor = (i + 1) & (namesLength - 1);
+		return placeNameResolver.resolve(names[i], provinces[i]);
+	}
+	
+}
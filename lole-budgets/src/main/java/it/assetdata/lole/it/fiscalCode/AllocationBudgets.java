@@ -0,0 +1,528 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.lole.it.ItalianAlphabet;
+import it.assetdata.lole.it.fiscalCode.collect.PackedFiscalCodeSet;
+import it.assetdata.lole.it.fiscalCode.store.FiscalCodeBloomFilter;
+import it.assetdata.lole.it.fiscalCode.store.FiscalCodeRecord;
+import it.assetdata.lole.it.fiscalCode.store.FiscalCodeRecordStore;
+import it.assetdata.lole.it.fiscalCode.store.LogStructuredFiscalCodeIndex;
+import it.assetdata.lole.it.fiscalCode.store.MappedFiscalCodeIndex;
+import it.assetdata.lole.it.fiscalCode.store.SyncPolicy;
+import it.assetdata.lole.it.place.BitmapPlaceCodeRegistry;
+import it.assetdata.lole.it.place.PlaceCodeRecord;
+import it.assetdata.lole.it.place.PlaceCodeValidityIndex;
+import it.assetdata.lole.it.place.PlaceCodes;
+import it.assetdata.lole.it.place.PlaceNameResolver;
+import it.assetdata.valid.Conditions;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Measures the bytes allocated per call by the hot paths with
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)} and
+ * fails when any of them goes over its declared budget.<br/>
+ * It runs during the {@code test} phase of this module, part of the default
+ * build unlike the JMH benchmarks, so a regression fails the build.
+ */
+public final class AllocationBudgets {
+	
+	/**
+	 * Last call result, published so calls cannot be optimized away.
+	 */
+	private static volatile Object blackhole;
+	
+	/**
+	 * Measured calls per hot path.
+	 */
+	private static final int measuredCalls = 200000;
+	
+	/**
+	 * Calls per hot path before measuring, so the JIT compiler has done its
+	 * job and the steady state is measured.
+	 */
+	private static final int warmUpCalls = 200000;
+	
+	/**
+	 * Not instantiable.
+	 */
+	private AllocationBudgets() {
+		// Utility class.
+	}
+	
+	/**
+	 * Runs every probe and exits with status 1 if any is over budget.
+	 * 
+	 * @param args
+	 *            ignored
+	 * @throws IOException
+	 *             if a probe fixture cannot be written
+	 */
+	public static void main(final String[] args) throws IOException {
+		final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threadMXBean.isThreadAllocatedMemorySupported()) {
+			System.out.println("Thread allocated memory not supported by this JVM, skipping allocation budgets."); //$NON-NLS-1$
+			return;
+		}
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+		final long threadId = Thread.currentThread().getId();
+		boolean overBudget = false;
+		for (final AllocationProbe probe : probes()) {
+			Object sink = null;
+			for (int i = 0; i < warmUpCalls; i++) {
+				sink = probe.call(i);
+			}
+			final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < measuredCalls; i++) {
+				sink = probe.call(i);
+			}
+			final long after = threadMXBean.getThreadAllocatedBytes(threadId);
+			blackhole = sink;
+			final double bytesPerCall = (double) (after - before) / measuredCalls;
+			final boolean failed = probe.getBudget() < bytesPerCall;
+			overBudget |= failed;
+			System.out.println(String.format("%-60s %10.2f B/call, budget %6d B/call%s", //$NON-NLS-1$
+					probe.getName(),
+					Double.valueOf(bytesPerCall),
+					Long.valueOf(probe.getBudget()),
+					failed ? " OVER BUDGET" : "")); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (overBudget) {
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Declares the hot paths and their budgets.
+	 * 
+	 * @return probes
+	 * @throws IOException
+	 *             if a probe fixture cannot be written
+	 */
+	private static List<AllocationProbe> probes() throws IOException {
+		final Population population = new Population(12, 42L);
+		final int mask = population.size() - 1;
+		final Conditions conditions = BenchmarkFixtures.newConditions();
+		final FastFiscalCodeBuilder fastFiscalCodeBuilder = BenchmarkFixtures.newFastFiscalCodeBuilder();
+		final StandardFiscalCodeValidator standardFiscalCodeValidator = BenchmarkFixtures.newStandardFiscalCodeValidator();
+		final LocalDate[] birthDates = new LocalDate[population.size()];
+		for (int i = 0; i < population.size(); i++) {
+			birthDates[i] = new LocalDate(population.year(i), population.month(i), population.day(i));
+		}
+		final byte[] codeBytes = new byte[population.size() * 16];
+		for (int i = 0; i < population.size(); i++) {
+			for (int j = 0; j < 16; j++) {
+				codeBytes[(i * 16) + j] = (byte) population.code(i).charAt(j);
+			}
+		}
+		final ByteBuffer codeBuffer = ByteBuffer.allocateDirect(codeBytes.length);
+		codeBuffer.put(codeBytes).clear();
+		final char[] chars = new char[16];
+		final byte[] bytes = new byte[16];
+		final List<AllocationProbe> probes = new ArrayList<AllocationProbe>();
+		probes.add(new AllocationProbe("StandardFiscalCodeValidator.validate", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return Boolean.valueOf(standardFiscalCodeValidator.validate(population.code(index & mask)));
+			}
+			
+		});
+		probes.add(new AllocationProbe("StandardFiscalCodeValidator.validate (invalid)", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return Boolean.valueOf(standardFiscalCodeValidator.validate(population.invalidCode(index & mask)));
+			}
+			
+		});
+		final String[] garbageCodes = new String[population.size()];
+		for (int i = 0; i < population.size(); i++) {
+			garbageCodes[i] = population.code(i).toLowerCase();
+		}
+		probes.add(new AllocationProbe("StandardFiscalCodeValidator.validate (garbage)", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return Boolean.valueOf(standardFiscalCodeValidator.validate(garbageCodes[index & mask]));
+			}
+			
+		});
+		probes.add(new AllocationProbe("StandardFiscalCodeValidator.validateTolerant", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return Boolean.valueOf(standardFiscalCodeValidator.validateTolerant(garbageCodes[index & mask]));
+			}
+			
+		});
+		probes.add(new AllocationProbe("StandardFiscalCodeValidator.validate(byte[], int)", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return Boolean.valueOf(standardFiscalCodeValidator.validate(codeBytes, (index & mask) * 16));
+			}
+			
+		});
+		probes.add(new AllocationProbe("StandardFiscalCodeValidator.validate(ByteBuffer)", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				codeBuffer.position((index & mask) * 16);
+				return Boolean.valueOf(standardFiscalCodeValidator.validate(codeBuffer));
+			}
+			
+		});
+		probes.add(new AllocationProbe("StandardFiscalCodeValidator.validateControlCharacter", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return Boolean.valueOf(standardFiscalCodeValidator.validateControlCharacter(population.code(index & mask)));
+			}
+			
+		});
+		final List<PlaceCodeRecord> placeCodeRecords = new ArrayList<PlaceCodeRecord>();
+		for (int i = 0; i < population.size(); i++) {
+			placeCodeRecords.add(new PlaceCodeRecord(population.placeCode(i), null, null));
+		}
+		final StandardFiscalCodeValidator registryFiscalCodeValidator = new StandardFiscalCodeValidator(ItalianAlphabet.getInstance().getUpperCaseAlphabet(), new BitmapPlaceCodeRegistry(placeCodeRecords));
+		probes.add(new AllocationProbe("StandardFiscalCodeValidator.validatePlaceCode (registry)", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return Boolean.valueOf(registryFiscalCodeValidator.validatePlaceCode(population.placeCode(index & mask)));
+			}
+			
+		});
+		final StandardFiscalCodeValidator validityFiscalCodeValidator = new StandardFiscalCodeValidator(ItalianAlphabet.getInstance().getUpperCaseAlphabet(), new PlaceCodeValidityIndex(placeCodeRecords));
+		final int[] placeCodeKeys = new int[population.size()];
+		final int[] birthEpochDays = new int[population.size()];
+		for (int i = 0; i < population.size(); i++) {
+			placeCodeKeys[i] = PlaceCodes.pack(population.placeCode(i));
+			birthEpochDays[i] = PlaceCodes.epochDay(population.year(i), population.month(i), population.day(i));
+		}
+		probes.add(new AllocationProbe("StandardFiscalCodeValidator.validatePlaceCode(int, int)", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return Boolean.valueOf(validityFiscalCodeValidator.validatePlaceCode(placeCodeKeys[index & mask], birthEpochDays[index & mask]));
+			}
+			
+		});
+		final Set<String> placeCodes = new LinkedHashSet<String>();
+		for (int i = 0; i < population.size(); i++) {
+			placeCodes.add(population.placeCode(i));
+		}
+		final List<PlaceCodeRecord> namedPlaceCodeRecords = new ArrayList<PlaceCodeRecord>();
+		for (final String placeCode : placeCodes) {
+			namedPlaceCodeRecords.add(new PlaceCodeRecord(placeCode, "Sant'Agata " + placeCode, null)); //$NON-NLS-1$
+		}
+		final PlaceNameResolver placeNameResolver = new PlaceNameResolver(namedPlaceCodeRecords);
+		final String[] placeNames = new String[population.size()];
+		for (int i = 0; i < population.size(); i++) {
+			placeNames[i] = "SANT AGATA " + population.placeCode(i); //$NON-NLS-1$
+		}
+		probes.add(new AllocationProbe("PlaceNameResolver.resolve", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return placeNameResolver.resolve(placeNames[index & mask], null);
+			}
+			
+		});
+		final FiscalCodeDecoder fiscalCodeDecoder = BenchmarkFixtures.newFiscalCodeDecoder();
+		probes.add(new AllocationProbe("FiscalCodeDecoder.decode", 320) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return fiscalCodeDecoder.decode(population.code(index & mask));
+			}
+			
+		});
+		probes.add(new AllocationProbe("FiscalCodeDecoder.decodeLazily", 32) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return fiscalCodeDecoder.decodeLazily(population.code(index & mask));
+			}
+			
+		});
+		probes.add(new AllocationProbe("PackedFiscalCode.pack and unpack", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				final String code = population.code(index & mask);
+				PackedFiscalCode.unpack(PackedFiscalCode.pack(code, 0), chars, 0);
+				PackedFiscalCode.unpack(PackedFiscalCode.pack(code, PackedFiscalCode.charactersPerLong), chars, PackedFiscalCode.charactersPerLong);
+				return chars;
+			}
+			
+		});
+		final PackedFiscalCodeSet packedFiscalCodeSet = new PackedFiscalCodeSet(population.size(), false);
+		final long[] highs = new long[population.size()];
+		final long[] lows = new long[population.size()];
+		for (int i = 0; i < population.size(); i++) {
+			highs[i] = PackedFiscalCode.pack(population.code(i), 0);
+			lows[i] = PackedFiscalCode.pack(population.code(i), PackedFiscalCode.charactersPerLong);
+			if ((i % 2) == 0) {
+				packedFiscalCodeSet.add(highs[i], lows[i]);
+			}
+		}
+		probes.add(new AllocationProbe("PackedFiscalCodeSet.contains", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return Boolean.valueOf(packedFiscalCodeSet.contains(highs[index & mask], lows[index & mask]));
+			}
+			
+		});
+		final Path indexPath = Files.createTempFile("lole-index", ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+		indexPath.toFile().deleteOnExit();
+		MappedFiscalCodeIndex.write(indexPath, highs.clone(), lows.clone(), population.size() / 2);
+		final MappedFiscalCodeIndex mappedFiscalCodeIndex = new MappedFiscalCodeIndex(indexPath);
+		probes.add(new AllocationProbe("MappedFiscalCodeIndex.contains", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return Boolean.valueOf(mappedFiscalCodeIndex.contains(highs[index & mask], lows[index & mask]));
+			}
+			
+		});
+		final Path logStructuredDirectory = Files.createTempDirectory("lole-lsm"); //$NON-NLS-1$
+		logStructuredDirectory.toFile().deleteOnExit();
+		final LogStructuredFiscalCodeIndex logStructuredFiscalCodeIndex = new LogStructuredFiscalCodeIndex(logStructuredDirectory, population.size(), 4);
+		// First half flushed into a run, second half left in the memtable, so that lookups go through both.
+		for (int i = 0; i < population.size() / 2; i += 2) {
+			logStructuredFiscalCodeIndex.add(highs[i], lows[i]);
+		}
+		logStructuredFiscalCodeIndex.flush();
+		try (final DirectoryStream<Path> runs = Files.newDirectoryStream(logStructuredDirectory)) {
+			for (final Path run : runs) {
+				run.toFile().deleteOnExit(); // Registered after the directory, so deleted before it.
+			}
+		}
+		for (int i = population.size() / 2; i < population.size(); i += 2) {
+			logStructuredFiscalCodeIndex.add(highs[i], lows[i]);
+		}
+		probes.add(new AllocationProbe("LogStructuredFiscalCodeIndex.contains", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return Boolean.valueOf(logStructuredFiscalCodeIndex.contains(highs[index & mask], lows[index & mask]));
+			}
+			
+		});
+		final Path bloomFilterPath = Files.createTempFile("lole-bloom", ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+		bloomFilterPath.toFile().deleteOnExit();
+		FiscalCodeBloomFilter.write(bloomFilterPath, mappedFiscalCodeIndex, FiscalCodeBloomFilter.defaultBitsPerCode);
+		final FiscalCodeBloomFilter fiscalCodeBloomFilter = new FiscalCodeBloomFilter(bloomFilterPath);
+		probes.add(new AllocationProbe("FiscalCodeBloomFilter.mightContain", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				return Boolean.valueOf(fiscalCodeBloomFilter.mightContain(highs[index & mask], lows[index & mask]));
+			}
+			
+		});
+		final Path recordsDirectory = Files.createTempDirectory("lole-records"); //$NON-NLS-1$
+		recordsDirectory.toFile().deleteOnExit();
+		final FiscalCodeRecordStore fiscalCodeRecordStore = new FiscalCodeRecordStore(recordsDirectory, 20, SyncPolicy.osManaged);
+		recordsDirectory.resolve("0000000000000000000.seg").toFile().deleteOnExit(); // Single segment, deleted before the directory. //$NON-NLS-1$
+		for (int i = 0; i < population.size(); i++) {
+			fiscalCodeRecordStore.append(population.code(i), population.year(i), population.month(i), population.day(i), population.sex(i), placeCodeKeys[i]);
+		}
+		probes.add(new AllocationProbe("FiscalCodeRecordStore.append", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				final int i = index & mask;
+				try {
+					return Boolean.valueOf(fiscalCodeRecordStore.append(population.code(i), population.year(i), population.month(i), population.day(i), population.sex(i), placeCodeKeys[i]) >= 0);
+				} catch (final IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			
+		});
+		final FiscalCodeRecord fiscalCodeRecord = new FiscalCodeRecord();
+		probes.add(new AllocationProbe("FiscalCodeRecordStore.read, flyweight fields", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				final FiscalCodeRecord record = fiscalCodeRecordStore.read(index & mask, fiscalCodeRecord);
+				return Boolean.valueOf((record.getPlaceCodeKey() == placeCodeKeys[index & mask]) && (record.getBirthYear() == population.year(index & mask)));
+			}
+			
+		});
+		// FiscalCode, its String value, the name and surname regular expression matchers and the Converter arrays of the year and the day.
+		probes.add(new AllocationProbe("FastFiscalCodeBuilder.build", 768) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				final int i = index & mask;
+				return fastFiscalCodeBuilder.build(birthDates[i], conditions, population.name(i), population.placeCode(i), population.sex(i), population.surname(i));
+			}
+			
+		});
+		probes.add(new AllocationProbe("FastFiscalCodeBuilder.encodeInto(char[])", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				final int i = index & mask;
+				fastFiscalCodeBuilder.encodeInto(chars, 0, population.surname(i), population.name(i), population.year(i), population.month(i), population.day(i), population.sex(i), population.placeCode(i));
+				return chars;
+			}
+			
+		});
+		probes.add(new AllocationProbe("FastFiscalCodeBuilder.encodeInto(byte[])", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				final int i = index & mask;
+				fastFiscalCodeBuilder.encodeInto(bytes, 0, population.surname(i), population.name(i), population.year(i), population.month(i), population.day(i), population.sex(i), population.placeCode(i));
+				return bytes;
+			}
+			
+		});
+		final FiscalCodeVerifier fiscalCodeVerifier = BenchmarkFixtures.newFiscalCodeVerifier();
+		probes.add(new AllocationProbe("FiscalCodeVerifier.verify", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				final int i = index & mask;
+				return Boolean.valueOf(fiscalCodeVerifier.verify(population.code(i), population.surname(i), population.name(i), population.year(i), population.month(i), population.day(i), population.sex(i), population.placeCode(i)) == 0);
+			}
+			
+		});
+		final FiscalCodePrefixRanges fiscalCodePrefixRanges = new FiscalCodePrefixRanges(fastFiscalCodeBuilder);
+		probes.add(new AllocationProbe("FiscalCodePrefixRanges, all ranges of a surname, name and year", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				final int i = index & mask;
+				fiscalCodePrefixRanges.reset(population.surname(i), population.name(i), population.year(i), FiscalCodePrefixRanges.unknown, FiscalCodePrefixRanges.unknown, null, null);
+				long ranges = 0;
+				while (fiscalCodePrefixRanges.next()) {
+					ranges += fiscalCodePrefixRanges.getToLow() - fiscalCodePrefixRanges.getFromLow();
+				}
+				return Boolean.valueOf(ranges > 0);
+			}
+			
+		});
+		final OmocodiaVariants omocodiaVariants = new OmocodiaVariants(ItalianAlphabet.getInstance().getUpperCaseAlphabet());
+		probes.add(new AllocationProbe("OmocodiaVariants, all variants of a code", 0) { //$NON-NLS-1$
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Object call(final int index) {
+				omocodiaVariants.reset(population.code(index & mask));
+				while (omocodiaVariants.next()) {
+					// Enumerate only.
+				}
+				return omocodiaVariants.getValue();
+			}
+			
+		});
+		return probes;
+	}
+	
+}
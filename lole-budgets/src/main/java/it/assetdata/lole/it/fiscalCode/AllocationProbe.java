@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * A hot path call and the bytes it is allowed to allocate per call.
+ */
+public abstract class AllocationProbe {
+	
+	/**
+	 * Allowed allocated bytes per call.
+	 */
+	private final long budget;
+	
+	/**
+	 * Hot path name.
+	 */
+	private final String name;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param name
+	 *            hot path name
+	 * @param budget
+	 *            allowed allocated bytes per call
+	 */
+	protected AllocationProbe(final String name, final long budget) {
+		this.budget = budget;
+		this.name = name;
+	}
+	
+	/**
+	 * Calls the hot path once.
+	 * 
+	 * @param index
+	 *            call index, to cycle over inputs
+	 * @return anything the call returns, so it cannot be optimized away
+	 */
+	public abstract Object call(int index);
+	
+	/**
+	 * @return allowed allocated bytes per call
+	 */
+	public long getBudget() {
+		return budget;
+	}
+	
+	/**
+	 * @return hot path name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.convert.Converter;
+import it.assetdata.lole.it.ItalianAlphabet;
+import it.assetdata.valid.Conditions;
+
+/**
+ * Creates the objects under benchmark the same way applications wire them.
+ */
+public final class BenchmarkFixtures {
+	
+	/**
+	 * {@code Integer} to {@code char[]} converter printing decimal digits.
+	 */
+	private static final Converter<Integer, char[]> converter = new Converter<Integer, char[]>() {
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public char[] convert(final Integer from) {
+			return from.toString().toCharArray();
+		}
+		
+	};
+	
+	/**
+	 * Not instantiable.
+	 */
+	private BenchmarkFixtures() {
+		// Utility class.
+	}
+	
+	/**
+	 * @return new conditions check utility
+	 */
+	public static Conditions newConditions() {
+		return new Conditions();
+	}
+	
+	/**
+	 * @return new {@link ConcurrentFiscalCodeBuilder}
+	 */
+	public static ConcurrentFiscalCodeBuilder newConcurrentFiscalCodeBuilder() {
+		final ItalianAlphabet alphabet = ItalianAlphabet.getInstance();
+		return new ConcurrentFiscalCodeBuilder(
+				newConditions(),
+				converter,
+				newStandardFiscalCodeValidator(),
+				alphabet.getUpperCaseAlphabet(),
+				alphabet.getUpperCaseVowels());
+	}
+	
+	/**
+	 * @return new {@link FastFiscalCodeBuilder}
+	 */
+	public static FastFiscalCodeBuilder newFastFiscalCodeBuilder() {
+		final ItalianAlphabet alphabet = ItalianAlphabet.getInstance();
+		return new FastFiscalCodeBuilder(
+				newConditions(),
+				converter,
+				newStandardFiscalCodeValidator(),
+				alphabet.getUpperCaseAlphabet(),
+				alphabet.getUpperCaseVowels());
+	}
+	
+	/**
+	 * @return new {@link FiscalCodeDecoder}
+	 */
+	public static FiscalCodeDecoder newFiscalCodeDecoder() {
+		return new FiscalCodeDecoder(newConditions(), ItalianAlphabet.getInstance().getUpperCaseAlphabet());
+	}
+	
+	/**
+	 * @return new {@link FiscalCodeVerifier}
+	 */
+	public static FiscalCodeVerifier newFiscalCodeVerifier() {
+		final ItalianAlphabet alphabet = ItalianAlphabet.getInstance();
+		return new FiscalCodeVerifier(alphabet.getUpperCaseAlphabet(), alphabet.getUpperCaseVowels());
+	}
+	
+	/**
+	 * @return new {@link StandardFiscalCodeValidator}
+	 */
+	public static StandardFiscalCodeValidator newStandardFiscalCodeValidator() {
+		return new StandardFiscalCodeValidator(ItalianAlphabet.getInstance().getUpperCaseAlphabet());
+	}
+	
+	/**
+	 * @return new {@link TemporaryFiscalCodeValidator}
+	 */
+	public static TemporaryFiscalCodeValidator newTemporaryFiscalCodeValidator() {
+		return new TemporaryFiscalCodeValidator(ItalianAlphabet.getInstance().getUpperCaseAlphabet());
+	}
+	
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.lole.it.Female;
+import it.assetdata.lole.it.Male;
+import it.assetdata.lole.it.SexIt;
+
+import java.util.Random;
+
+import org.joda.time.LocalDate;
+
+/**
+ * A reproducible sample of people whose surnames, names and places of birth
+ * follow a skewed distribution, like the real Italian population does: few
+ * values are very common and many are rare.<br/>
+ * Sizes are powers of two so benchmarks can cycle with a mask.
+ */
+public final class Population {
+	
+	/**
+	 * Common female names, most frequent first.
+	 */
+	private static final String[] commonFemaleNames = {
+			"MARIA", "ANNA", "GIUSEPPINA", "ROSA", "ANGELA", "GIOVANNA", "TERESA", "LUCIA", "CARMELA", "FRANCESCA",
+			"GIULIA", "SARA", "CHIARA", "LAURA", "PAOLA", "ELENA", "SILVIA", "MARTINA", "ALESSIA", "FEDERICA",
+			"BEATRICE", "IO", "EVA", "ADA" };
+	
+	/**
+	 * Common male names, most frequent first.
+	 */
+	private static final String[] commonMaleNames = {
+			"GIUSEPPE", "GIOVANNI", "ANTONIO", "MARIO", "LUIGI", "FRANCESCO", "ANGELO", "VINCENZO", "PIETRO", "SALVATORE",
+			"CARLO", "FRANCO", "DOMENICO", "BRUNO", "PAOLO", "MICHELE", "GIORGIO", "ALESSANDRO", "LUCA", "MARCO",
+			"ANDREA", "MATTIA", "UGO", "LEO" };
+	
+	/**
+	 * Common places of birth codes, most frequent first.
+	 */
+	private static final String[] commonPlaceCodes = {
+			"H501", "F205", "F839", "L219", "G273", "D969", "A944", "D612", "A662", "C351",
+			"L736", "L781", "G224", "Z110", "Z112", "Z133", "Z404", "Z600" };
+	
+	/**
+	 * Common surnames, most frequent first.
+	 */
+	private static final String[] commonSurnames = {
+			"ROSSI", "RUSSO", "FERRARI", "ESPOSITO", "BIANCHI", "ROMANO", "COLOMBO", "RICCI", "MARINO", "GRECO",
+			"BRUNO", "GALLO", "CONTI", "DELUCA", "MANCINI", "COSTA", "GIORDANO", "RIZZO", "LOMBARDI", "MORETTI",
+			"BARBIERI", "FONTANA", "SANTORO", "MARIANI", "RINALDI", "CARUSO", "FERRARA", "GALLI", "MARTINI", "LEONE",
+			"LONGO", "GENTILE", "MARTINELLI", "VITALE", "LOMBARDO", "SERRA", "COPPOLA", "DESANTIS", "DANGELO", "MARCHETTI",
+			"PARISI", "VILLA", "CONTE", "FERRARO", "FERRI", "FABBRI", "BIANCO", "MARINI", "GRASSO", "VALENTINI",
+			"LI", "RE", "NOE", "AIA" };
+	
+	/**
+	 * Codes built from the sample people.
+	 */
+	private final String[] codes;
+	
+	/**
+	 * Days of month of birth.
+	 */
+	private final int[] days;
+	
+	/**
+	 * Codes built from the sample people with a wrong control character.
+	 */
+	private final String[] invalidCodes;
+	
+	/**
+	 * Months of birth, from 1 to 12.
+	 */
+	private final int[] months;
+	
+	/**
+	 * Names.
+	 */
+	private final String[] names;
+	
+	/**
+	 * Places of birth codes.
+	 */
+	private final String[] places;
+	
+	/**
+	 * Sexes.
+	 */
+	private final SexIt[] sexes;
+	
+	/**
+	 * Surnames.
+	 */
+	private final String[] surnames;
+	
+	/**
+	 * Years of birth.
+	 */
+	private final int[] years;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param sizeLog2
+	 *            base 2 logarithm of the sample size
+	 * @param seed
+	 *            random seed, the same seed gives the same sample
+	 */
+	public Population(final int sizeLog2, final long seed) {
+		final int size = 1 << sizeLog2;
+		final Random random = new Random(seed);
+		final FastFiscalCodeBuilder builder = BenchmarkFixtures.newFastFiscalCodeBuilder();
+		final SexIt male = new Male();
+		final SexIt female = new Female();
+		final char[] value = new char[16];
+		codes = new String[size];
+		days = new int[size];
+		invalidCodes = new String[size];
+		months = new int[size];
+		names = new String[size];
+		places = new String[size];
+		sexes = new SexIt[size];
+		surnames = new String[size];
+		years = new int[size];
+		for (int i = 0; i < size; i++) {
+			final boolean isFemale = random.nextBoolean();
+			final LocalDate birthDate = new LocalDate(1930, 1, 1).plusDays(random.nextInt(80 * 365));
+			years[i] = birthDate.getYear();
+			months[i] = birthDate.getMonthOfYear();
+			days[i] = birthDate.getDayOfMonth();
+			sexes[i] = isFemale ? female : male;
+			names[i] = skewed(random, isFemale ? commonFemaleNames : commonMaleNames);
+			surnames[i] = skewed(random, commonSurnames);
+			places[i] = skewed(random, commonPlaceCodes);
+			builder.encodeInto(value, 0, surnames[i], names[i], years[i], months[i], days[i], sexes[i], places[i]);
+			codes[i] = String.valueOf(value);
+			value[15] = (char) ('A' + ((value[15] - 'A' + 1 + random.nextInt(25)) % 26)); // Any other control character.
+			invalidCodes[i] = String.valueOf(value);
+		}
+	}
+	
+	/**
+	 * Picks a value with a Zipf like distribution: the first values of
+	 * {@code values} are much more likely than the last ones.
+	 * 
+	 * @param random
+	 *            numbers generator
+	 * @param values
+	 *            to pick from, most frequent first
+	 * @return picked value
+	 */
+	private static String skewed(final Random random, final String[] values) {
+		final double uniform = random.nextDouble();
+		final int index = (int) (values.length * uniform * uniform * uniform);
+		return values[index];
+	}
+	
+	/**
+	 * @param index
+	 *            person index
+	 * @return fiscal code of the person
+	 */
+	public String code(final int index) {
+		return codes[index];
+	}
+	
+	/**
+	 * @param index
+	 *            person index
+	 * @return day of month of birth
+	 */
+	public int day(final int index) {
+		return days[index];
+	}
+	
+	/**
+	 * @param index
+	 *            person index
+	 * @return fiscal code of the person with a wrong control character
+	 */
+	public String invalidCode(final int index) {
+		return invalidCodes[index];
+	}
+	
+	/**
+	 * @param index
+	 *            person index
+	 * @return month of birth, from 1 to 12
+	 */
+	public int month(final int index) {
+		return months[index];
+	}
+	
+	/**
+	 * @param index
+	 *            person index
+	 * @return name
+	 */
+	public String name(final int index) {
+		return names[index];
+	}
+	
+	/**
+	 * @param index
+	 *            person index
+	 * @return place of birth code
+	 */
+	public String placeCode(final int index) {
+		return places[index];
+	}
+	
+	/**
+	 * @param index
+	 *            person index
+	 * @return sex
+	 */
+	public SexIt sex(final int index) {
+		return sexes[index];
+	}
+	
+	/**
+	 * @return number of people
+	 */
+	public int size() {
+		return codes.length;
+	}
+	
+	/**
+	 * @param index
+	 *            person index
+	 * @return surname
+	 */
+	public String surname(final int index) {
+		return surnames[index];
+	}
+	
+	/**
+	 * @param index
+	 *            person index
+	 * @return year of birth
+	 */
+	public int year(final int index) {
+		return years[index];
+	}
+	
+}
@@ -25,6 +25,11 @@ public class Female extends SexIt {
 	 */
 	private static final int fiscalCodeDayAddend = 40;
 	
+	/**
+	 * Shared instance.
+	 */
+	private static final Female instance = new Female();
+	
 	/**
 	 * Serial version UID.
 	 */
@@ -38,4 +43,24 @@ public class Female extends SexIt {
 		return fiscalCodeDayAddend;
 	}
 	
+	/**
+	 * Returns a shared instance, to avoid creating a new one for every female
+	 * person; any instance is equal to it.
+	 * 
+	 * @return shared instance
+	 */
+	public static Female getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Resolves deserialized instances to the shared one, so they are not
+	 * kept around and identity comparisons keep working.
+	 * 
+	 * @return shared instance
+	 */
+	private Object readResolve() {
+		return instance;
+	}
+	
 }
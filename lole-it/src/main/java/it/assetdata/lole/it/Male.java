@@ -25,6 +25,11 @@ public class Male extends SexIt {
 	 */
 	private static final int fiscalCodeDayAddend = 0;
 	
+	/**
+	 * Shared instance.
+	 */
+	private static final Male instance = new Male();
+	
 	/**
 	 * Serial version UID.
 	 */
@@ -38,4 +43,24 @@ public class Male extends SexIt {
 		return fiscalCodeDayAddend;
 	}
 	
+	/**
+	 * Returns a shared instance, to avoid creating a new one for every male
+	 * person; any instance is equal to it.
+	 * 
+	 * @return shared instance
+	 */
+	public static Male getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Resolves deserialized instances to the shared one, so they are not
+	 * kept around and identity comparisons keep working.
+	 * 
+	 * @return shared instance
+	 */
+	private Object readResolve() {
+		return instance;
+	}
+	
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.convert.Converter;
+import it.assetdata.lole.it.SexIt;
+import it.assetdata.valid.Conditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.joda.time.LocalDate;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * This implementation builds the same fiscal codes of
+ * {@link FastFiscalCodeBuilder} but a single instance can be shared by any
+ * number of threads.<br/>
+ * Every thread works on its own fiscal code value buffer, so there is no
+ * locking and no shared mutable state.
+ */
+@ThreadSafe
+public class ConcurrentFiscalCodeBuilder implements FiscalCodeBuilder {
+	
+	/**
+	 * Fiscal code value length.
+	 */
+	private static final int valueLength = 16;
+	
+	/**
+	 * Builder doing the actual work on per thread buffers, without a fiscal
+	 * code value of its own.
+	 */
+	private final FastFiscalCodeBuilder fastFiscalCodeBuilder;
+	
+	/**
+	 * Per thread fiscal code value.
+	 */
+	private final ThreadLocal<char[]> value = new ThreadLocal<char[]>() {
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected char[] initialValue() {
+			return new char[valueLength];
+		}
+		
+	};
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param conditions
+	 *            conditions check utility
+	 * @param converter
+	 *            {@code Integer} to {@code char[]} converter, must be thread
+	 *            safe
+	 * @param fiscalCodeValidator
+	 *            utility to validate fiscal code parts
+	 * @param upperCaseAlphabet
+	 *            reference upper case alphabet
+	 * @param upperCaseVowels
+	 *            reference upper case vowels
+	 */
+	public ConcurrentFiscalCodeBuilder(
+			final Conditions conditions,
+			final Converter<Integer, char[]> converter,
+			final StandardFiscalCodeValidator fiscalCodeValidator,
+			final ImmutableList<Character> upperCaseAlphabet,
+			final ImmutableList<Character> upperCaseVowels) {
+		fastFiscalCodeBuilder = new FastFiscalCodeBuilder(conditions, converter, fiscalCodeValidator, upperCaseAlphabet, upperCaseVowels, null);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public FiscalCode build(
+			final LocalDate birthDate,
+			final Conditions conditions,
+			final String name,
+			final String placeCode,
+			final SexIt sex,
+			final String surname
+			) throws IllegalArgumentException {
+		return fastFiscalCodeBuilder.build(value.get(), birthDate, conditions, name, placeCode, sex, surname);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
@@ -19,7 +19,8 @@ import it.assetdata.convert.Converter;
 import it.assetdata.lole.it.SexIt;
 import it.assetdata.valid.Conditions;
 
-import javax.annotation.concurrent.Immutable;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.joda.time.LocalDate;
@@ -28,9 +29,12 @@ import com.google.common.collect.ImmutableList;
 
 /**
  * This implementation is really fast and builds standard Italian fiscal codes
- * according to current Italian law as per 1/1/2012.
+ * according to current Italian law as per 1/1/2012.<br/>
+ * {@link #build(LocalDate, Conditions, String, String, SexIt, String)} works
+ * on a single fiscal code value buffer, so an instance must not be shared by
+ * threads, see {@link ConcurrentFiscalCodeBuilder}.
  */
-@Immutable
+@NotThreadSafe
 public class FastFiscalCodeBuilder implements FiscalCodeBuilder {
 	
 	/**
@@ -62,10 +66,9 @@ public class FastFiscalCodeBuilder implements FiscalCodeBuilder {
 	private static final char leadingZero = '0';
 	
 	/**
-	 * Month of birth value coding table.
+	 * Minimum supported year.
 	 */
-	private static final char[] monthsValueTable = {
-			'A', 'B', 'C', 'D', 'E', 'H', 'L', 'M', 'P', 'R', 'S', 'T' };
+	private static final int minYear = 10;
 	
 	/**
 	 * Month of birth value starting index.
@@ -136,6 +139,21 @@ public class FastFiscalCodeBuilder implements FiscalCodeBuilder {
 	 */
 	private final Converter<Integer, char[]> converter;
 	
+	/**
+	 * Per thread fiscal code value used to encode into {@code byte[]}.
+	 */
+	private final ThreadLocal<char[]> encodingValue = new ThreadLocal<char[]>() {
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected char[] initialValue() {
+			return new char[valueLength];
+		}
+		
+	};
+	
 	/**
 	 * Utility to validate fiscal code parts.
 	 */
@@ -152,9 +170,10 @@ public class FastFiscalCodeBuilder implements FiscalCodeBuilder {
 	private final ImmutableList<Character> upperCaseVowels;
 	
 	/**
-	 * Fiscal code value.
+	 * Fiscal code value, {@code null} if every build passes its own.
 	 */
-	private final char[] value;
+	private final @Nullable
+	char[] value;
 	
 	/**
 	 * Constructor.
@@ -176,22 +195,55 @@ public class FastFiscalCodeBuilder implements FiscalCodeBuilder {
 			final StandardFiscalCodeValidator fiscalCodeValidator,
 			final ImmutableList<Character> upperCaseAlphabet,
 			final ImmutableList<Character> upperCaseVowels) {
+		this(conditions, converter, fiscalCodeValidator, upperCaseAlphabet, upperCaseVowels, new char[valueLength]);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param conditions
+	 *            conditions check utility
+	 * @param converter
+	 *            {@code Integer} to {@code char[]} converter
+	 * @param fiscalCodeValidator
+	 *            utility to validate fiscal code parts
+	 * @param upperCaseAlphabet
+	 *            reference upper case alphabet
+	 * @param upperCaseVowels
+	 *            reference upper case vowels
+	 * @param value
+	 *            fiscal code value, {@code null} if every build passes its own
+	 *            to
+	 *            {@link #build(char[], LocalDate, Conditions, String, String, SexIt, String)}
+	 */
+	FastFiscalCodeBuilder(
+			final Conditions conditions,
+			final Converter<Integer, char[]> converter,
+			final StandardFiscalCodeValidator fiscalCodeValidator,
+			final ImmutableList<Character> upperCaseAlphabet,
+			final ImmutableList<Character> upperCaseVowels,
+			final @Nullable char[] value) {
 		this.conditions = conditions;
 		this.converter = converter;
 		this.fiscalCodeValidator = fiscalCodeValidator;
 		this.upperCaseAlphabet = upperCaseAlphabet;
 		this.upperCaseVowels = upperCaseVowels;
-		value = new char[valueLength];
+		this.value = value;
 	}
 	
 	/**
-	 * Adds the control character to fiscal code {@link #value}.
+	 * Adds the control character to fiscal code {@code value}.
+	 * 
+	 * @param value
+	 *            fiscal code value being built
+	 * @param offset
+	 *            fiscal code starting index in {@code value}
 	 */
-	private void addControlCharacterValue() {
+	private void addControlCharacterValue(final char[] value, final int offset) {
 		// Convert every value's character in a number: numbers map to themselves (ie. 0=0, 1=1) and letters start after them (ie. a=11, b=12).
 		int controlCharacterIndex = 0;
-		for (int i = 0; i < (value.length - 1); i++) {
-			int character = value[i];
+		for (int i = 0; i < controlCharacterValueIndex; i++) {
+			int character = value[offset + i];
 			character -= utf16NumberOffset;
 			if (digitsLength < character) {
 				character -= (utf16UpperCaseLettersOffset);
@@ -207,18 +259,20 @@ public class FastFiscalCodeBuilder implements FiscalCodeBuilder {
 		controlCharacterIndex %= upperCaseAlphabet.size();
 		final char controlCharacter = upperCaseAlphabet.get(controlCharacterIndex).charValue();
 		// Save it.
-		value[controlCharacterValueIndex] = controlCharacter;
+		value[offset + controlCharacterValueIndex] = controlCharacter;
 	}
 	
 	/**
-	 * Adds day of birth value to fiscal code {@link #value}.
+	 * Adds day of birth value to fiscal code {@code value}.
 	 * 
+	 * @param value
+	 *            fiscal code value being built
 	 * @param birthDate
 	 *            date of birth of the fiscal code referenced person
 	 * @param sex
 	 *            of the fiscal code referenced person
 	 */
-	private void addDayValue(final LocalDate birthDate, final SexIt sex) {
+	private void addDayValue(final char[] value, final LocalDate birthDate, final SexIt sex) {
 		int day = birthDate.getDayOfMonth();
 		day += sex.getFiscalCodeDayAddend(); // Females sum a special addend.
 		final char[] dayCharArray = converter.convert(Integer.valueOf(day));
@@ -232,55 +286,66 @@ public class FastFiscalCodeBuilder implements FiscalCodeBuilder {
 	}
 	
 	/**
-	 * Adds month of birth value value to fiscal code {@link #value}.
+	 * Adds month of birth value value to fiscal code {@code value}.
 	 * 
+	 * @param value
+	 *            fiscal code value being built
 	 * @param birthDate
 	 *            date of birth of the fiscal code referenced person
 	 */
-	private void addMonthValue(final LocalDate birthDate) {
-		value[monthValueIndex] = monthsValueTable[birthDate.getMonthOfYear() - 1];
+	private void addMonthValue(final char[] value, final LocalDate birthDate) {
+		value[monthValueIndex] = FiscalCodeTables.monthsValueTable[birthDate.getMonthOfYear() - 1];
 	}
 	
 	/**
-	 * Adds name value to fiscal code {@link #value}.
+	 * Adds name value to fiscal code {@code value}.
 	 * 
+	 * @param value
+	 *            fiscal code value being built
 	 * @param name
 	 *            of the fiscal code referenced person
 	 */
-	private void addNameValue(final String name) {
-		addXameValue(name, nameValueIndex);
+	private void addNameValue(final char[] value, final String name) {
+		addXameValue(value, name, nameValueIndex);
 	}
 	
 	/**
-	 * Adds place code value to fiscal code {@link #value}.
+	 * Adds place code value to fiscal code {@code value}.
 	 * 
+	 * @param value
+	 *            fiscal code value being built
 	 * @param placeCode
 	 *            of the fiscal code referenced person
 	 */
-	private void addPlaceCodeValue(final String placeCode) {
+	private void addPlaceCodeValue(final char[] value, final String placeCode) {
 		final char[] placeCodeValue = placeCode.toCharArray();
 		System.arraycopy(placeCodeValue, 0, value, placeCodeValueIndex, placeCodeValue.length); // Simply copy char by char.
 	}
 	
 	/**
-	 * Adds surname value to fiscal code {@link #value}.
+	 * Adds surname value to fiscal code {@code value}.
 	 * 
+	 * @param value
+	 *            fiscal code value being built
 	 * @param surname
 	 *            of the fiscal code referenced person
 	 */
-	private void addSurnameValue(final String surname) {
-		addXameValue(surname, surnameValueIndex);
+	private void addSurnameValue(final char[] value, final String surname) {
+		addXameValue(value, surname, surnameValueIndex);
 	}
 	
 	/**
-	 * Adds name or surname value to fiscal code {@link #value}.
+	 * Adds name or surname value to fiscal code {@code value}.
 	 * 
+	 * @param value
+	 *            fiscal code value being built
 	 * @param xame
 	 *            name or surname of the fiscal code referenced person
 	 * @param xameValueIndex
-	 *            {@link #nameValueIndex} or {@link #surnameValueIndex}
+	 *            {@link #nameValueIndex} or {@link #surnameValueIndex} index in
+	 *            {@code value}
 	 */
-	private void addXameValue(final String xame, final int xameValueIndex) {
+	void addXameValue(final char[] value, final CharSequence xame, final int xameValueIndex) {
 		int xameValueIndexLocal = 0;
 		for (int i = 0; (i < xame.length()) && (xameValueIndexLocal < xameValueLength); i++) { // Look for at most xameIndexLimit consonants.
 			final char character = xame.charAt(i);
@@ -299,17 +364,19 @@ public class FastFiscalCodeBuilder implements FiscalCodeBuilder {
 			}
 		}
 		for (; xameValueIndexLocal < xameValueLength; xameValueIndexLocal++) { // Fill with xameFillCharacter if less then xameValueLength consonants were found.
-			value[xameValueIndexLocal] = xameFillCharacter;
+			value[xameValueIndex + xameValueIndexLocal] = xameFillCharacter;
 		}
 	}
 	
 	/**
-	 * Adds year of birth value to fiscal code {@link #value}.
+	 * Adds year of birth value to fiscal code {@code value}.
 	 * 
+	 * @param value
+	 *            fiscal code value being built
 	 * @param birthDate
 	 *            date of birth of the fiscal code referenced person
 	 */
-	private void addYearValue(final LocalDate birthDate) {
+	private void addYearValue(final char[] value, final LocalDate birthDate) {
 		final int year = birthDate.getYear();
 		final char[] yearCharArray = converter.convert(Integer.valueOf(year));
 		value[yearValueIndex] = yearCharArray[yearCharArray.length - 2];
@@ -318,9 +385,52 @@ public class FastFiscalCodeBuilder implements FiscalCodeBuilder {
 	
 	/**
 	 * {@inheritDoc}
+	 * 
+	 * @throws IllegalStateException
+	 *             if this builder has no buffer of its own
 	 */
 	@Override
 	public FiscalCode build(
+			final LocalDate birthDate,
+			final Conditions conditions,
+			final String name,
+			final String placeCode,
+			final SexIt sex,
+			final String surname
+			) throws IllegalArgumentException, IllegalStateException {
+		final char[] value = this.value;
+		if (value == null) {
+			throw new IllegalStateException("No buffer, use build(char[], ...)"); //$NON-NLS-1$
+		}
+		return build(value, birthDate, conditions, name, placeCode, sex, surname);
+	}
+	
+	/**
+	 * Builds a new {@link FiscalCode} using {@code value} as working buffer.<br/>
+	 * Every character of {@code value} is overwritten, so callers owning a
+	 * buffer per thread can share this builder.
+	 * 
+	 * @param value
+	 *            fiscal code value being built, exactly {@link #valueLength}
+	 *            long
+	 * @param birthDate
+	 *            date of birth of the fiscal code referenced person
+	 * @param conditions
+	 *            check utility
+	 * @param name
+	 *            of the fiscal code referenced person
+	 * @param placeCode
+	 *            place of birth's code of the fiscal code referenced person
+	 * @param sex
+	 *            of the fiscal code referenced person
+	 * @param surname
+	 *            of the person
+	 * @return new {@link FiscalCode}
+	 * @throws IllegalArgumentException
+	 *             if any parameter is not valid
+	 */
+	FiscalCode build(
+			final char[] value,
 			final LocalDate birthDate,
 			final Conditions conditions,
 			final String name,
@@ -335,13 +445,13 @@ public class FastFiscalCodeBuilder implements FiscalCodeBuilder {
 		this.conditions.expression(fiscalCodeValidator.validateSex(sex));
 		this.conditions.expression(fiscalCodeValidator.validateSurname(surname));
 		// Build value.
-		addSurnameValue(surname);
-		addNameValue(name);
-		addYearValue(birthDate);
-		addMonthValue(birthDate);
-		addDayValue(birthDate, sex);
-		addPlaceCodeValue(placeCode);
-		addControlCharacterValue();
+		addSurnameValue(value, surname);
+		addNameValue(value, name);
+		addYearValue(value, birthDate);
+		addMonthValue(value, birthDate);
+		addDayValue(value, birthDate, sex);
+		addPlaceCodeValue(value, placeCode);
+		addControlCharacterValue(value, 0);
 		// Build result and return.
 		final FiscalCode fiscalCode = new FiscalCode(
 				birthDate,
@@ -355,6 +465,115 @@ public class FastFiscalCodeBuilder implements FiscalCodeBuilder {
 		return fiscalCode;
 	}
 	
+	/**
+	 * Encodes the fiscal code of the given person straight into
+	 * {@code destination} starting at {@code offset}, the same value
+	 * {@link #build(LocalDate, Conditions, String, String, SexIt, String)}
+	 * would return.<br/>
+	 * Nothing is allocated, so it fits bulk generation; also thread safe.
+	 * 
+	 * @param destination
+	 *            where to write the {@link #valueLength} fiscal code
+	 *            characters
+	 * @param offset
+	 *            first index of {@code destination} to write
+	 * @param surname
+	 *            of the fiscal code referenced person
+	 * @param name
+	 *            of the fiscal code referenced person
+	 * @param year
+	 *            year of birth of the fiscal code referenced person
+	 * @param month
+	 *            month of birth, from 1 to 12
+	 * @param day
+	 *            day of month of birth, from 1
+	 * @param sex
+	 *            of the fiscal code referenced person
+	 * @param placeCode
+	 *            place of birth's code of the fiscal code referenced person
+	 * @return index of {@code destination} following the fiscal code
+	 * @throws IllegalArgumentException
+	 *             if any parameter is not valid
+	 */
+	public int encodeInto(
+			final char[] destination,
+			final int offset,
+			final String surname,
+			final String name,
+			final int year,
+			final int month,
+			final int day,
+			final SexIt sex,
+			final String placeCode
+			) throws IllegalArgumentException {
+		// Validate parameters.
+		validateEncoding(destination.length, offset, surname, name, year, month, day, sex, placeCode);
+		// Build value.
+		addXameValue(destination, surname, offset + surnameValueIndex);
+		addXameValue(destination, name, offset + nameValueIndex);
+		final int yearOfCentury = year % 100;
+		destination[offset + yearValueIndex] = (char) (utf16NumberOffset + (yearOfCentury / 10));
+		destination[offset + yearValueIndex + 1] = (char) (utf16NumberOffset + (yearOfCentury % 10));
+		destination[offset + monthValueIndex] = FiscalCodeTables.monthsValueTable[month - 1];
+		final int dayValue = day + sex.getFiscalCodeDayAddend(); // Females sum a special addend.
+		destination[offset + dayValueIndex] = (char) (utf16NumberOffset + (dayValue / 10));
+		destination[offset + dayValueIndex + 1] = (char) (utf16NumberOffset + (dayValue % 10));
+		placeCode.getChars(0, placeCode.length(), destination, offset + placeCodeValueIndex);
+		addControlCharacterValue(destination, offset);
+		return offset + valueLength;
+	}
+	
+	/**
+	 * Encodes the fiscal code of the given person straight into
+	 * {@code destination} starting at {@code offset} as ASCII bytes.<br/>
+	 * Nothing is allocated but a per thread working value the first time a
+	 * thread calls this method.
+	 * 
+	 * @param destination
+	 *            where to write the {@link #valueLength} fiscal code
+	 *            characters
+	 * @param offset
+	 *            first index of {@code destination} to write
+	 * @param surname
+	 *            of the fiscal code referenced person
+	 * @param name
+	 *            of the fiscal code referenced person
+	 * @param year
+	 *            year of birth of the fiscal code referenced person
+	 * @param month
+	 *            month of birth, from 1 to 12
+	 * @param day
+	 *            day of month of birth, from 1
+	 * @param sex
+	 *            of the fiscal code referenced person
+	 * @param placeCode
+	 *            place of birth's code of the fiscal code referenced person
+	 * @return index of {@code destination} following the fiscal code
+	 * @throws IllegalArgumentException
+	 *             if any parameter is not valid
+	 * @see #encodeInto(char[], int, String, String, int, int, int, SexIt,
+	 *      String)
+	 */
+	public int encodeInto(
+			final byte[] destination,
+			final int offset,
+			final String surname,
+			final String name,
+			final int year,
+			final int month,
+			final int day,
+			final SexIt sex,
+			final String placeCode
+			) throws IllegalArgumentException {
+		conditions.expression((0 <= offset) && (offset <= (destination.length - valueLength)));
+		final char[] value = encodingValue.get();
+		encodeInto(value, 0, surname, name, year, month, day, sex, placeCode);
+		for (int i = 0; i < valueLength; i++) { // ASCII only, so narrowing is lossless.
+			destination[offset + i] = (byte) value[i];
+		}
+		return offset + valueLength;
+	}
+	
 	/**
 	 * {@inheritDoc}<br/>
 	 * <br/>
@@ -365,4 +584,72 @@ public class FastFiscalCodeBuilder implements FiscalCodeBuilder {
 		return ToStringBuilder.reflectionToString(this);
 	}
 	
+	/**
+	 * Validates
+	 * {@link #encodeInto(char[], int, String, String, int, int, int, SexIt, String)}
+	 * parameters without allocating.
+	 * 
+	 * @param destinationLength
+	 *            length of the destination array
+	 * @param offset
+	 *            first index of the destination array to write
+	 * @param surname
+	 *            of the fiscal code referenced person
+	 * @param name
+	 *            of the fiscal code referenced person
+	 * @param year
+	 *            year of birth of the fiscal code referenced person
+	 * @param month
+	 *            month of birth, from 1 to 12
+	 * @param day
+	 *            day of month of birth, from 1
+	 * @param sex
+	 *            of the fiscal code referenced person
+	 * @param placeCode
+	 *            place of birth's code of the fiscal code referenced person
+	 * @throws IllegalArgumentException
+	 *             if any parameter is not valid
+	 */
+	private void validateEncoding(
+			final int destinationLength,
+			final int offset,
+			final @Nullable String surname,
+			final @Nullable String name,
+			final int year,
+			final int month,
+			final int day,
+			final @Nullable SexIt sex,
+			final @Nullable String placeCode
+			) throws IllegalArgumentException {
+		conditions.expression((0 <= offset) && (offset <= (destinationLength - valueLength)));
+		conditions.expression(validateXame(surname));
+		conditions.expression(validateXame(name));
+		conditions.expression((minYear <= year) && (1 <= month) && (month <= FiscalCodeTables.monthsValueTable.length));
+		conditions.expression((1 <= day) && (day <= FiscalCodeTables.daysOfMonth(year, month)));
+		conditions.expression(fiscalCodeValidator.validateSex(sex));
+		conditions.expression(fiscalCodeValidator.validatePlaceCode(placeCode));
+	}
+	
+	/**
+	 * Checks if {@code xame} (means "name" or "surname") is made of upper case
+	 * letters only, like {@link StandardFiscalCodeValidator#validateName(String)}
+	 * does but without allocating.
+	 * 
+	 * @param xame
+	 *            to validate
+	 * @return {@code true} if it is valid, {@code false} otherwise
+	 */
+	private boolean validateXame(final @Nullable String xame) {
+		if (xame == null) {
+			return false;
+		}
+		for (int i = 0; i < xame.length(); i++) {
+			final char character = xame.charAt(i);
+			if ((character < 'A') || ('Z' < character)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 }
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.lole.it.Female;
+import it.assetdata.lole.it.Male;
+import it.assetdata.lole.it.SexIt;
+import it.assetdata.valid.Conditions;
+
+import java.io.Serializable;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.joda.time.LocalDate;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Decodes fiscal code values back to {@link FiscalCode}s: birth date, sex,
+ * place code, surname and name segments.<br/>
+ * Works in one table driven pass that validates the code, canonical or with
+ * omocodia, and extracts every field at once. As fiscal codes only hold the
+ * last two digits of the birth year, the century is chosen so that the birth
+ * year is not after a pivot year.
+ */
+@Immutable
+public class FiscalCodeDecoder implements Serializable {
+	
+	/**
+	 * Control character starting index.
+	 */
+	private static final int controlCharacterIndex = 15;
+	
+	/**
+	 * Day of birth value starting index.
+	 */
+	private static final int dayValueIndex = 9;
+	
+	/**
+	 * Fiscal code value length.
+	 */
+	private static final int fiscalCodeLength = 16;
+	
+	/**
+	 * Month of birth value index.
+	 */
+	private static final int monthValueIndex = 8;
+	
+	/**
+	 * Name value starting index.
+	 */
+	private static final int nameValueIndex = 3;
+	
+	/**
+	 * Place code value starting index.
+	 */
+	private static final int placeCodeValueIndex = 11;
+	
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Surname and name values length.
+	 */
+	private static final int xameValueLength = 3;
+	
+	/**
+	 * Year of birth value starting index.
+	 */
+	private static final int yearValueIndex = 6;
+	
+	/**
+	 * Conditions check utility.
+	 */
+	private final Conditions conditions;
+	
+	/**
+	 * Latest birth year decoded codes can have.
+	 */
+	private final int pivotYear;
+	
+	/**
+	 * Reference upper case alphabet.
+	 */
+	private final ImmutableList<Character> upperCaseAlphabet;
+	
+	/**
+	 * Constructor using the current year as pivot year, so nobody is decoded
+	 * as born in the future.
+	 * 
+	 * @param conditions
+	 *            check utility
+	 * @param upperCaseAlphabet
+	 *            reference upper case alphabet
+	 */
+	public FiscalCodeDecoder(final Conditions conditions, final ImmutableList<Character> upperCaseAlphabet) {
+		this(conditions, upperCaseAlphabet, new LocalDate().getYear());
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param conditions
+	 *            check utility
+	 * @param upperCaseAlphabet
+	 *            reference upper case alphabet
+	 * @param pivotYear
+	 *            latest birth year decoded codes can have: two digit years
+	 *            up to its last two digits are in its century, the others in
+	 *            the previous one
+	 */
+	public FiscalCodeDecoder(final Conditions conditions, final ImmutableList<Character> upperCaseAlphabet, final int pivotYear) {
+		this.conditions = conditions;
+		this.pivotYear = pivotYear;
+		this.upperCaseAlphabet = upperCaseAlphabet;
+	}
+	
+	/**
+	 * Decodes {@code fiscalCode}.<br/>
+	 * Omocodia letters are read as the digits they replace, so the decoded
+	 * place code is canonical, while {@link FiscalCode#getValue()} is
+	 * {@code fiscalCode} as it is. {@link FiscalCode#getSurname()} and
+	 * {@link FiscalCode#getName()} are the three letter segments of the code,
+	 * as the full ones cannot be recovered.
+	 * 
+	 * @param fiscalCode
+	 *            to decode
+	 * @return decoded fiscal code, {@code null} if {@code fiscalCode} is not
+	 *         valid according to
+	 *         {@link StandardFiscalCodeValidator#validate(String)} or does
+	 *         not hold an existing birth date
+	 */
+	public @Nullable
+	FiscalCode decode(final @Nullable CharSequence fiscalCode) {
+		if (!validate(fiscalCode)) {
+			return null;
+		}
+		final String value = fiscalCode.toString();
+		return new FiscalCode(
+				decodeBirthDate(value),
+				conditions,
+				Character.valueOf(value.charAt(controlCharacterIndex)),
+				value.substring(nameValueIndex, nameValueIndex + xameValueLength),
+				decodePlaceCode(value),
+				decodeSex(value),
+				value.substring(0, xameValueLength),
+				value);
+	}
+	
+	/**
+	 * Decodes the birth date of {@code fiscalCode}.
+	 * 
+	 * @param fiscalCode
+	 *            valid fiscal code
+	 * @return birth date
+	 */
+	LocalDate decodeBirthDate(final CharSequence fiscalCode) {
+		return new LocalDate(decodeYear(fiscalCode), FiscalCodeTables.monthTable[fiscalCode.charAt(monthValueIndex)], decodeDay(fiscalCode));
+	}
+	
+	/**
+	 * Decodes the day of month of birth of {@code fiscalCode}.
+	 * 
+	 * @param fiscalCode
+	 *            well formed fiscal code
+	 * @return day of month, without the female addend
+	 */
+	private static int decodeDay(final CharSequence fiscalCode) {
+		final int dayValue = (digit(fiscalCode, dayValueIndex) * 10) + digit(fiscalCode, dayValueIndex + 1);
+		return dayValue % Female.getInstance().getFiscalCodeDayAddend(); // Days are up to 31.
+	}
+	
+	/**
+	 * Decodes {@code fiscalCode} without decoding any of its fields, which
+	 * are decoded on demand by the returned fiscal code.
+	 * 
+	 * @param fiscalCode
+	 *            to decode
+	 * @return decoded fiscal code, {@code null} if {@code fiscalCode} is not
+	 *         valid like for {@link #decode(CharSequence)}
+	 */
+	public @Nullable
+	LazyFiscalCode decodeLazily(final @Nullable CharSequence fiscalCode) {
+		return validate(fiscalCode) ? new LazyFiscalCode(this, fiscalCode) : null;
+	}
+	
+	/**
+	 * Decodes the canonical place code of {@code fiscalCode}.
+	 * 
+	 * @param fiscalCode
+	 *            well formed fiscal code
+	 * @return place code
+	 */
+	static String decodePlaceCode(final CharSequence fiscalCode) {
+		final char[] placeCode = {
+				fiscalCode.charAt(placeCodeValueIndex),
+				FiscalCodeTables.canonicalDigitTable[fiscalCode.charAt(placeCodeValueIndex + 1)],
+				FiscalCodeTables.canonicalDigitTable[fiscalCode.charAt(placeCodeValueIndex + 2)],
+				FiscalCodeTables.canonicalDigitTable[fiscalCode.charAt(placeCodeValueIndex + 3)] };
+		return String.valueOf(placeCode);
+	}
+	
+	/**
+	 * Decodes the sex of {@code fiscalCode}.
+	 * 
+	 * @param fiscalCode
+	 *            well formed fiscal code
+	 * @return shared {@link Male} or {@link Female} instance
+	 */
+	static SexIt decodeSex(final CharSequence fiscalCode) {
+		return (digit(fiscalCode, dayValueIndex) >= (Female.getInstance().getFiscalCodeDayAddend() / 10)) ? Female.getInstance() : Male.getInstance();
+	}
+	
+	/**
+	 * Decodes the year of birth of {@code fiscalCode}.
+	 * 
+	 * @param fiscalCode
+	 *            well formed fiscal code
+	 * @return the latest year not after {@link #pivotYear} ending with the
+	 *         two digits of {@code fiscalCode}
+	 */
+	private int decodeYear(final CharSequence fiscalCode) {
+		final int twoDigitYear = (digit(fiscalCode, yearValueIndex) * 10) + digit(fiscalCode, yearValueIndex + 1);
+		final int year = (pivotYear - (pivotYear % 100)) + twoDigitYear;
+		return (year > pivotYear) ? (year - 100) : year;
+	}
+	
+	/**
+	 * Reads the digit at {@code index}, or the one an omocodia letter
+	 * replaces.
+	 * 
+	 * @param fiscalCode
+	 *            well formed fiscal code
+	 * @param index
+	 *            of a digit position
+	 * @return digit value, from 0 to 9
+	 */
+	static int digit(final CharSequence fiscalCode, final int index) {
+		return FiscalCodeTables.canonicalDigitTable[fiscalCode.charAt(index)] - '0';
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+	/**
+	 * Checks {@code fiscalCode} in one pass: structure, allowing omocodia,
+	 * control character and birth date.
+	 * 
+	 * @param fiscalCode
+	 *            to check
+	 * @return {@code true} if it can be decoded, {@code false} otherwise
+	 */
+	private boolean validate(final @Nullable CharSequence fiscalCode) {
+		if ((fiscalCode == null) || (fiscalCode.length() != fiscalCodeLength)) {
+			return false;
+		}
+		int structureMismatch = 0;
+		int controlCharacterValue = 0;
+		for (int i = 0; i < controlCharacterIndex; i++) {
+			final int character = fiscalCode.charAt(i);
+			structureMismatch |= FiscalCodeTables.omocodicStructureMismatch(i, character);
+			controlCharacterValue += FiscalCodeTables.positionValue(i, character & 0x7F); // Out of range characters are a structure mismatch anyway.
+		}
+		final char controlCharacter = fiscalCode.charAt(controlCharacterIndex);
+		structureMismatch |= FiscalCodeTables.omocodicStructureMismatch(controlCharacterIndex, controlCharacter);
+		if ((structureMismatch != 0) || (controlCharacter != FiscalCodeTables.controlCharacter(upperCaseAlphabet, controlCharacterValue))) {
+			return false;
+		}
+		final int month = FiscalCodeTables.monthTable[fiscalCode.charAt(monthValueIndex)];
+		final int dayValue = (digit(fiscalCode, dayValueIndex) * 10) + digit(fiscalCode, dayValueIndex + 1);
+		final int day = dayValue % Female.getInstance().getFiscalCodeDayAddend();
+		return (month != 0) && (day >= 1) && (dayValue < 72) && (day <= FiscalCodeTables.daysOfMonth(decodeYear(fiscalCode), month));
+	}
+	
+}
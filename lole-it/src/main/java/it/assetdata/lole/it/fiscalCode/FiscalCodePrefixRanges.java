@@ -0,0 +1,435 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.lole.it.SexIt;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Turns partial personal data into the ranges of packed fiscal codes, see
+ * {@link PackedFiscalCode}, that the codes of the matching people can fall
+ * in, so that sorted code indexes can be searched with range scans instead
+ * of full scans.<br/>
+ * Segments are encoded by {@link FastFiscalCodeBuilder}, in code order, up
+ * to the first unknown datum: surname, name, year of birth, month of birth,
+ * day of birth and sex, place of birth code. When only the sex is known of
+ * the day and sex segment, its first digit is a range. Data after the first
+ * unknown one do not narrow the ranges, check them on the codes found.<br/>
+ * Every digit of the known segments may be replaced by omocodia, so every
+ * subset of them gives a range: the ranges are disjoint and come in
+ * ascending order, so a single forward scan can visit all of them.<br/>
+ * Usage:
+ * 
+ * <pre>
+ * if (ranges.reset(surname, name, year, unknown, unknown, null, null)) {
+ * 	while (ranges.next()) {
+ * 		scan(ranges.getFromHigh(), ranges.getFromLow(), ranges.getToHigh(), ranges.getToLow());
+ * 	}
+ * }
+ * </pre>
+ */
+@NotThreadSafe
+public class FiscalCodePrefixRanges {
+	
+	/**
+	 * Day of birth starting index.
+	 */
+	private static final int dayValueIndex = 9;
+	
+	/**
+	 * Fiscal code value length.
+	 */
+	private static final int fiscalCodeLength = 16;
+	
+	/**
+	 * Maximum day of month.
+	 */
+	private static final int maxDay = 31;
+	
+	/**
+	 * Month of birth starting index.
+	 */
+	private static final int monthValueIndex = 8;
+	
+	/**
+	 * Name starting index.
+	 */
+	private static final int nameValueIndex = 3;
+	
+	/**
+	 * Place code length.
+	 */
+	private static final int placeCodeLength = 4;
+	
+	/**
+	 * Place code starting index.
+	 */
+	private static final int placeCodeValueIndex = 11;
+	
+	/**
+	 * Surname starting index.
+	 */
+	private static final int surnameValueIndex = 0;
+	
+	/**
+	 * Value of unknown numeric data.
+	 */
+	public static final int unknown = 0;
+	
+	/**
+	 * Year of birth starting index.
+	 */
+	private static final int yearValueIndex = 6;
+	
+	/**
+	 * Lower bound of the current range, canonical digits.
+	 */
+	private final char[] canonicalFrom = new char[fiscalCodeLength];
+	
+	/**
+	 * Upper bound of the current range, canonical digits.
+	 */
+	private final char[] canonicalTo = new char[fiscalCodeLength];
+	
+	/**
+	 * Digit positions that omocodia can replace in the known segments, from
+	 * the leftmost.
+	 */
+	private final int[] digitPositions = new int[FiscalCodeTables.omocodicPositions.length];
+	
+	/**
+	 * Number of digit positions that omocodia can replace in the known
+	 * segments.
+	 */
+	private int digitsCount;
+	
+	/**
+	 * Segment encoder.
+	 */
+	private final FastFiscalCodeBuilder fastFiscalCodeBuilder;
+	
+	/**
+	 * Lower bound of the current range.
+	 */
+	private final char[] from = new char[fiscalCodeLength];
+	
+	/**
+	 * Packed lower bound of the current range, high half.
+	 */
+	private long fromHigh;
+	
+	/**
+	 * Packed lower bound of the current range, low half.
+	 */
+	private long fromLow;
+	
+	/**
+	 * Current range mask: bit {@code digitsCount - 1 - i} is set if the digit
+	 * at {@code digitPositions[i]} is replaced; {@code -1} before the first
+	 * range.
+	 */
+	private int mask;
+	
+	/**
+	 * Number of leading characters of the codes fixed by the known data, not
+	 * counting omocodia.
+	 */
+	private int prefixLength;
+	
+	/**
+	 * Number of ranges.
+	 */
+	private int rangesCount;
+	
+	/**
+	 * Upper bound of the current range.
+	 */
+	private final char[] to = new char[fiscalCodeLength];
+	
+	/**
+	 * Packed upper bound of the current range, high half.
+	 */
+	private long toHigh;
+	
+	/**
+	 * Packed upper bound of the current range, low half.
+	 */
+	private long toLow;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param fastFiscalCodeBuilder
+	 *            segment encoder
+	 */
+	public FiscalCodePrefixRanges(final FastFiscalCodeBuilder fastFiscalCodeBuilder) {
+		this.fastFiscalCodeBuilder = fastFiscalCodeBuilder;
+	}
+	
+	/**
+	 * Checks if {@code placeCode} is a canonical place code: a letter then
+	 * three digits.
+	 * 
+	 * @param placeCode
+	 *            to validate
+	 * @return {@code true} if it is valid, {@code false} otherwise
+	 */
+	private static boolean validatePlaceCode(final String placeCode) {
+		if (placeCode.length() != placeCodeLength) {
+			return false;
+		}
+		int structureMismatch = 0;
+		for (int i = 0; i < placeCodeLength; i++) {
+			structureMismatch |= FiscalCodeTables.structureMismatch(placeCodeValueIndex + i, placeCode.charAt(i));
+		}
+		return structureMismatch == 0;
+	}
+	
+	/**
+	 * Checks if {@code xame} (means "name" or "surname") is made of upper case
+	 * letters only.
+	 * 
+	 * @param xame
+	 *            to validate
+	 * @return {@code true} if it is valid, {@code false} otherwise
+	 */
+	private static boolean validateXame(final String xame) {
+		for (int i = 0; i < xame.length(); i++) {
+			final char character = xame.charAt(i);
+			if ((character < 'A') || ('Z' < character)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Writes a digit into both bounds of the range, known characters.
+	 * 
+	 * @param index
+	 *            of the digit
+	 * @param digit
+	 *            from 0 to 9
+	 */
+	private void addDigit(final int index, final int digit) {
+		canonicalFrom[index] = (char) ('0' + digit);
+		canonicalTo[index] = canonicalFrom[index];
+		digitPositions[digitsCount++] = index;
+	}
+	
+	/**
+	 * Sets the known characters, then the range of the next character if
+	 * any, and pads both bounds.
+	 * 
+	 * @param length
+	 *            number of known characters
+	 * @param nextFrom
+	 *            lower bound of the next character, {@code 0} if the range of
+	 *            the next character is open
+	 * @param nextTo
+	 *            upper bound of the next character
+	 */
+	private void close(final int length, final char nextFrom, final char nextTo) {
+		prefixLength = length;
+		int padding = length;
+		if (nextFrom != 0) {
+			canonicalFrom[length] = nextFrom;
+			canonicalTo[length] = nextTo;
+			digitPositions[digitsCount++] = length;
+			padding++;
+		}
+		Arrays.fill(canonicalFrom, padding, fiscalCodeLength, '0');
+		Arrays.fill(canonicalTo, padding, fiscalCodeLength, 'Z');
+		rangesCount = 1 << digitsCount;
+		mask = -1;
+	}
+	
+	/**
+	 * @return packed lower bound of the current range, high half
+	 */
+	public long getFromHigh() {
+		return fromHigh;
+	}
+	
+	/**
+	 * @return packed lower bound of the current range, low half
+	 */
+	public long getFromLow() {
+		return fromLow;
+	}
+	
+	/**
+	 * @return number of leading characters of the codes fixed by the known
+	 *         data, not counting omocodia
+	 */
+	public int getPrefixLength() {
+		return prefixLength;
+	}
+	
+	/**
+	 * @return number of ranges
+	 */
+	public int getRangesCount() {
+		return rangesCount;
+	}
+	
+	/**
+	 * @return packed upper bound of the current range, included, high half
+	 */
+	public long getToHigh() {
+		return toHigh;
+	}
+	
+	/**
+	 * @return packed upper bound of the current range, included, low half
+	 */
+	public long getToLow() {
+		return toLow;
+	}
+	
+	/**
+	 * Moves to the next range.
+	 * 
+	 * @return {@code true} if there is a next range, {@code false} if every
+	 *         range has been enumerated
+	 */
+	public boolean next() {
+		if ((mask + 1) >= rangesCount) {
+			mask = rangesCount;
+			return false;
+		}
+		mask++;
+		System.arraycopy(canonicalFrom, 0, from, 0, fiscalCodeLength);
+		System.arraycopy(canonicalTo, 0, to, 0, fiscalCodeLength);
+		for (int i = 0; i < digitsCount; i++) {
+			if ((mask & (1 << (digitsCount - 1 - i))) != 0) { // Leftmost digits are the most significant bits, so ranges are ascending.
+				final int position = digitPositions[i];
+				from[position] = FiscalCodeTables.omocodicLetterTable[from[position] - '0'];
+				to[position] = FiscalCodeTables.omocodicLetterTable[to[position] - '0'];
+			}
+		}
+		fromHigh = PackedFiscalCode.pack(from, 0);
+		fromLow = PackedFiscalCode.pack(from, PackedFiscalCode.charactersPerLong);
+		toHigh = PackedFiscalCode.pack(to, 0);
+		toLow = PackedFiscalCode.pack(to, PackedFiscalCode.charactersPerLong);
+		return true;
+	}
+	
+	/**
+	 * Starts enumerating the ranges of the codes of the people matching the
+	 * given data.
+	 * 
+	 * @param surname
+	 *            surname, {@code null} if unknown
+	 * @param name
+	 *            name, {@code null} if unknown
+	 * @param year
+	 *            year of birth, {@link #unknown} if unknown
+	 * @param month
+	 *            month of birth, from 1 to 12, {@link #unknown} if unknown
+	 * @param day
+	 *            day of month of birth, from 1, {@link #unknown} if unknown
+	 * @param sex
+	 *            sex, {@code null} if unknown
+	 * @param placeCode
+	 *            place of birth's code, {@code null} if unknown
+	 * @return {@code true} if every known datum can be encoded,
+	 *         {@code false} otherwise and there is nothing to enumerate
+	 */
+	public boolean reset(
+			final @Nullable String surname,
+			final @Nullable String name,
+			final int year,
+			final int month,
+			final int day,
+			final @Nullable SexIt sex,
+			final @Nullable String placeCode) {
+		rangesCount = 0;
+		mask = 0;
+		digitsCount = 0;
+		if (((surname != null) && !validateXame(surname))
+				|| ((name != null) && !validateXame(name))
+				|| (year < 0)
+				|| (month < 0) || (FiscalCodeTables.monthsValueTable.length < month)
+				|| (day < 0) || (maxDay < day)
+				|| ((placeCode != null) && !validatePlaceCode(placeCode))) {
+			return false;
+		}
+		if (surname == null) {
+			close(surnameValueIndex, (char) 0, (char) 0);
+			return true;
+		}
+		fastFiscalCodeBuilder.addXameValue(canonicalFrom, surname, surnameValueIndex);
+		System.arraycopy(canonicalFrom, surnameValueIndex, canonicalTo, surnameValueIndex, nameValueIndex - surnameValueIndex);
+		if (name == null) {
+			close(nameValueIndex, (char) 0, (char) 0);
+			return true;
+		}
+		fastFiscalCodeBuilder.addXameValue(canonicalFrom, name, nameValueIndex);
+		System.arraycopy(canonicalFrom, nameValueIndex, canonicalTo, nameValueIndex, yearValueIndex - nameValueIndex);
+		if (year == unknown) {
+			close(yearValueIndex, (char) 0, (char) 0);
+			return true;
+		}
+		addDigit(yearValueIndex, (year % 100) / 10);
+		addDigit(yearValueIndex + 1, year % 10);
+		if (month == unknown) {
+			close(monthValueIndex, (char) 0, (char) 0);
+			return true;
+		}
+		canonicalFrom[monthValueIndex] = FiscalCodeTables.monthsValueTable[month - 1];
+		canonicalTo[monthValueIndex] = canonicalFrom[monthValueIndex];
+		if (sex == null) {
+			close(dayValueIndex, (char) 0, (char) 0);
+			return true;
+		}
+		final int addend = sex.getFiscalCodeDayAddend();
+		if (day == unknown) {
+			close(dayValueIndex, (char) ('0' + (addend / 10)), (char) ('0' + ((addend + maxDay) / 10)));
+			return true;
+		}
+		addDigit(dayValueIndex, (day + addend) / 10);
+		addDigit(dayValueIndex + 1, (day + addend) % 10);
+		if (placeCode == null) {
+			close(placeCodeValueIndex, (char) 0, (char) 0);
+			return true;
+		}
+		canonicalFrom[placeCodeValueIndex] = placeCode.charAt(0);
+		canonicalTo[placeCodeValueIndex] = canonicalFrom[placeCodeValueIndex];
+		for (int i = 1; i < placeCodeLength; i++) {
+			addDigit(placeCodeValueIndex + i, placeCode.charAt(i) - '0');
+		}
+		close(placeCodeValueIndex + placeCodeLength, (char) 0, (char) 0);
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import java.util.Arrays;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Fiscal code coding tables indexed by ASCII character, shared by the
+ * implementations that work on raw characters or bytes.<br/>
+ * Characters that cannot appear in a fiscal code map to {@link #invalid} or
+ * to no class, so any input can be looked up without range checks other than
+ * {@code character < }{@link #asciiLength}.
+ */
+final class FiscalCodeTables {
+	
+	/**
+	 * Number of ASCII characters.
+	 */
+	static final int asciiLength = 128;
+	
+	/**
+	 * ASCII characters that can stand for a digit mapped to that digit: digits
+	 * themselves and omocodia letters; {@code 0} for any other character.
+	 */
+	static final char[] canonicalDigitTable = new char[asciiLength];
+	
+	/**
+	 * ASCII characters with lower case letters folded to upper case ones.
+	 */
+	static final char[] caseFoldingTable = new char[asciiLength];
+	
+	/**
+	 * Class bits of ASCII characters: {@link #digit}, {@link #letter} (and
+	 * {@link #omocodicDigit}), {@link #separator} or none.
+	 */
+	static final byte[] characterClassTable = new byte[asciiLength];
+	
+	/**
+	 * Days of month of a non leap year, from January to December.
+	 */
+	private static final int[] daysOfMonthTable = {
+			31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+	
+	/**
+	 * Class bit of digits.
+	 */
+	static final byte digit = 1;
+	
+	/**
+	 * Fiscal code even characters coding table to calculate control
+	 * character, for digits then upper case letters.
+	 */
+	private static final int[] evenCharactersValueTable = {
+			0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12,
+			13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25 };
+	
+	/**
+	 * Value of characters that cannot appear in a fiscal code.
+	 */
+	static final int invalid = -1;
+	
+	/**
+	 * Class bit of upper case letters.
+	 */
+	static final byte letter = 2;
+	
+	/**
+	 * Months, from 1 to 12, of ASCII characters that code a month of birth;
+	 * {@code 0} for any other character.
+	 */
+	static final byte[] monthTable = new byte[asciiLength];
+	
+	/**
+	 * Month of birth value coding table.
+	 */
+	static final char[] monthsValueTable = {
+			'A', 'B', 'C', 'D', 'E', 'H', 'L', 'M', 'P', 'R', 'S', 'T' };
+	
+	/**
+	 * Class bit of the letters replacing digits to resolve omocodia.
+	 */
+	static final byte omocodicDigit = 8;
+	
+	/**
+	 * Letters replacing digits from 0 to 9 to resolve omocodia.
+	 */
+	static final char[] omocodicLetterTable = {
+			'L', 'M', 'N', 'P', 'Q', 'R', 'S', 'T', 'U', 'V' };
+	
+	/**
+	 * Character classes allowed at every position of a fiscal code with
+	 * omocodia: like {@link #positionClassTable} but digit positions also
+	 * allow {@link #omocodicDigit} letters.
+	 */
+	static final byte[] omocodicPositionClassTable = {
+			letter, letter, letter, letter, letter, letter, digit | omocodicDigit, digit | omocodicDigit,
+			letter, digit | omocodicDigit, digit | omocodicDigit, letter, digit | omocodicDigit, digit | omocodicDigit, digit | omocodicDigit, letter };
+	
+	/**
+	 * Digit positions that omocodia can replace with letters, from the
+	 * rightmost to the leftmost as they are replaced by the Revenue Agency.
+	 */
+	static final int[] omocodicPositions = { 14, 13, 12, 10, 9, 7, 6 };
+	
+	/**
+	 * Fiscal code odd characters coding table to calculate control
+	 * character, for digits then upper case letters.
+	 */
+	private static final int[] oddCharactersValueTable = {
+			1, 0, 5, 7, 9, 13, 15, 17, 19, 21, 1, 0, 5, 7, 9, 13, 15, 17, 19, 21,
+			2, 4, 18, 20, 11, 3, 6, 8, 12, 14, 16, 10, 22, 25, 24, 23 };
+	
+	/**
+	 * Character classes allowed at every position of a standard fiscal code:
+	 * letters for surname, name, month, place code initial and control
+	 * character, digits elsewhere.
+	 */
+	static final byte[] positionClassTable = {
+			letter, letter, letter, letter, letter, letter, digit, digit,
+			letter, digit, digit, letter, digit, digit, digit, letter };
+	
+	/**
+	 * Control character values of ASCII characters: odd (1-based) positions
+	 * from index 0, even positions from index {@link #asciiLength}.
+	 */
+	static final int[] positionValueTable = new int[2 * asciiLength];
+	
+	/**
+	 * Class bit of the characters a tolerant validation skips: blanks,
+	 * {@code '-'}, {@code '.'} and {@code '/'}.
+	 */
+	static final byte separator = 4;
+	
+	static {
+		Arrays.fill(positionValueTable, invalid);
+		for (int i = 0; i < asciiLength; i++) {
+			caseFoldingTable[i] = (('a' <= i) && (i <= 'z')) ? (char) (i - 'a' + 'A') : (char) i;
+		}
+		characterClassTable[' '] = separator;
+		characterClassTable['\t'] = separator;
+		characterClassTable['-'] = separator;
+		characterClassTable['.'] = separator;
+		characterClassTable['/'] = separator;
+		for (int i = 0; i < 10; i++) {
+			canonicalDigitTable['0' + i] = (char) ('0' + i);
+			canonicalDigitTable[omocodicLetterTable[i]] = (char) ('0' + i);
+			characterClassTable['0' + i] = digit;
+			positionValueTable['0' + i] = oddCharactersValueTable[i];
+			positionValueTable[asciiLength + '0' + i] = evenCharactersValueTable[i];
+		}
+		for (int i = 0; i < 26; i++) {
+			characterClassTable['A' + i] = letter;
+			positionValueTable['A' + i] = oddCharactersValueTable[10 + i];
+			positionValueTable[asciiLength + 'A' + i] = evenCharactersValueTable[10 + i];
+		}
+		for (final char omocodicLetter : omocodicLetterTable) {
+			characterClassTable[omocodicLetter] |= omocodicDigit;
+		}
+		for (int i = 0; i < monthsValueTable.length; i++) {
+			monthTable[monthsValueTable[i]] = (byte) (i + 1);
+		}
+	}
+	
+	/**
+	 * Not instantiable.
+	 */
+	private FiscalCodeTables() {
+		// Utility class.
+	}
+	
+	/**
+	 * Checks {@code character} against the classes {@code allowed} with no
+	 * branches.
+	 * 
+	 * @param allowed
+	 *            class bits, any of them is enough
+	 * @param character
+	 *            character, any non negative value
+	 * @return {@code 0} if {@code character} is allowed, {@code 1} otherwise
+	 */
+	private static int classMismatch(final int allowed, final int character) {
+		return (character >>> 7) | (((characterClassTable[character & 0x7F] & allowed) - 1) >>> 31);
+	}
+	
+	/**
+	 * Converts the sum of the control character values of the characters of
+	 * a fiscal code to its control character.
+	 * 
+	 * @param upperCaseAlphabet
+	 *            reference upper case alphabet
+	 * @param controlCharacterValue
+	 *            sum of the values, see {@link #positionValue(int, int)}
+	 * @return control character
+	 */
+	static char controlCharacter(final ImmutableList<Character> upperCaseAlphabet, final int controlCharacterValue) {
+		return upperCaseAlphabet.get(controlCharacterValue % upperCaseAlphabet.size()).charValue();
+	}
+	
+	/**
+	 * Returns the number of days of {@code month}.
+	 * 
+	 * @param year
+	 *            year, to account for leap years
+	 * @param month
+	 *            from 1 to 12
+	 * @return days of month
+	 */
+	static int daysOfMonth(final int year, final int month) {
+		final boolean leapYear = ((year % 4) == 0) && (((year % 100) != 0) || ((year % 400) == 0));
+		return daysOfMonthTable[month - 1] + (((month == 2) && leapYear) ? 1 : 0);
+	}
+	
+	/**
+	 * Checks {@code character} against the classes allowed at {@code index}
+	 * of a fiscal code with omocodia, see {@link #structureMismatch(int, int)}.
+	 * 
+	 * @param index
+	 *            zero-based position of {@code character} in the fiscal code
+	 * @param character
+	 *            character, any non negative value
+	 * @return {@code 0} if {@code character} is allowed at {@code index},
+	 *         {@code 1} otherwise
+	 */
+	static int omocodicStructureMismatch(final int index, final int character) {
+		return classMismatch(omocodicPositionClassTable[index], character);
+	}
+	
+	/**
+	 * Returns the control character value of {@code character} at
+	 * {@code index}.
+	 * 
+	 * @param index
+	 *            zero-based position of {@code character} in the fiscal code
+	 * @param character
+	 *            ASCII character, any value
+	 * @return value to sum, or {@link #invalid} if {@code character} cannot
+	 *         appear in a fiscal code
+	 */
+	static int positionValue(final int index, final int character) {
+		if ((character < 0) || (asciiLength <= character)) {
+			return invalid;
+		}
+		return positionValueTable[((index & 1) * asciiLength) + character]; // Even zero-based index means odd position.
+	}
+	
+	/**
+	 * Checks {@code character} against the classes allowed at {@code index}
+	 * with no branches, so a whole fiscal code can be checked by OR-ing the
+	 * results and testing once.
+	 * 
+	 * @param index
+	 *            zero-based position of {@code character} in the fiscal code
+	 * @param character
+	 *            character, any non negative value
+	 * @return {@code 0} if {@code character} is allowed at {@code index},
+	 *         {@code 1} otherwise
+	 */
+	static int structureMismatch(final int index, final int character) {
+		return classMismatch(positionClassTable[index], character);
+	}
+	
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.lole.it.Female;
+import it.assetdata.lole.it.SexIt;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Verifies a fiscal code against the declared personal data of the referred
+ * person, comparing every segment of the code in place with the data it
+ * encodes, like {@link FastFiscalCodeBuilder} encodes it, instead of
+ * building the expected code and comparing the values.<br/>
+ * Codes with omocodia are verified like their canonical form. Nothing is
+ * allocated.
+ */
+@Immutable
+public class FiscalCodeVerifier {
+	
+	/**
+	 * Segment bit of the day of month of birth.
+	 */
+	public static final int birthDay = 16;
+	
+	/**
+	 * Segment bit of the month of birth.
+	 */
+	public static final int birthMonth = 8;
+	
+	/**
+	 * Segment bit of the last two digits of the year of birth.
+	 */
+	public static final int birthYear = 4;
+	
+	/**
+	 * Segment bit of the control character.
+	 */
+	public static final int controlCharacter = 128;
+	
+	/**
+	 * Control character starting index.
+	 */
+	private static final int controlCharacterIndex = 15;
+	
+	/**
+	 * Day of month of birth starting index.
+	 */
+	private static final int dayValueIndex = 9;
+	
+	/**
+	 * Fiscal code value length.
+	 */
+	private static final int fiscalCodeLength = 16;
+	
+	/**
+	 * Bit of codes that are not well formed, failing the structure check of
+	 * {@link StandardFiscalCodeValidator#validate(String)}: no segment is
+	 * compared.
+	 */
+	public static final int malformed = 256;
+	
+	/**
+	 * Month of birth starting index.
+	 */
+	private static final int monthValueIndex = 8;
+	
+	/**
+	 * Segment bit of the name.
+	 */
+	public static final int name = 2;
+	
+	/**
+	 * Name starting index.
+	 */
+	private static final int nameValueIndex = 3;
+	
+	/**
+	 * Segment bit of the place of birth code.
+	 */
+	public static final int placeCode = 64;
+	
+	/**
+	 * Place code length.
+	 */
+	private static final int placeCodeLength = 4;
+	
+	/**
+	 * Place code starting index.
+	 */
+	private static final int placeCodeValueIndex = 11;
+	
+	/**
+	 * Segment bit of the sex, encoded with the day of month of birth.
+	 */
+	public static final int sex = 32;
+	
+	/**
+	 * Segment bit of the surname.
+	 */
+	public static final int surname = 1;
+	
+	/**
+	 * Surname starting index.
+	 */
+	private static final int surnameValueIndex = 0;
+	
+	/**
+	 * Fill character of names and surnames with less than
+	 * {@link #xameValueLength} letters.
+	 */
+	private static final char xameFillCharacter = 'X';
+	
+	/**
+	 * Name and surname length.
+	 */
+	private static final int xameValueLength = 3;
+	
+	/**
+	 * Year of birth starting index.
+	 */
+	private static final int yearValueIndex = 6;
+	
+	/**
+	 * Reference upper case alphabet.
+	 */
+	private final ImmutableList<Character> upperCaseAlphabet;
+	
+	/**
+	 * ASCII upper case vowels marked {@code true}.
+	 */
+	private final boolean[] vowelTable = new boolean[FiscalCodeTables.asciiLength];
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param upperCaseAlphabet
+	 *            reference upper case alphabet
+	 * @param upperCaseVowels
+	 *            reference upper case vowels
+	 */
+	public FiscalCodeVerifier(final ImmutableList<Character> upperCaseAlphabet, final ImmutableList<Character> upperCaseVowels) {
+		this.upperCaseAlphabet = upperCaseAlphabet;
+		for (final Character vowel : upperCaseVowels) {
+			vowelTable[vowel.charValue() & 0x7F] = true;
+		}
+	}
+	
+	/**
+	 * Checks if {@code fiscalCode} matches the declared personal data,
+	 * stopping at the first segment that does not match.
+	 * 
+	 * @param fiscalCode
+	 *            to verify
+	 * @param surname
+	 *            declared surname
+	 * @param name
+	 *            declared name
+	 * @param year
+	 *            declared year of birth
+	 * @param month
+	 *            declared month of birth, from 1 to 12
+	 * @param day
+	 *            declared day of month of birth, from 1
+	 * @param sex
+	 *            declared sex
+	 * @param placeCode
+	 *            declared place of birth's code
+	 * @return {@code true} if every segment matches, {@code false} otherwise
+	 */
+	public boolean matches(
+			final @Nullable CharSequence fiscalCode,
+			final String surname,
+			final String name,
+			final int year,
+			final int month,
+			final int day,
+			final SexIt sex,
+			final String placeCode) {
+		return mismatches(fiscalCode, surname, name, year, month, day, sex, placeCode, true) == 0;
+	}
+	
+	/**
+	 * Checks if the name or surname segment starting at {@code index}
+	 * matches {@code xame}: its first consonants, then its first vowels, then
+	 * {@link #xameFillCharacter}s.
+	 * 
+	 * @param fiscalCode
+	 *            well formed fiscal code
+	 * @param index
+	 *            segment starting index
+	 * @param xame
+	 *            declared name or surname
+	 * @return {@code true} if it matches, {@code false} otherwise, also if
+	 *         {@code xame} is not made of upper case letters only
+	 */
+	private boolean matchesXame(final CharSequence fiscalCode, final int index, final String xame) {
+		int matched = 0;
+		for (int i = 0; (i < xame.length()) && (matched < xameValueLength); i++) { // Consonants first.
+			final char character = xame.charAt(i);
+			if ((character < 'A') || ('Z' < character)) {
+				return false;
+			}
+			if (!vowelTable[character]) {
+				if (fiscalCode.charAt(index + matched) != character) {
+					return false;
+				}
+				matched++;
+			}
+		}
+		for (int i = 0; (i < xame.length()) && (matched < xameValueLength); i++) { // Vowels next.
+			final char character = xame.charAt(i);
+			if ((character < 'A') || ('Z' < character)) {
+				return false;
+			}
+			if (vowelTable[character]) {
+				if (fiscalCode.charAt(index + matched) != character) {
+					return false;
+				}
+				matched++;
+			}
+		}
+		for (; matched < xameValueLength; matched++) {
+			if (fiscalCode.charAt(index + matched) != xameFillCharacter) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Compares {@code fiscalCode} with the declared personal data.
+	 * 
+	 * @param fiscalCode
+	 *            to verify
+	 * @param surname
+	 *            declared surname
+	 * @param name
+	 *            declared name
+	 * @param year
+	 *            declared year of birth
+	 * @param month
+	 *            declared month of birth, from 1 to 12
+	 * @param day
+	 *            declared day of month of birth, from 1
+	 * @param sex
+	 *            declared sex
+	 * @param placeCode
+	 *            declared place of birth's code
+	 * @param firstOnly
+	 *            {@code true} to stop at the first segment that does not
+	 *            match
+	 * @return segment bits that do not match, {@link #malformed} alone if
+	 *         {@code fiscalCode} is not well formed, {@code 0} if every
+	 *         segment matches
+	 */
+	private int mismatches(
+			final @Nullable CharSequence fiscalCode,
+			final String surname,
+			final String name,
+			final int year,
+			final int month,
+			final int day,
+			final SexIt sex,
+			final String placeCode,
+			final boolean firstOnly) {
+		if ((fiscalCode == null) || (fiscalCode.length() != fiscalCodeLength)) {
+			return malformed;
+		}
+		int structureMismatch = 0;
+		int controlCharacterValue = 0;
+		for (int i = 0; i < controlCharacterIndex; i++) {
+			final int character = fiscalCode.charAt(i);
+			structureMismatch |= FiscalCodeTables.omocodicStructureMismatch(i, character);
+			controlCharacterValue += FiscalCodeTables.positionValue(i, character & 0x7F); // Out of range characters are a structure mismatch anyway.
+		}
+		final char codeControlCharacter = fiscalCode.charAt(controlCharacterIndex);
+		structureMismatch |= FiscalCodeTables.omocodicStructureMismatch(controlCharacterIndex, codeControlCharacter);
+		if (structureMismatch != 0) {
+			return malformed;
+		}
+		int mismatches = 0;
+		if (!matchesXame(fiscalCode, surnameValueIndex, surname)) {
+			mismatches |= FiscalCodeVerifier.surname;
+			if (firstOnly) {
+				return mismatches;
+			}
+		}
+		if (!matchesXame(fiscalCode, nameValueIndex, name)) {
+			mismatches |= FiscalCodeVerifier.name;
+			if (firstOnly) {
+				return mismatches;
+			}
+		}
+		if (((FiscalCodeDecoder.digit(fiscalCode, yearValueIndex) * 10) + FiscalCodeDecoder.digit(fiscalCode, yearValueIndex + 1)) != (year % 100)) {
+			mismatches |= birthYear;
+			if (firstOnly) {
+				return mismatches;
+			}
+		}
+		if (FiscalCodeTables.monthTable[fiscalCode.charAt(monthValueIndex)] != month) {
+			mismatches |= birthMonth;
+			if (firstOnly) {
+				return mismatches;
+			}
+		}
+		final int femaleAddend = Female.getInstance().getFiscalCodeDayAddend();
+		final int dayValue = (FiscalCodeDecoder.digit(fiscalCode, dayValueIndex) * 10) + FiscalCodeDecoder.digit(fiscalCode, dayValueIndex + 1);
+		if ((dayValue % femaleAddend) != day) {
+			mismatches |= birthDay;
+			if (firstOnly) {
+				return mismatches;
+			}
+		}
+		if ((dayValue - (dayValue % femaleAddend)) != sex.getFiscalCodeDayAddend()) {
+			mismatches |= FiscalCodeVerifier.sex;
+			if (firstOnly) {
+				return mismatches;
+			}
+		}
+		if ((placeCode.length() != placeCodeLength)
+				|| (fiscalCode.charAt(placeCodeValueIndex) != placeCode.charAt(0))
+				|| (FiscalCodeTables.canonicalDigitTable[fiscalCode.charAt(placeCodeValueIndex + 1)] != placeCode.charAt(1))
+				|| (FiscalCodeTables.canonicalDigitTable[fiscalCode.charAt(placeCodeValueIndex + 2)] != placeCode.charAt(2))
+				|| (FiscalCodeTables.canonicalDigitTable[fiscalCode.charAt(placeCodeValueIndex + 3)] != placeCode.charAt(3))) {
+			mismatches |= FiscalCodeVerifier.placeCode;
+			if (firstOnly) {
+				return mismatches;
+			}
+		}
+		if (codeControlCharacter != FiscalCodeTables.controlCharacter(upperCaseAlphabet, controlCharacterValue)) {
+			mismatches |= controlCharacter;
+		}
+		return mismatches;
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+	/**
+	 * Compares {@code fiscalCode} with the declared personal data, segment
+	 * by segment.
+	 * 
+	 * @param fiscalCode
+	 *            to verify
+	 * @param surname
+	 *            declared surname
+	 * @param name
+	 *            declared name
+	 * @param year
+	 *            declared year of birth
+	 * @param month
+	 *            declared month of birth, from 1 to 12
+	 * @param day
+	 *            declared day of month of birth, from 1
+	 * @param sex
+	 *            declared sex
+	 * @param placeCode
+	 *            declared place of birth's code
+	 * @return bits of the segments that do not match: {@link #surname},
+	 *         {@link #name}, {@link #birthYear}, {@link #birthMonth},
+	 *         {@link #birthDay}, {@link #sex}, {@link #placeCode},
+	 *         {@link #controlCharacter}; {@link #malformed} alone if
+	 *         {@code fiscalCode} is not well formed; {@code 0} if every
+	 *         segment matches
+	 */
+	public int verify(
+			final @Nullable CharSequence fiscalCode,
+			final String surname,
+			final String name,
+			final int year,
+			final int month,
+			final int day,
+			final SexIt sex,
+			final String placeCode) {
+		return mismatches(fiscalCode, surname, name, year, month, day, sex, placeCode, false);
+	}
+	
+}
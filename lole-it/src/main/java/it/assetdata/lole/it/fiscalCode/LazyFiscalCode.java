@@ -0,0 +1,292 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import it.assetdata.lole.it.SexIt;
+
+import java.io.Serializable;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.joda.time.LocalDate;
+
+/**
+ * A fiscal code that only stores its value, decoding its fields on demand,
+ * for caches holding many of them: it takes 32 bytes of heap, with
+ * compressed references, instead of over 200 of a retained
+ * {@link FiscalCode}.<br/>
+ * The value is kept packed in two {@code long}s like a
+ * {@link PackedFiscalCode}, see {@link #toPackedFiscalCode()}, so comparing
+ * them compares values like {@link String}s do. It is also a {@link CharSequence} of its value,
+ * so it can be handed to validators without creating a {@link String}.<br/>
+ * Created by {@link FiscalCodeDecoder#decodeLazily(CharSequence)}, so it is
+ * always valid.
+ */
+@Immutable
+public class LazyFiscalCode implements Serializable, CharSequence, Comparable<LazyFiscalCode> {
+	
+	/**
+	 * Control character index.
+	 */
+	private static final int controlCharacterIndex = 15;
+	
+	/**
+	 * Fiscal code value length.
+	 */
+	private static final int fiscalCodeLength = 16;
+	
+	/**
+	 * Name value starting index.
+	 */
+	private static final int nameValueIndex = 3;
+	
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Surname and name values length.
+	 */
+	private static final int xameValueLength = 3;
+	
+	/**
+	 * Decoder of the fields.
+	 */
+	private final FiscalCodeDecoder fiscalCodeDecoder;
+	
+	/**
+	 * First eight characters, packed.
+	 */
+	private final long high;
+	
+	/**
+	 * Last eight characters, packed.
+	 */
+	private final long low;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param fiscalCodeDecoder
+	 *            decoder of the fields
+	 * @param value
+	 *            valid fiscal code value
+	 */
+	LazyFiscalCode(final FiscalCodeDecoder fiscalCodeDecoder, final CharSequence value) {
+		this.fiscalCodeDecoder = fiscalCodeDecoder;
+		this.high = PackedFiscalCode.pack(value, 0);
+		this.low = PackedFiscalCode.pack(value, PackedFiscalCode.charactersPerLong);
+	}
+	
+	/**
+	 * Unpacks characters of the value.
+	 * 
+	 * @param start
+	 *            first character index
+	 * @param end
+	 *            last character index, excluded
+	 * @return characters
+	 */
+	private String unpack(final int start, final int end) {
+		final char[] value = new char[end - start];
+		for (int i = start; i < end; i++) {
+			value[i - start] = unpack(i);
+		}
+		return String.valueOf(value);
+	}
+	
+	/**
+	 * Unpacks a character of the value.
+	 * 
+	 * @param index
+	 *            character index, from {@code 0} to {@link #fiscalCodeLength}
+	 *            excluded
+	 * @return character
+	 */
+	private char unpack(final int index) {
+		return (index < PackedFiscalCode.charactersPerLong) ? PackedFiscalCode.unpack(high, index) : PackedFiscalCode.unpack(low, index - PackedFiscalCode.charactersPerLong);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public char charAt(final int index) {
+		if ((index < 0) || (fiscalCodeLength <= index)) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+		return unpack(index);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * Compares values, like {@link FiscalCode#compareTo(FiscalCode)} does
+	 * first; as the other fields are derived from the value, the result is
+	 * the same.
+	 */
+	@Override
+	public int compareTo(final LazyFiscalCode o) {
+		return PackedFiscalCode.compare(high, low, o.high, o.low);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * Equal if values are equal, as all the other fields are derived from
+	 * them.
+	 */
+	@Override
+	public boolean equals(final @Nullable Object obj) {
+		if (obj == null) {
+			return false;
+		} else if (obj == this) {
+			return true;
+		} else if (!(obj instanceof LazyFiscalCode)) {
+			return false;
+		} else {
+			final LazyFiscalCode o = (LazyFiscalCode) obj;
+			return (high == o.high) && (low == o.low);
+		}
+	}
+	
+	/**
+	 * Decodes the referred person's date of birth.
+	 * 
+	 * @return date of birth
+	 */
+	public LocalDate getBirthDate() {
+		return fiscalCodeDecoder.decodeBirthDate(this);
+	}
+	
+	/**
+	 * Returns the control character placed at the end of the value.
+	 * 
+	 * @return control character
+	 */
+	public Character getControlCharacter() {
+		return Character.valueOf(charAt(controlCharacterIndex));
+	}
+	
+	/**
+	 * Returns the three letter name segment of the value.
+	 * 
+	 * @return name segment
+	 */
+	public String getName() {
+		return unpack(nameValueIndex, nameValueIndex + xameValueLength);
+	}
+	
+	/**
+	 * Decodes the referred person's canonical place of birth code.
+	 * 
+	 * @return place code
+	 */
+	public String getPlaceCode() {
+		return FiscalCodeDecoder.decodePlaceCode(this);
+	}
+	
+	/**
+	 * Decodes the referred person's sex.
+	 * 
+	 * @return shared {@link it.assetdata.lole.it.Male} or
+	 *         {@link it.assetdata.lole.it.Female} instance
+	 */
+	public SexIt getSex() {
+		return FiscalCodeDecoder.decodeSex(this);
+	}
+	
+	/**
+	 * Returns the three letter surname segment of the value.
+	 * 
+	 * @return surname segment
+	 */
+	public String getSurname() {
+		return unpack(0, xameValueLength);
+	}
+	
+	/**
+	 * Returns the {@link String} representation of the fiscal code value,
+	 * creating it.
+	 * 
+	 * @return value
+	 */
+	public String getValue() {
+		final char[] value = new char[fiscalCodeLength];
+		PackedFiscalCode.unpack(high, value, 0);
+		PackedFiscalCode.unpack(low, value, PackedFiscalCode.charactersPerLong);
+		return String.valueOf(value);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		return PackedFiscalCode.hash(high, low);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int length() {
+		return fiscalCodeLength;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CharSequence subSequence(final int start, final int end) {
+		if ((start < 0) || (end < start) || (fiscalCodeLength < end)) {
+			throw new IndexOutOfBoundsException(start + ", " + end); //$NON-NLS-1$
+		}
+		return unpack(start, end);
+	}
+	
+	/**
+	 * Returns the packed value, with no decoding.
+	 * 
+	 * @return packed fiscal code
+	 */
+	public PackedFiscalCode toPackedFiscalCode() {
+		return new PackedFiscalCode(high, low);
+	}
+	
+	/**
+	 * Decodes all the fields, see {@link FiscalCodeDecoder#decode(CharSequence)}.
+	 * 
+	 * @return eagerly decoded fiscal code
+	 */
+	public FiscalCode toFiscalCode() {
+		return fiscalCodeDecoder.decode(this);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation returns {@link #getValue()}, as required by
+	 * {@link CharSequence}.
+	 */
+	@Override
+	public String toString() {
+		return getValue();
+	}
+	
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Decodes fiscal codes with omocodia, where some digits are replaced by the
+ * letters {@code L M N P Q R S T U V}, back to their canonical form.<br/>
+ * Works in one table driven pass, writing into a caller supplied buffer, so
+ * it does not allocate.
+ */
+@Immutable
+public class OmocodiaDecoder {
+	
+	/**
+	 * Control character starting index.
+	 */
+	private static final int controlCharacterIndex = 15;
+	
+	/**
+	 * Fiscal code value length.
+	 */
+	private static final int fiscalCodeLength = 16;
+	
+	/**
+	 * Reference upper case alphabet.
+	 */
+	private final ImmutableList<Character> upperCaseAlphabet;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param upperCaseAlphabet
+	 *            reference upper case alphabet
+	 */
+	public OmocodiaDecoder(final ImmutableList<Character> upperCaseAlphabet) {
+		this.upperCaseAlphabet = upperCaseAlphabet;
+	}
+	
+	/**
+	 * Writes the canonical form of {@code fiscalCode} into
+	 * {@code destination} starting at {@code offset}: every omocodia letter is
+	 * replaced by its digit and the control character is calculated again.<br/>
+	 * Canonical codes are copied as they are.
+	 * 
+	 * @param fiscalCode
+	 *            to decode
+	 * @param destination
+	 *            where to write the {@link #fiscalCodeLength} canonical
+	 *            characters, its content is undefined if {@code false} is
+	 *            returned
+	 * @param offset
+	 *            first index of {@code destination} to write
+	 * @return {@code true} if {@code fiscalCode} is valid according to
+	 *         {@link StandardFiscalCodeValidator#validate(String)} and has
+	 *         been decoded, {@code false} otherwise
+	 */
+	public boolean decode(final @Nullable CharSequence fiscalCode, final char[] destination, final int offset) {
+		if ((fiscalCode == null) || (fiscalCode.length() != fiscalCodeLength) || (offset < 0) || ((destination.length - fiscalCodeLength) < offset)) {
+			return false;
+		}
+		int structureMismatch = 0;
+		int controlCharacterValue = 0;
+		int canonicalControlCharacterValue = 0;
+		for (int i = 0; i < controlCharacterIndex; i++) {
+			final int character = fiscalCode.charAt(i);
+			structureMismatch |= FiscalCodeTables.omocodicStructureMismatch(i, character);
+			final int ascii = character & 0x7F; // Out of range characters are a structure mismatch anyway.
+			final char canonical = (FiscalCodeTables.positionClassTable[i] == FiscalCodeTables.digit) ? FiscalCodeTables.canonicalDigitTable[ascii] : (char) ascii;
+			controlCharacterValue += FiscalCodeTables.positionValue(i, ascii);
+			canonicalControlCharacterValue += FiscalCodeTables.positionValue(i, canonical);
+			destination[offset + i] = canonical;
+		}
+		final char controlCharacter = fiscalCode.charAt(controlCharacterIndex);
+		structureMismatch |= FiscalCodeTables.omocodicStructureMismatch(controlCharacterIndex, controlCharacter);
+		if ((structureMismatch != 0) || (controlCharacter != FiscalCodeTables.controlCharacter(upperCaseAlphabet, controlCharacterValue))) {
+			return false;
+		}
+		destination[offset + controlCharacterIndex] = FiscalCodeTables.controlCharacter(upperCaseAlphabet, canonicalControlCharacterValue);
+		return true;
+	}
+	
+	/**
+	 * Checks if {@code fiscalCode} has any digit replaced by an omocodia
+	 * letter.<br/>
+	 * Only positions that hold digits in canonical codes are looked at, so
+	 * the result is meaningful for well formed codes only.
+	 * 
+	 * @param fiscalCode
+	 *            to check
+	 * @return {@code true} if it has omocodia, {@code false} otherwise
+	 */
+	public boolean isOmocodic(final @Nullable CharSequence fiscalCode) {
+		if ((fiscalCode == null) || (fiscalCode.length() != fiscalCodeLength)) {
+			return false;
+		}
+		int omocodicDigits = 0;
+		for (final int position : FiscalCodeTables.omocodicPositions) {
+			omocodicDigits |= FiscalCodeTables.characterClassTable[fiscalCode.charAt(position) & 0x7F] & FiscalCodeTables.omocodicDigit;
+		}
+		return omocodicDigits != 0;
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
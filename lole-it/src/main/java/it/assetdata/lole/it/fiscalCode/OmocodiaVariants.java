@@ -0,0 +1,213 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Enumerates the omocodic variants of a canonical fiscal code, like the ones
+ * built by {@link FastFiscalCodeBuilder}, into a reusable buffer.<br/>
+ * Every subset of the 7 replaceable digits gives a variant, for
+ * {@link #variantsCount} variants. They come in mask order: the variant
+ * mask counts up from 1, bit {@code i} meaning the digit at
+ * {@code FiscalCodeTables.omocodicPositions[i]} is replaced. This is not the
+ * order the Revenue Agency assigns them in: it replaces digits cumulatively
+ * from the rightmost, which are masks {@code 1}, {@code 3}, {@code 7} and so
+ * on, see {@link #getMask()}.<br/>
+ * The control character is not calculated again for every variant but
+ * updated from the value deltas of the replaced positions only.<br/>
+ * Usage:
+ * 
+ * <pre>
+ * if (variants.reset(code)) {
+ * 	while (variants.next()) {
+ * 		use(variants.getValue());
+ * 	}
+ * }
+ * </pre>
+ */
+@NotThreadSafe
+public class OmocodiaVariants {
+	
+	/**
+	 * Control character starting index.
+	 */
+	private static final int controlCharacterIndex = 15;
+	
+	/**
+	 * Fiscal code value length.
+	 */
+	private static final int fiscalCodeLength = 16;
+	
+	/**
+	 * Number of omocodic variants of a fiscal code.
+	 */
+	public static final int variantsCount = (1 << FiscalCodeTables.omocodicPositions.length) - 1;
+	
+	/**
+	 * Sum of the control character values of the current variant.
+	 */
+	private int controlCharacterValue;
+	
+	/**
+	 * Control character value change when replacing the digit at every
+	 * replaceable position.
+	 */
+	private final int[] deltas = new int[FiscalCodeTables.omocodicPositions.length];
+	
+	/**
+	 * Canonical digits at the replaceable positions of the base code.
+	 */
+	private final char[] digits = new char[FiscalCodeTables.omocodicPositions.length];
+	
+	/**
+	 * Current variant mask, {@code 0} for the base code after a successful
+	 * {@link #reset(CharSequence)}, {@link #variantsCount} when there is
+	 * nothing to enumerate.
+	 */
+	private int mask;
+	
+	/**
+	 * Reference upper case alphabet.
+	 */
+	private final ImmutableList<Character> upperCaseAlphabet;
+	
+	/**
+	 * Current variant value.
+	 */
+	private final char[] value = new char[fiscalCodeLength];
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param upperCaseAlphabet
+	 *            reference upper case alphabet
+	 */
+	public OmocodiaVariants(final ImmutableList<Character> upperCaseAlphabet) {
+		this.upperCaseAlphabet = upperCaseAlphabet;
+		mask = variantsCount;
+	}
+	
+	/**
+	 * Returns the current variant mask: bit {@code i} is set if the digit at
+	 * the {@code i}-th replaceable position, from the rightmost, is replaced.
+	 * 
+	 * @return current variant mask: {@code 0}, the base code, after a
+	 *         successful {@link #reset(CharSequence)} and before the first
+	 *         {@link #next()}; {@link #variantsCount} after the constructor,
+	 *         a failed {@link #reset(CharSequence)} or on the last variant
+	 */
+	public int getMask() {
+		return mask;
+	}
+	
+	/**
+	 * Returns the current variant value.<br/>
+	 * The buffer is reused by {@link #next()} and {@link #reset(CharSequence)},
+	 * copy it to keep it and never modify it.
+	 * 
+	 * @return current variant value
+	 */
+	public char[] getValue() {
+		return value;
+	}
+	
+	/**
+	 * Moves to the next variant updating {@link #getValue()} and its control
+	 * character.
+	 * 
+	 * @return {@code true} if there is a next variant, {@code false} if every
+	 *         variant has been enumerated
+	 */
+	public boolean next() {
+		if (mask == variantsCount) {
+			return false;
+		}
+		final int nextMask = mask + 1;
+		int changed = mask ^ nextMask;
+		while (changed != 0) {
+			final int i = Integer.numberOfTrailingZeros(changed);
+			final int position = FiscalCodeTables.omocodicPositions[i];
+			if ((nextMask & (1 << i)) != 0) {
+				value[position] = FiscalCodeTables.omocodicLetterTable[digits[i] - '0'];
+				controlCharacterValue += deltas[i];
+			} else {
+				value[position] = digits[i];
+				controlCharacterValue -= deltas[i];
+			}
+			changed &= changed - 1;
+		}
+		value[controlCharacterIndex] = FiscalCodeTables.controlCharacter(upperCaseAlphabet, controlCharacterValue);
+		mask = nextMask;
+		return true;
+	}
+	
+	/**
+	 * Starts enumerating the variants of {@code fiscalCode}.
+	 * 
+	 * @param fiscalCode
+	 *            canonical fiscal code, with no omocodia
+	 * @return {@code true} if {@code fiscalCode} is a valid canonical code,
+	 *         {@code false} otherwise and there is nothing to enumerate
+	 */
+	public boolean reset(final @Nullable CharSequence fiscalCode) {
+		mask = variantsCount;
+		if ((fiscalCode == null) || (fiscalCode.length() != fiscalCodeLength)) {
+			return false;
+		}
+		int structureMismatch = 0;
+		for (int i = 0; i < fiscalCodeLength; i++) {
+			structureMismatch |= FiscalCodeTables.structureMismatch(i, fiscalCode.charAt(i));
+		}
+		if (structureMismatch != 0) {
+			return false;
+		}
+		int sum = 0;
+		for (int i = 0; i < controlCharacterIndex; i++) {
+			value[i] = fiscalCode.charAt(i);
+			sum += FiscalCodeTables.positionValue(i, value[i]);
+		}
+		value[controlCharacterIndex] = fiscalCode.charAt(controlCharacterIndex);
+		if (value[controlCharacterIndex] != FiscalCodeTables.controlCharacter(upperCaseAlphabet, sum)) {
+			return false;
+		}
+		for (int i = 0; i < digits.length; i++) {
+			final int position = FiscalCodeTables.omocodicPositions[i];
+			digits[i] = value[position];
+			deltas[i] = FiscalCodeTables.positionValue(position, FiscalCodeTables.omocodicLetterTable[digits[i] - '0'])
+					- FiscalCodeTables.positionValue(position, digits[i]);
+		}
+		controlCharacterValue = sum;
+		mask = 0;
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
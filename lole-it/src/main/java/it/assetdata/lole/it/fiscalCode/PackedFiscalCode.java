@@ -0,0 +1,346 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * A fiscal code value packed into two {@code long}s, and the static codec to
+ * pack and unpack values without allocating.<br/>
+ * Every character is one of 36 symbols, digits then upper case letters, so
+ * eight characters fit in a {@code long} as a base 36 number: the first
+ * eight characters of the value are packed into {@link #getHigh()}, the
+ * last eight into {@link #getLow()}. As digits come before letters in both
+ * ASCII and base 36, comparing packed values orders them like
+ * {@link FiscalCode#compareTo(FiscalCode)} orders values.<br/>
+ * Packed values are never negative, and {@code (0, 0)} is
+ * {@code "0000000000000000"} which is not a fiscal code, so both can mark
+ * empty slots of collections.
+ */
+@Immutable
+public final class PackedFiscalCode implements Serializable, Comparable<PackedFiscalCode> {
+	
+	/**
+	 * Base 36 digits of ASCII characters: {@code 0} to {@code 9} for digits,
+	 * {@code 10} to {@code 35} for upper case letters, {@link #invalid} for
+	 * any other character.
+	 */
+	private static final byte[] base36Table = new byte[FiscalCodeTables.asciiLength];
+	
+	/**
+	 * Characters packed in a {@code long}.
+	 */
+	public static final int charactersPerLong = 8;
+	
+	/**
+	 * Fiscal code value length.
+	 */
+	private static final int fiscalCodeLength = 16;
+	
+	/**
+	 * Packed value of things that cannot be packed.
+	 */
+	public static final long invalid = -1;
+	
+	/**
+	 * Place values of the characters packed in a {@code long}, the first one
+	 * being the most significant.
+	 */
+	private static final long[] placeValues = new long[charactersPerLong];
+	
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Characters of base 36 digits.
+	 */
+	private static final char[] symbols = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray(); //$NON-NLS-1$
+	
+	static {
+		Arrays.fill(base36Table, (byte) invalid);
+		for (int i = 0; i < symbols.length; i++) {
+			base36Table[symbols[i]] = (byte) i;
+		}
+		long placeValue = 1;
+		for (int i = charactersPerLong - 1; i >= 0; i--) {
+			placeValues[i] = placeValue;
+			placeValue *= 36;
+		}
+	}
+	
+	/**
+	 * First eight characters, packed.
+	 */
+	private final long high;
+	
+	/**
+	 * Last eight characters, packed.
+	 */
+	private final long low;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param high
+	 *            first eight characters, packed
+	 * @param low
+	 *            last eight characters, packed
+	 * @throws IllegalArgumentException
+	 *             if any of them is not a packed value
+	 */
+	public PackedFiscalCode(final long high, final long low) throws IllegalArgumentException {
+		if (!isPacked(high) || !isPacked(low)) {
+			throw new IllegalArgumentException();
+		}
+		this.high = high;
+		this.low = low;
+	}
+	
+	/**
+	 * Compares two packed values without creating {@link PackedFiscalCode}s.
+	 * 
+	 * @param high
+	 *            first value high half
+	 * @param low
+	 *            first value low half
+	 * @param otherHigh
+	 *            second value high half
+	 * @param otherLow
+	 *            second value low half
+	 * @return negative, zero or positive like
+	 *         {@link Comparable#compareTo(Object)}
+	 */
+	public static int compare(final long high, final long low, final long otherHigh, final long otherLow) {
+		final int highComparison = Long.compare(high, otherHigh); // Packed values are never negative.
+		return (highComparison != 0) ? highComparison : Long.compare(low, otherLow);
+	}
+	
+	/**
+	 * Hashes a packed value without creating a {@link PackedFiscalCode},
+	 * mixing all the bits so that the low bits can index hash tables.
+	 * 
+	 * @param high
+	 *            value high half
+	 * @param low
+	 *            value low half
+	 * @return hash code
+	 */
+	public static int hash(final long high, final long low) {
+		long hash = (high * 0x9E3779B97F4A7C15L) ^ low;
+		hash *= 0xC2B2AE3D27D4EB4FL;
+		return (int) (hash ^ (hash >>> 32));
+	}
+	
+	/**
+	 * @param packed
+	 *            to check
+	 * @return {@code true} if {@code packed} is a packed value of eight
+	 *         characters, {@code false} otherwise
+	 */
+	public static boolean isPacked(final long packed) {
+		return (0 <= packed) && (packed < 2821109907456L); // 36^8
+	}
+	
+	/**
+	 * Packs eight characters of {@code value} into a {@code long}, like
+	 * {@link #pack(CharSequence, int)} does.
+	 * 
+	 * @param value
+	 *            fiscal code value
+	 * @param offset
+	 *            first character index, {@code 0} for the high half and
+	 *            {@link #charactersPerLong} for the low one
+	 * @return packed characters, or {@link #invalid} if any of them is not a
+	 *         digit or an upper case letter
+	 */
+	public static long pack(final char[] value, final int offset) {
+		if ((offset < 0) || ((value.length - charactersPerLong) < offset)) {
+			return invalid;
+		}
+		long packed = 0;
+		for (int i = offset; i < (offset + charactersPerLong); i++) {
+			packed = pack(packed, value[i]);
+		}
+		return packed;
+	}
+	
+	/**
+	 * Packs {@code character} after the already {@code packed} ones.
+	 * 
+	 * @param packed
+	 *            already packed characters, or {@link #invalid}
+	 * @param character
+	 *            to pack
+	 * @return packed characters, or {@link #invalid} if {@code packed} is
+	 *         {@link #invalid} or {@code character} is not a digit or an upper
+	 *         case letter
+	 */
+	private static long pack(final long packed, final int character) {
+		final int digit = base36Table[character & 0x7F];
+		return ((packed | digit | -(character >>> 7)) < 0) ? invalid : ((packed * 36) + digit);
+	}
+	
+	/**
+	 * Packs eight characters of {@code value} into a {@code long}.
+	 * 
+	 * @param value
+	 *            fiscal code value
+	 * @param offset
+	 *            first character index, {@code 0} for the high half and
+	 *            {@link #charactersPerLong} for the low one
+	 * @return packed characters, or {@link #invalid} if any of them is not a
+	 *         digit or an upper case letter
+	 */
+	public static long pack(final CharSequence value, final int offset) {
+		if ((offset < 0) || ((value.length() - charactersPerLong) < offset)) {
+			return invalid;
+		}
+		long packed = 0;
+		for (int i = offset; i < (offset + charactersPerLong); i++) {
+			packed = pack(packed, value.charAt(i));
+		}
+		return packed;
+	}
+	
+	/**
+	 * Writes the eight characters packed in {@code packed} into
+	 * {@code destination}.
+	 * 
+	 * @param packed
+	 *            packed characters, not {@link #invalid}
+	 * @param destination
+	 *            where to write the characters
+	 * @param offset
+	 *            first index of {@code destination} to write
+	 */
+	public static void unpack(final long packed, final char[] destination, final int offset) {
+		long rest = packed;
+		for (int i = (offset + charactersPerLong) - 1; i >= offset; i--) {
+			destination[i] = symbols[(int) (rest % 36)];
+			rest /= 36;
+		}
+	}
+	
+	/**
+	 * Unpacks a single character.
+	 * 
+	 * @param packed
+	 *            packed characters, not {@link #invalid}
+	 * @param index
+	 *            character index in {@code packed}, from {@code 0} to
+	 *            {@link #charactersPerLong} excluded
+	 * @return character
+	 */
+	public static char unpack(final long packed, final int index) {
+		return symbols[(int) ((packed / placeValues[index]) % 36)];
+	}
+	
+	/**
+	 * Packs {@code value}.
+	 * 
+	 * @param value
+	 *            fiscal code value
+	 * @return packed fiscal code, {@code null} if {@code value} is not made
+	 *         of sixteen digits or upper case letters
+	 */
+	public static @Nullable
+	PackedFiscalCode valueOf(final @Nullable CharSequence value) {
+		if ((value == null) || (value.length() != fiscalCodeLength)) {
+			return null;
+		}
+		final long high = pack(value, 0);
+		final long low = pack(value, charactersPerLong);
+		return ((high == invalid) || (low == invalid)) ? null : new PackedFiscalCode(high, low);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int compareTo(final PackedFiscalCode o) {
+		return compare(high, low, o.high, o.low);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(final @Nullable Object obj) {
+		if (obj == null) {
+			return false;
+		} else if (obj == this) {
+			return true;
+		} else if (!(obj instanceof PackedFiscalCode)) {
+			return false;
+		} else {
+			final PackedFiscalCode o = (PackedFiscalCode) obj;
+			return (high == o.high) && (low == o.low);
+		}
+	}
+	
+	/**
+	 * @return first eight characters, packed
+	 */
+	public long getHigh() {
+		return high;
+	}
+	
+	/**
+	 * @return last eight characters, packed
+	 */
+	public long getLow() {
+		return low;
+	}
+	
+	/**
+	 * Unpacks the fiscal code value.
+	 * 
+	 * @return value
+	 */
+	public String getValue() {
+		final char[] value = new char[fiscalCodeLength];
+		unpack(high, value, 0);
+		unpack(low, value, charactersPerLong);
+		return String.valueOf(value);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		return hash(high, low);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
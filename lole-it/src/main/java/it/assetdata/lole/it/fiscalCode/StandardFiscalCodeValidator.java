@@ -16,8 +16,11 @@
 package it.assetdata.lole.it.fiscalCode;
 
 import it.assetdata.lole.it.SexIt;
+import it.assetdata.lole.it.place.PlaceCodeRegistry;
+import it.assetdata.lole.it.place.PlaceCodeValidityIndex;
+import it.assetdata.lole.it.place.PlaceCodes;
 
-import java.util.Date;
+import java.nio.ByteBuffer;
 import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
@@ -40,19 +43,6 @@ public class StandardFiscalCodeValidator implements FiscalCodeValidator {
 	 */
 	private static final int controlCharacterIndex = 15;
 	
-	/**
-	 * Allowed digits number, it is from 1 to 9.
-	 */
-	private static final int digitsLength = 9;
-	
-	/**
-	 * Fiscal code even characters coding table to calculate control
-	 * character.
-	 */
-	private static final int[] evenCharactersValueTable = {
-			0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12,
-			13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25 };
-	
 	/**
 	 * Fiscal code value length.
 	 */
@@ -61,15 +51,7 @@ public class StandardFiscalCodeValidator implements FiscalCodeValidator {
 	/**
 	 * Minimum supported year.
 	 */
-	private static final ReadablePartial minYear = LocalDate.fromDateFields(new Date(-61851602996L)); // Epoch of 01/01/10 A.D.
-	
-	/**
-	 * Fiscal code odd characters coding table to calculate control
-	 * character.
-	 */
-	private static final int[] oddCharactersValueTable = {
-			1, 0, 5, 7, 9, 13, 15, 17, 19, 21, 1, 0, 5, 7, 9, 13, 15, 17, 19, 21,
-			2, 4, 18, 20, 11, 3, 6, 8, 12, 14, 16, 10, 22, 25, 24, 23 };
+	private static final ReadablePartial minYear = new LocalDate(10, 1, 1); // 01/01/10 A.D.
 	
 	/**
 	 * {@link FiscalCode} place code length.
@@ -77,19 +59,15 @@ public class StandardFiscalCodeValidator implements FiscalCodeValidator {
 	private static final int placeCodeLength = 4;
 	
 	/**
-	 * UTF-16 numbers "before the first" code number.
-	 */
-	private static final int utf16NumberOffset = 48;
-	
-	/**
-	 * UTF-16 latin upper case letters "before the first" code number.
+	 * Patter for name and surname.
 	 */
-	private static final int utf16UpperCaseLettersOffset = 7;
+	private static final Pattern xamePattern = Pattern.compile("[A-Z]*"); //$NON-NLS-1$
 	
 	/**
-	 * Patter for name and surname.
+	 * Existing place codes, {@code null} to only check the place code length.
 	 */
-	private static final Pattern xamePattern = Pattern.compile("[A-Z]*"); //$NON-NLS-1$
+	private final @Nullable
+	PlaceCodeRegistry placeCodeRegistry;
 	
 	/**
 	 * Reference upper case alphabet.
@@ -103,46 +81,107 @@ public class StandardFiscalCodeValidator implements FiscalCodeValidator {
 	 *            reference upper case alphabet
 	 */
 	public StandardFiscalCodeValidator(final ImmutableList<Character> upperCaseAlphabet) {
+		this(upperCaseAlphabet, null);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param upperCaseAlphabet
+	 *            reference upper case alphabet
+	 * @param placeCodeRegistry
+	 *            existing place codes, {@code null} to only check the place
+	 *            code length; none is bundled, see
+	 *            {@link it.assetdata.lole.it.place} to load one
+	 */
+	public StandardFiscalCodeValidator(final ImmutableList<Character> upperCaseAlphabet, final @Nullable PlaceCodeRegistry placeCodeRegistry) {
+		this.placeCodeRegistry = placeCodeRegistry;
 		this.upperCaseAlphabet = upperCaseAlphabet;
 	}
 	
 	/**
-	 * Calculate the control character of a fiscal code.
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * Codes with omocodia, where digits are replaced by the letters
+	 * {@code L M N P Q R S T U V} to tell apart people who would get the same
+	 * code, are valid: letters are legal at the positions of the year, the
+	 * day and the place code digits too. See
+	 * {@link #validateStructure(CharSequence)} to only accept canonical codes.
+	 * 
+	 * @see OmocodiaDecoder
+	 */
+	@Override
+	public boolean validate(@Nullable final String fiscalCode) {
+		if ((fiscalCode == null) || (fiscalCode.length() != fiscalCodeLength)) {
+			return false;
+		}
+		int structureMismatch = 0;
+		for (int i = 0; i < fiscalCodeLength; i++) {
+			structureMismatch |= FiscalCodeTables.omocodicStructureMismatch(i, fiscalCode.charAt(i));
+		}
+		return (structureMismatch == 0) && validateControlCharacter(fiscalCode);
+	}
+	
+	/**
+	 * Checks if the {@link #fiscalCodeLength} ASCII bytes of
+	 * {@code fiscalCode} starting at {@code offset} are a valid fiscal code,
+	 * like {@link #validate(String)} does but without decoding them to a
+	 * {@link String}.<br/>
+	 * Any byte value is accepted, so garbage input simply is not valid: it is
+	 * rejected by the same structure check, omocodia included, before any
+	 * control character work.
 	 * 
 	 * @param fiscalCode
-	 *            fiscal code to use, must be left untouched until this method
-	 *            returns to avoid unpredictable behavior
-	 * @return control character
-	 */
-	private char buildControlCharacter(final CharSequence fiscalCode) {
-		// Convert every value's character in a number: numbers map to themselves (ie. 0=0, 1=1) and letters start after them (ie. a=11, b=12).
-		int controlCharacterIndex = 0;
-		for (int i = 0; i < (fiscalCode.length() - 1); i++) {
-			int character = fiscalCode.charAt(i);
-			character -= utf16NumberOffset;
-			if (digitsLength < character) {
-				character -= (utf16UpperCaseLettersOffset);
-			}
-			// Encode every number-converted value's character based on it's position.
-			if ((i % 2) == 0) { // Inverted cause zero-based!
-				controlCharacterIndex += oddCharactersValueTable[character];
-			} else {
-				controlCharacterIndex += evenCharactersValueTable[character];
-			}
+	 *            ASCII bytes to validate
+	 * @param offset
+	 *            index of the first fiscal code byte
+	 * @return {@code true} if it is valid, {@code false} otherwise
+	 */
+	public boolean validate(final @Nullable byte[] fiscalCode, final int offset) {
+		if ((fiscalCode == null) || (offset < 0) || ((fiscalCode.length - fiscalCodeLength) < offset)) {
+			return false;
+		}
+		int structureMismatch = 0;
+		for (int i = 0; i < fiscalCodeLength; i++) {
+			structureMismatch |= FiscalCodeTables.omocodicStructureMismatch(i, fiscalCode[offset + i] & 0xFF);
 		}
-		// Convert the total sum in a letter.
-		controlCharacterIndex %= upperCaseAlphabet.size();
-		final char controlCharacter = upperCaseAlphabet.get(controlCharacterIndex).charValue();
-		// Return.
-		return controlCharacter;
+		if (structureMismatch != 0) {
+			return false;
+		}
+		int controlCharacterValue = 0;
+		for (int i = 0; i < controlCharacterIndex; i++) {
+			controlCharacterValue += FiscalCodeTables.positionValue(i, fiscalCode[offset + i]);
+		}
+		return (fiscalCode[offset + controlCharacterIndex] & 0xFF) == FiscalCodeTables.controlCharacter(upperCaseAlphabet, controlCharacterValue);
 	}
 	
 	/**
-	 * {@inheritDoc}
+	 * Checks if the {@link #fiscalCodeLength} ASCII bytes of
+	 * {@code fiscalCode} starting at its position are a valid fiscal code,
+	 * like {@link #validate(byte[], int)} does.<br/>
+	 * Works on heap and direct buffers and does not change their position.
+	 * 
+	 * @param fiscalCode
+	 *            ASCII bytes to validate
+	 * @return {@code true} if it is valid, {@code false} otherwise
 	 */
-	@Override
-	public boolean validate(@Nullable final String fiscalCode) {
-		return (fiscalCode != null) && (fiscalCode.length() == fiscalCodeLength) && (validateControlCharacter(fiscalCode));
+	public boolean validate(final @Nullable ByteBuffer fiscalCode) {
+		if ((fiscalCode == null) || (fiscalCode.remaining() < fiscalCodeLength)) {
+			return false;
+		}
+		final int offset = fiscalCode.position();
+		int structureMismatch = 0;
+		for (int i = 0; i < fiscalCodeLength; i++) {
+			structureMismatch |= FiscalCodeTables.omocodicStructureMismatch(i, fiscalCode.get(offset + i) & 0xFF);
+		}
+		if (structureMismatch != 0) {
+			return false;
+		}
+		int controlCharacterValue = 0;
+		for (int i = 0; i < controlCharacterIndex; i++) {
+			controlCharacterValue += FiscalCodeTables.positionValue(i, fiscalCode.get(offset + i));
+		}
+		return (fiscalCode.get(offset + controlCharacterIndex) & 0xFF) == FiscalCodeTables.controlCharacter(upperCaseAlphabet, controlCharacterValue);
 	}
 	
 	/**
@@ -158,15 +197,19 @@ public class StandardFiscalCodeValidator implements FiscalCodeValidator {
 	 */
 	@Override
 	public boolean validateControlCharacter(final @Nullable CharSequence fiscalCode) {
-		boolean result = false;
-		if (fiscalCode != null) {
-			final char controlCharacter = buildControlCharacter(fiscalCode);
-			final char otherControlCharacter = fiscalCode.charAt(controlCharacterIndex);
-			if (controlCharacter == otherControlCharacter) {
-				result = true;
+		if ((fiscalCode == null) || (fiscalCode.length() != fiscalCodeLength)) {
+			return false;
+		}
+		// Convert every character in a number based on it's position, garbage characters make the code invalid.
+		int controlCharacterValue = 0;
+		for (int i = 0; i < controlCharacterIndex; i++) {
+			final int value = FiscalCodeTables.positionValue(i, fiscalCode.charAt(i));
+			if (value == FiscalCodeTables.invalid) {
+				return false;
 			}
+			controlCharacterValue += value;
 		}
-		return result;
+		return fiscalCode.charAt(controlCharacterIndex) == FiscalCodeTables.controlCharacter(upperCaseAlphabet, controlCharacterValue);
 	}
 	
 	/**
@@ -178,13 +221,61 @@ public class StandardFiscalCodeValidator implements FiscalCodeValidator {
 	}
 	
 	/**
-	 * {@inheritDoc}
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * If this validator has a {@link PlaceCodeRegistry}, {@code placeCode}
+	 * must also exist in it.
 	 */
 	@Override
 	public boolean validatePlaceCode(final @Nullable String placeCode) {
+		if (placeCodeRegistry != null) {
+			return placeCodeRegistry.contains(placeCode);
+		}
 		return (placeCode != null) && (placeCode.length() == placeCodeLength);
 	}
 	
+	/**
+	 * Checks if {@code placeCode} was valid on {@code birthDate}, as places
+	 * merge, split or are created over time, together with
+	 * {@link #validateBirthDate(LocalDate)}.<br/>
+	 * Without a {@link PlaceCodeRegistry} {@code placeCode} must be shaped like
+	 * a place code, see {@link PlaceCodes#pack(CharSequence)}, which is
+	 * stricter than the length check of {@link #validatePlaceCode(String)}.
+	 * 
+	 * @param placeCode
+	 *            to check
+	 * @param birthDate
+	 *            to check
+	 * @return {@code true} if both are valid and the place code was valid on
+	 *         the birth date, {@code false} otherwise
+	 */
+	public boolean validatePlaceCode(final @Nullable String placeCode, final @Nullable LocalDate birthDate) {
+		return validatePlaceCode(placeCode) && validateBirthDate(birthDate)
+				&& validatePlaceCode(PlaceCodes.pack(placeCode), PlaceCodes.epochDay(birthDate.getYear(), birthDate.getMonthOfYear(), birthDate.getDayOfMonth()));
+	}
+	
+	/**
+	 * Checks if the place code packed by {@link PlaceCodes#pack(CharSequence)}
+	 * into {@code placeCodeKey} was valid on {@code birthEpochDay}, for bulk
+	 * loops over primitive columns: no allocation and, with a
+	 * {@link PlaceCodeValidityIndex}, a binary search over a handful of
+	 * intervals.<br/>
+	 * Without a {@link PlaceCodeRegistry} any well formed key is valid.
+	 * 
+	 * @param placeCodeKey
+	 *            to check, any value
+	 * @param birthEpochDay
+	 *            birth date, see {@link PlaceCodes#epochDay(int, int, int)}
+	 * @return {@code true} if the place code was valid on the birth date,
+	 *         {@code false} otherwise
+	 */
+	public boolean validatePlaceCode(final int placeCodeKey, final int birthEpochDay) {
+		if (placeCodeRegistry != null) {
+			return placeCodeRegistry.contains(placeCodeKey, birthEpochDay);
+		}
+		return (0 <= placeCodeKey) && (placeCodeKey < PlaceCodes.keysCount);
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -193,6 +284,30 @@ public class StandardFiscalCodeValidator implements FiscalCodeValidator {
 		return sex != null;
 	}
 	
+	/**
+	 * Checks if {@code fiscalCode} has the structure of a canonical standard
+	 * fiscal code: {@link #fiscalCodeLength} characters, upper case letters at
+	 * positions 0-5, 8, 11 and 15 and digits elsewhere.<br/>
+	 * Stricter than {@link #validate(String)}, which also accepts omocodia
+	 * letters in digit positions: use it to only accept canonical codes.
+	 * Driven by a character class table and with a single branch, so it
+	 * rejects any malformed input in a few nanoseconds and never throws.
+	 * 
+	 * @param fiscalCode
+	 *            to check
+	 * @return {@code true} if it is well formed, {@code false} otherwise
+	 */
+	public boolean validateStructure(final @Nullable CharSequence fiscalCode) {
+		if ((fiscalCode == null) || (fiscalCode.length() != fiscalCodeLength)) {
+			return false;
+		}
+		int structureMismatch = 0;
+		for (int i = 0; i < fiscalCodeLength; i++) {
+			structureMismatch |= FiscalCodeTables.structureMismatch(i, fiscalCode.charAt(i));
+		}
+		return structureMismatch == 0;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -201,6 +316,50 @@ public class StandardFiscalCodeValidator implements FiscalCodeValidator {
 		return validateXname(surname);
 	}
 	
+	/**
+	 * Checks if {@code fiscalCode} is valid like {@link #validate(String)}
+	 * does, but ignoring letters case and skipping blanks, {@code '-'},
+	 * {@code '.'} and {@code '/'} wherever they are.<br/>
+	 * Case folding and separators skipping happen inside the single checksum
+	 * loop, so there is no need to {@code trim().toUpperCase()} the input and
+	 * nothing is allocated. Upper case codes without separators give the same
+	 * result of {@link #validate(String)}, omocodia included.
+	 * 
+	 * @param fiscalCode
+	 *            to validate
+	 * @return {@code true} if it is valid, {@code false} otherwise
+	 */
+	public boolean validateTolerant(final @Nullable CharSequence fiscalCode) {
+		if (fiscalCode == null) {
+			return false;
+		}
+		int index = 0;
+		int structureMismatch = 0;
+		int controlCharacterValue = 0;
+		int controlCharacter = 0;
+		for (int i = 0; i < fiscalCode.length(); i++) {
+			final int character = fiscalCode.charAt(i);
+			if (FiscalCodeTables.asciiLength <= character) {
+				return false;
+			}
+			if (FiscalCodeTables.characterClassTable[character] == FiscalCodeTables.separator) {
+				continue;
+			}
+			if (index == fiscalCodeLength) { // Too many characters.
+				return false;
+			}
+			final int folded = FiscalCodeTables.caseFoldingTable[character];
+			structureMismatch |= FiscalCodeTables.omocodicStructureMismatch(index, folded);
+			if (index < controlCharacterIndex) {
+				controlCharacterValue += FiscalCodeTables.positionValue(index, folded);
+			} else {
+				controlCharacter = folded;
+			}
+			index++;
+		}
+		return (index == fiscalCodeLength) && (structureMismatch == 0) && (controlCharacter == FiscalCodeTables.controlCharacter(upperCaseAlphabet, controlCharacterValue));
+	}
+	
 	/**
 	 * Checks if {@code xname} (means "name" or "surname") is valid to use in a
 	 * {@link FiscalCode}.
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.collect;
+
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Open addressing hash table of packed fiscal codes with linear probing,
+ * shared by {@link PackedFiscalCodeSet} and {@link PackedFiscalCodeMap}.<br/>
+ * Every slot is the two halves of a packed code side by side, 16 bytes in
+ * the same cache line, so a lookup usually costs a single cache miss. Empty
+ * slots have a zero high half, which no fiscal code has as its first
+ * character is a letter.<br/>
+ * Slots are kept in {@link LongBuffer} segments, either on the heap or off
+ * it in direct buffers. Resizing is incremental: the old table is kept
+ * while every insertion moves a few of its slots to the new one, so there
+ * is no pause to copy the whole table, and lookups check both tables until
+ * all slots have been moved.
+ */
+@NotThreadSafe
+abstract class AbstractPackedFiscalCodeTable {
+	
+	/**
+	 * High half of empty slots.
+	 */
+	private static final long empty = 0;
+	
+	/**
+	 * Maximum number of slots, so that the table can still grow.
+	 */
+	private static final int maxCapacity = 1 << 30;
+	
+	/**
+	 * Old table slots moved to the new one per insertion while resizing.
+	 */
+	private static final int migrationStep = 64;
+	
+	/**
+	 * Minimum number of slots.
+	 */
+	private static final int minCapacity = 16;
+	
+	/**
+	 * High half of old table slots already moved to the new table: they
+	 * cannot be emptied as that would break the probing of the slots after
+	 * them.
+	 */
+	private static final long moved = -1;
+	
+	/**
+	 * Number of slots of a segment, as a power of two, so that direct
+	 * segments stay below the 2 GB limit of {@link ByteBuffer}s.
+	 */
+	private static final int segmentCapacityLog2 = 26;
+	
+	/**
+	 * Whether slots are kept off the heap.
+	 */
+	private final boolean direct;
+	
+	/**
+	 * Mask of {@link #segments} slot indexes.
+	 */
+	private int mask;
+	
+	/**
+	 * Mask of {@link #oldSegments} slot indexes.
+	 */
+	private int oldMask;
+	
+	/**
+	 * Next {@link #oldSegments} slot to move.
+	 */
+	private int oldNextSlot;
+	
+	/**
+	 * Slots of the table being emptied while resizing, {@code null} if not
+	 * resizing.
+	 */
+	private @Nullable
+	LongBuffer[] oldSegments;
+	
+	/**
+	 * Number of codes after which the table grows.
+	 */
+	private int resizeThreshold;
+	
+	/**
+	 * Slots of the current table.
+	 */
+	private LongBuffer[] segments;
+	
+	/**
+	 * Number of codes.
+	 */
+	private int size;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param expectedSize
+	 *            number of codes the table should hold without resizing
+	 * @param direct
+	 *            {@code true} to keep slots off the heap
+	 */
+	AbstractPackedFiscalCodeTable(final int expectedSize, final boolean direct) {
+		this.direct = direct;
+		int capacity = minCapacity;
+		while ((capacity < maxCapacity) && (thresholdOf(capacity) < expectedSize)) {
+			capacity <<= 1;
+		}
+		segments = allocate(capacity);
+		mask = capacity - 1;
+		resizeThreshold = thresholdOf(capacity);
+	}
+	
+	/**
+	 * @return value of {@link #find(long, long)} for missing codes
+	 */
+	static int absent() {
+		return Integer.MIN_VALUE;
+	}
+	
+	/**
+	 * @param capacity
+	 *            number of slots, a power of two
+	 * @return empty segments
+	 */
+	private LongBuffer[] allocate(final int capacity) {
+		final int segmentCapacity = Math.min(capacity, 1 << segmentCapacityLog2);
+		final LongBuffer[] allocated = new LongBuffer[capacity / segmentCapacity];
+		for (int i = 0; i < allocated.length; i++) {
+			allocated[i] = direct
+					? ByteBuffer.allocateDirect(segmentCapacity * 16).order(ByteOrder.nativeOrder()).asLongBuffer()
+					: LongBuffer.allocate(segmentCapacity * 2);
+		}
+		return allocated;
+	}
+	
+	/**
+	 * @return number of slots of the current table
+	 */
+	final int capacity() {
+		return mask + 1;
+	}
+	
+	/**
+	 * Looks a code up.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @return slot of the code: non negative in the current table, negative
+	 *         but not {@link #absent()} in the old one while resizing, see
+	 *         {@link #isOldSlot(int)}; {@link #absent()} if missing or if
+	 *         {@code high} and {@code low} are not a packed fiscal code
+	 */
+	final int find(final long high, final long low) {
+		if ((high <= empty) || (low < 0)) {
+			return absent();
+		}
+		final int hash = PackedFiscalCode.hash(high, low);
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			final long slotHigh = high(segments, slot);
+			if (slotHigh == empty) {
+				break;
+			} else if ((slotHigh == high) && (low(segments, slot) == low)) {
+				return slot;
+			}
+		}
+		final LongBuffer[] old = oldSegments;
+		if (old != null) {
+			for (int slot = hash & oldMask;; slot = (slot + 1) & oldMask) {
+				final long slotHigh = high(old, slot);
+				if (slotHigh == empty) {
+					break;
+				} else if ((slotHigh == high) && (low(old, slot) == low)) {
+					return slot | Integer.MIN_VALUE;
+				}
+			}
+		}
+		return absent();
+	}
+	
+	/**
+	 * Starts resizing to twice the capacity.
+	 */
+	private void grow() {
+		final int capacity = mask + 1;
+		if (capacity >= maxCapacity) {
+			throw new IllegalStateException("Too many fiscal codes: " + size); //$NON-NLS-1$
+		}
+		oldSegments = segments;
+		oldMask = mask;
+		oldNextSlot = 0;
+		segments = allocate(capacity << 1);
+		mask = (capacity << 1) - 1;
+		resizeThreshold = thresholdOf(capacity << 1);
+		resizeValues(capacity << 1);
+		migrate();
+	}
+	
+	/**
+	 * @param slots
+	 *            segments
+	 * @param slot
+	 *            slot index
+	 * @return high half of the code in {@code slot}
+	 */
+	private static long high(final LongBuffer[] slots, final int slot) {
+		return slots[slot >>> segmentCapacityLog2].get((slot & ((1 << segmentCapacityLog2) - 1)) << 1);
+	}
+	
+	/**
+	 * Inserts a code that is not in the table.
+	 * 
+	 * @param slots
+	 *            segments
+	 * @param slotsMask
+	 *            mask of {@code slots} indexes
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @return slot of the code
+	 */
+	private static int insert(final LongBuffer[] slots, final int slotsMask, final long high, final long low) {
+		int slot = PackedFiscalCode.hash(high, low) & slotsMask;
+		while (high(slots, slot) != empty) {
+			slot = (slot + 1) & slotsMask;
+		}
+		final int index = (slot & ((1 << segmentCapacityLog2) - 1)) << 1;
+		slots[slot >>> segmentCapacityLog2].put(index, high).put(index + 1, low);
+		return slot;
+	}
+	
+	/**
+	 * Inserts a code that {@link #find(long, long)} did not find.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @return slot of the code in the current table
+	 * @throws IllegalArgumentException
+	 *             if {@code high} and {@code low} are not a packed fiscal
+	 *             code
+	 */
+	final int insertAbsent(final long high, final long low) throws IllegalArgumentException {
+		if ((high <= empty) || (low < 0)) {
+			throw new IllegalArgumentException();
+		}
+		if (oldSegments != null) {
+			migrate();
+		} else if (size >= resizeThreshold) {
+			grow();
+		}
+		size++;
+		return insert(segments, mask, high, low);
+	}
+	
+	/**
+	 * @return {@code true} if slots are kept off the heap
+	 */
+	public boolean isDirect() {
+		return direct;
+	}
+	
+	/**
+	 * @param slot
+	 *            returned by {@link #find(long, long)}, not {@link #absent()}
+	 * @return {@code true} if {@code slot} is in the old table while resizing,
+	 *         then its index is {@code slot & Integer.MAX_VALUE}
+	 */
+	static boolean isOldSlot(final int slot) {
+		return slot < 0;
+	}
+	
+	/**
+	 * @param slots
+	 *            segments
+	 * @param slot
+	 *            slot index
+	 * @return low half of the code in {@code slot}
+	 */
+	private static long low(final LongBuffer[] slots, final int slot) {
+		return slots[slot >>> segmentCapacityLog2].get(((slot & ((1 << segmentCapacityLog2) - 1)) << 1) + 1);
+	}
+	
+	/**
+	 * Moves the next {@link #migrationStep} old table slots to the current
+	 * table, ending the resize after the last one.
+	 */
+	private void migrate() {
+		final LongBuffer[] old = oldSegments;
+		final int end = Math.min(oldNextSlot + migrationStep, oldMask + 1);
+		for (int slot = oldNextSlot; slot < end; slot++) {
+			final long high = high(old, slot);
+			if (high > empty) {
+				final int newSlot = insert(segments, mask, high, low(old, slot));
+				moveValue(slot, newSlot);
+				old[slot >>> segmentCapacityLog2].put((slot & ((1 << segmentCapacityLog2) - 1)) << 1, moved);
+			}
+		}
+		oldNextSlot = end;
+		if (end > oldMask) {
+			oldSegments = null;
+			resizeValues(0);
+		}
+	}
+	
+	/**
+	 * Moves the value of an old table slot to a current table slot while
+	 * resizing.
+	 * 
+	 * @param oldSlot
+	 *            old table slot
+	 * @param slot
+	 *            current table slot
+	 */
+	abstract void moveValue(final int oldSlot, final int slot);
+	
+	/**
+	 * Starts or ends resizing values.
+	 * 
+	 * @param capacity
+	 *            number of slots of the new table when starting, {@code 0}
+	 *            when all the old table slots have been moved
+	 */
+	abstract void resizeValues(final int capacity);
+	
+	/**
+	 * @return number of codes
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @param capacity
+	 *            number of slots
+	 * @return number of codes a table of {@code capacity} slots holds before
+	 *         growing, for a load factor of 2/3
+	 */
+	private static int thresholdOf(final int capacity) {
+		return (int) ((capacity * 2L) / 3);
+	}
+	
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.collect;
+
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+
+/**
+ * Operations on packed fiscal codes kept as parallel arrays of high and low
+ * halves, see {@link PackedFiscalCode}, without boxing them.
+ */
+public final class PackedFiscalCodeArrays {
+	
+	/**
+	 * Ranges up to this length are sorted by insertion.
+	 */
+	private static final int insertionSortThreshold = 24;
+	
+	/**
+	 * Not instantiable.
+	 */
+	private PackedFiscalCodeArrays() {
+		// Utility class.
+	}
+	
+	/**
+	 * Compares the codes at two indexes.
+	 * 
+	 * @param highs
+	 *            high halves
+	 * @param lows
+	 *            low halves
+	 * @param i
+	 *            first index
+	 * @param j
+	 *            second index
+	 * @return negative, zero or positive like
+	 *         {@link Comparable#compareTo(Object)}
+	 */
+	private static int compare(final long[] highs, final long[] lows, final int i, final int j) {
+		return PackedFiscalCode.compare(highs[i], lows[i], highs[j], lows[j]);
+	}
+	
+	/**
+	 * Sorts codes by insertion.
+	 * 
+	 * @param highs
+	 *            high halves
+	 * @param lows
+	 *            low halves
+	 * @param from
+	 *            first index, included
+	 * @param to
+	 *            last index, excluded
+	 */
+	private static void insertionSort(final long[] highs, final long[] lows, final int from, final int to) {
+		for (int i = from + 1; i < to; i++) {
+			final long high = highs[i];
+			final long low = lows[i];
+			int j = i - 1;
+			while ((j >= from) && (PackedFiscalCode.compare(highs[j], lows[j], high, low) > 0)) {
+				highs[j + 1] = highs[j];
+				lows[j + 1] = lows[j];
+				j--;
+			}
+			highs[j + 1] = high;
+			lows[j + 1] = low;
+		}
+	}
+	
+	/**
+	 * Sorts codes in ascending order, that is the order of their values.<br/>
+	 * Quicksort with median of three pivots, recursing on the smaller
+	 * partition only so that the stack stays logarithmic.
+	 * 
+	 * @param highs
+	 *            high halves
+	 * @param lows
+	 *            low halves, moved along with {@code highs}
+	 * @param from
+	 *            first index, included
+	 * @param to
+	 *            last index, excluded
+	 */
+	public static void sort(final long[] highs, final long[] lows, final int from, final int to) {
+		int left = from;
+		int right = to;
+		while ((right - left) > insertionSortThreshold) {
+			final int middle = (left + right) >>> 1;
+			if (compare(highs, lows, middle, left) < 0) {
+				swap(highs, lows, middle, left);
+			}
+			if (compare(highs, lows, right - 1, left) < 0) {
+				swap(highs, lows, right - 1, left);
+			}
+			if (compare(highs, lows, right - 1, middle) < 0) {
+				swap(highs, lows, right - 1, middle);
+			}
+			final long pivotHigh = highs[middle];
+			final long pivotLow = lows[middle];
+			int i = left;
+			int j = right - 1;
+			while (i <= j) {
+				while (PackedFiscalCode.compare(highs[i], lows[i], pivotHigh, pivotLow) < 0) {
+					i++;
+				}
+				while (PackedFiscalCode.compare(highs[j], lows[j], pivotHigh, pivotLow) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(highs, lows, i, j);
+					i++;
+					j--;
+				}
+			}
+			if ((j - left) < (right - i)) {
+				sort(highs, lows, left, j + 1);
+				left = i;
+			} else {
+				sort(highs, lows, i, right);
+				right = j + 1;
+			}
+		}
+		insertionSort(highs, lows, left, right);
+	}
+	
+	/**
+	 * Swaps the codes at two indexes.
+	 * 
+	 * @param highs
+	 *            high halves
+	 * @param lows
+	 *            low halves
+	 * @param i
+	 *            first index
+	 * @param j
+	 *            second index
+	 */
+	private static void swap(final long[] highs, final long[] lows, final int i, final int j) {
+		final long high = highs[i];
+		final long low = lows[i];
+		highs[i] = highs[j];
+		lows[i] = lows[j];
+		highs[j] = high;
+		lows[j] = low;
+	}
+	
+	/**
+	 * Removes consecutive duplicates of sorted codes, moving the unique ones
+	 * to the start of the range.
+	 * 
+	 * @param highs
+	 *            high halves
+	 * @param lows
+	 *            low halves
+	 * @param from
+	 *            first index, included
+	 * @param to
+	 *            last index, excluded
+	 * @return index after the last unique code
+	 */
+	public static int unique(final long[] highs, final long[] lows, final int from, final int to) {
+		if (from >= to) {
+			return from;
+		}
+		int last = from;
+		for (int i = from + 1; i < to; i++) {
+			if ((highs[i] != highs[last]) || (lows[i] != lows[last])) {
+				last++;
+				highs[last] = highs[i];
+				lows[last] = lows[i];
+			}
+		}
+		return last + 1;
+	}
+	
+}
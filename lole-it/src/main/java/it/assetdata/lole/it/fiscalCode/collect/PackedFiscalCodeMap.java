@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.collect;
+
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Map from packed fiscal codes, see {@link PackedFiscalCode}, to values,
+ * with no object per key: keys take 16 bytes per slot, either on the heap or
+ * off it, and values one reference per slot on the heap.<br/>
+ * Keys are passed as their two packed halves, so lookups do not allocate.
+ * 
+ * @param <V>
+ *            values type
+ */
+@NotThreadSafe
+public class PackedFiscalCodeMap<V> extends AbstractPackedFiscalCodeTable {
+	
+	/**
+	 * Values of the old table slots while resizing, {@code null} otherwise.
+	 */
+	private @Nullable
+	Object[] oldValues;
+	
+	/**
+	 * Values of the current table slots.
+	 */
+	private Object[] values;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param expectedSize
+	 *            number of keys the map should hold without resizing
+	 * @param direct
+	 *            {@code true} to keep keys off the heap, in direct buffers
+	 */
+	public PackedFiscalCodeMap(final int expectedSize, final boolean direct) {
+		super(expectedSize, direct);
+		values = new Object[capacity()];
+	}
+	
+	/**
+	 * Checks if a key is in the map.
+	 * 
+	 * @param high
+	 *            packed key high half
+	 * @param low
+	 *            packed key low half
+	 * @return {@code true} if it is in the map, {@code false} otherwise
+	 */
+	public boolean containsKey(final long high, final long low) {
+		return find(high, low) != absent();
+	}
+	
+	/**
+	 * Returns the value of a key.
+	 * 
+	 * @param high
+	 *            packed key high half
+	 * @param low
+	 *            packed key low half
+	 * @return value, {@code null} if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public @Nullable
+	V get(final long high, final long low) {
+		final int slot = find(high, low);
+		if (slot == absent()) {
+			return null;
+		}
+		return (V) (isOldSlot(slot) ? oldValues[slot & Integer.MAX_VALUE] : values[slot]);
+	}
+	
+	/**
+	 * Returns the values of {@code length} keys.
+	 * 
+	 * @param highs
+	 *            packed keys high halves
+	 * @param lows
+	 *            packed keys low halves
+	 * @param offset
+	 *            index of the first key in {@code highs} and {@code lows}
+	 * @param length
+	 *            number of keys
+	 * @param results
+	 *            where to write, at the same indexes as the keys, their
+	 *            values or {@code null}
+	 * @return number of keys in the map
+	 */
+	public int getAll(final long[] highs, final long[] lows, final int offset, final int length, final V[] results) {
+		int found = 0;
+		for (int i = offset; i < (offset + length); i++) {
+			results[i] = get(highs[i], lows[i]);
+			if (results[i] != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void moveValue(final int oldSlot, final int slot) {
+		values[slot] = oldValues[oldSlot];
+	}
+	
+	/**
+	 * Maps a key to a value.
+	 * 
+	 * @param high
+	 *            packed key high half
+	 * @param low
+	 *            packed key low half
+	 * @param value
+	 *            not {@code null}
+	 * @return previous value, {@code null} if the key was not in the map
+	 * @throws IllegalArgumentException
+	 *             if {@code high} and {@code low} are not a packed fiscal
+	 *             code or {@code value} is {@code null}
+	 */
+	@SuppressWarnings("unchecked")
+	public @Nullable
+	V put(final long high, final long low, final V value) throws IllegalArgumentException {
+		if (value == null) { // Would read as absent.
+			throw new IllegalArgumentException("Null value"); //$NON-NLS-1$
+		}
+		final int slot = find(high, low);
+		if (slot == absent()) {
+			final int newSlot = insertAbsent(high, low); // May resize values.
+			values[newSlot] = value;
+			return null;
+		}
+		final Object[] slotValues = isOldSlot(slot) ? oldValues : values;
+		final int index = slot & Integer.MAX_VALUE;
+		final V previous = (V) slotValues[index];
+		slotValues[index] = value;
+		return previous;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void resizeValues(final int capacity) {
+		if (capacity == 0) {
+			oldValues = null;
+		} else {
+			oldValues = values;
+			values = new Object[capacity];
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
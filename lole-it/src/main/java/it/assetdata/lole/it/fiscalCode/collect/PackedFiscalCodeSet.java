@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.collect;
+
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Set of packed fiscal codes, see {@link PackedFiscalCode}, taking 16 bytes
+ * per slot with no object per code, either on the heap or off it.<br/>
+ * Codes are passed as their two packed halves, one by one or in bulk over
+ * arrays, so membership checks and insertions do not allocate.
+ */
+@NotThreadSafe
+public class PackedFiscalCodeSet extends AbstractPackedFiscalCodeTable {
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param expectedSize
+	 *            number of codes the set should hold without resizing
+	 * @param direct
+	 *            {@code true} to keep codes off the heap, in direct buffers
+	 */
+	public PackedFiscalCodeSet(final int expectedSize, final boolean direct) {
+		super(expectedSize, direct);
+	}
+	
+	/**
+	 * Adds a code, if missing.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @return {@code true} if it has been added, {@code false} if it was
+	 *         already in the set
+	 * @throws IllegalArgumentException
+	 *             if {@code high} and {@code low} are not a packed fiscal
+	 *             code
+	 */
+	public boolean add(final long high, final long low) throws IllegalArgumentException {
+		if (find(high, low) != absent()) {
+			return false;
+		}
+		insertAbsent(high, low);
+		return true;
+	}
+	
+	/**
+	 * Adds {@code length} codes.
+	 * 
+	 * @param highs
+	 *            packed codes high halves
+	 * @param lows
+	 *            packed codes low halves
+	 * @param offset
+	 *            index of the first code in {@code highs} and {@code lows}
+	 * @param length
+	 *            number of codes
+	 * @return number of codes added, the others were already in the set
+	 * @throws IllegalArgumentException
+	 *             if any code is not a packed fiscal code, the codes before
+	 *             it have been added
+	 */
+	public int addAll(final long[] highs, final long[] lows, final int offset, final int length) throws IllegalArgumentException {
+		int added = 0;
+		for (int i = offset; i < (offset + length); i++) {
+			if (add(highs[i], lows[i])) {
+				added++;
+			}
+		}
+		return added;
+	}
+	
+	/**
+	 * Checks if a code is in the set.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @return {@code true} if it is in the set, {@code false} otherwise
+	 */
+	public boolean contains(final long high, final long low) {
+		return find(high, low) != absent();
+	}
+	
+	/**
+	 * Checks if {@code length} codes are in the set.
+	 * 
+	 * @param highs
+	 *            packed codes high halves
+	 * @param lows
+	 *            packed codes low halves
+	 * @param offset
+	 *            index of the first code in {@code highs} and {@code lows}
+	 * @param length
+	 *            number of codes
+	 * @param results
+	 *            where to write, at the same indexes as the codes, whether
+	 *            every code is in the set
+	 * @return number of codes in the set
+	 */
+	public int containsAll(final long[] highs, final long[] lows, final int offset, final int length, final boolean[] results) {
+		int found = 0;
+		for (int i = offset; i < (offset + length); i++) {
+			results[i] = find(highs[i], lows[i]) != absent();
+			if (results[i]) {
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * Sets have no values.
+	 */
+	@Override
+	void moveValue(final int oldSlot, final int slot) {
+		// No values.
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * Sets have no values.
+	 */
+	@Override
+	void resizeValues(final int capacity) {
+		// No values.
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.columnar;
+
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * A block of a columnar file: where its column chunks are and the minimum
+ * and maximum values of its rows, so that scans can skip the blocks that
+ * cannot match without reading them.
+ */
+@Immutable
+public final class ColumnarBlock {
+	
+	/**
+	 * Compressed chunk lengths by column index.
+	 */
+	private final int[] chunkLengths;
+	
+	/**
+	 * Chunk positions in the file by column index.
+	 */
+	private final long[] chunkPositions;
+	
+	/**
+	 * Maximum birth date, as days since 1970-01-01.
+	 */
+	private final int maxBirthEpochDay;
+	
+	/**
+	 * Maximum packed code high half.
+	 */
+	private final long maxHigh;
+	
+	/**
+	 * Maximum packed code low half.
+	 */
+	private final long maxLow;
+	
+	/**
+	 * Maximum place code key.
+	 */
+	private final int maxPlaceCodeKey;
+	
+	/**
+	 * Minimum birth date, as days since 1970-01-01.
+	 */
+	private final int minBirthEpochDay;
+	
+	/**
+	 * Minimum packed code high half.
+	 */
+	private final long minHigh;
+	
+	/**
+	 * Minimum packed code low half.
+	 */
+	private final long minLow;
+	
+	/**
+	 * Minimum place code key.
+	 */
+	private final int minPlaceCodeKey;
+	
+	/**
+	 * Uncompressed chunk lengths by column index.
+	 */
+	private final int[] rawChunkLengths;
+	
+	/**
+	 * Number of rows.
+	 */
+	private final int rows;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param rows
+	 *            number of rows
+	 * @param chunkPositions
+	 *            chunk positions in the file by column index
+	 * @param chunkLengths
+	 *            compressed chunk lengths by column index
+	 * @param rawChunkLengths
+	 *            uncompressed chunk lengths by column index
+	 * @param minHigh
+	 *            minimum packed code high half
+	 * @param minLow
+	 *            minimum packed code low half
+	 * @param maxHigh
+	 *            maximum packed code high half
+	 * @param maxLow
+	 *            maximum packed code low half
+	 * @param minBirthEpochDay
+	 *            minimum birth date
+	 * @param maxBirthEpochDay
+	 *            maximum birth date
+	 * @param minPlaceCodeKey
+	 *            minimum place code key
+	 * @param maxPlaceCodeKey
+	 *            maximum place code key
+	 */
+	ColumnarBlock(
+			final int rows,
+			final long[] chunkPositions,
+			final int[] chunkLengths,
+			final int[] rawChunkLengths,
+			final long minHigh,
+			final long minLow,
+			final long maxHigh,
+			final long maxLow,
+			final int minBirthEpochDay,
+			final int maxBirthEpochDay,
+			final int minPlaceCodeKey,
+			final int maxPlaceCodeKey) {
+		this.chunkLengths = chunkLengths.clone();
+		this.chunkPositions = chunkPositions.clone();
+		this.maxBirthEpochDay = maxBirthEpochDay;
+		this.maxHigh = maxHigh;
+		this.maxLow = maxLow;
+		this.maxPlaceCodeKey = maxPlaceCodeKey;
+		this.minBirthEpochDay = minBirthEpochDay;
+		this.minHigh = minHigh;
+		this.minLow = minLow;
+		this.minPlaceCodeKey = minPlaceCodeKey;
+		this.rawChunkLengths = rawChunkLengths.clone();
+		this.rows = rows;
+	}
+	
+	/**
+	 * @param column
+	 *            column index
+	 * @return compressed chunk length
+	 */
+	int getChunkLength(final int column) {
+		return chunkLengths[column];
+	}
+	
+	/**
+	 * @param column
+	 *            column index
+	 * @return chunk position in the file
+	 */
+	long getChunkPosition(final int column) {
+		return chunkPositions[column];
+	}
+	
+	/**
+	 * @return maximum birth date, as days since 1970-01-01
+	 */
+	public int getMaxBirthEpochDay() {
+		return maxBirthEpochDay;
+	}
+	
+	/**
+	 * @return maximum packed code high half
+	 */
+	public long getMaxHigh() {
+		return maxHigh;
+	}
+	
+	/**
+	 * @return maximum packed code low half
+	 */
+	public long getMaxLow() {
+		return maxLow;
+	}
+	
+	/**
+	 * @return maximum place code key
+	 */
+	public int getMaxPlaceCodeKey() {
+		return maxPlaceCodeKey;
+	}
+	
+	/**
+	 * @return minimum birth date, as days since 1970-01-01
+	 */
+	public int getMinBirthEpochDay() {
+		return minBirthEpochDay;
+	}
+	
+	/**
+	 * @return minimum packed code high half
+	 */
+	public long getMinHigh() {
+		return minHigh;
+	}
+	
+	/**
+	 * @return minimum packed code low half
+	 */
+	public long getMinLow() {
+		return minLow;
+	}
+	
+	/**
+	 * @return minimum place code key
+	 */
+	public int getMinPlaceCodeKey() {
+		return minPlaceCodeKey;
+	}
+	
+	/**
+	 * @param column
+	 *            column index
+	 * @return uncompressed chunk length
+	 */
+	int getRawChunkLength(final int column) {
+		return rawChunkLengths[column];
+	}
+	
+	/**
+	 * @return number of rows
+	 */
+	public int getRows() {
+		return rows;
+	}
+	
+	/**
+	 * Checks if rows born in a period can be in this block.
+	 * 
+	 * @param fromEpochDay
+	 *            first day, as days since 1970-01-01
+	 * @param toEpochDay
+	 *            last day, included
+	 * @return {@code false} if no row is born in the period, {@code true} if
+	 *         some may be
+	 */
+	public boolean mayContainBirthEpochDays(final int fromEpochDay, final int toEpochDay) {
+		return (fromEpochDay <= maxBirthEpochDay) && (minBirthEpochDay <= toEpochDay);
+	}
+	
+	/**
+	 * Checks if a code can be in this block.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @return {@code false} if the code is not in this block, {@code true} if
+	 *         it may be
+	 */
+	public boolean mayContainCode(final long high, final long low) {
+		return (PackedFiscalCode.compare(minHigh, minLow, high, low) <= 0) && (PackedFiscalCode.compare(high, low, maxHigh, maxLow) <= 0);
+	}
+	
+	/**
+	 * Checks if rows born in a place can be in this block.
+	 * 
+	 * @param placeCodeKey
+	 *            canonical place code key, see
+	 *            {@link it.assetdata.lole.it.place.PlaceCodes#pack(CharSequence)}
+	 * @return {@code false} if no row is born in the place, {@code true} if
+	 *         some may be
+	 */
+	public boolean mayContainPlaceCodeKey(final int placeCodeKey) {
+		return (minPlaceCodeKey <= placeCodeKey) && (placeCodeKey <= maxPlaceCodeKey);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
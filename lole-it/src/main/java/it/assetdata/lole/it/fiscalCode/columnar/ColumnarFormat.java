@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.columnar;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Columns and layout of the columnar fiscal code files written by
+ * {@link FiscalCodeColumnarWriter}.<br/>
+ * A file, big endian, is made of:
+ * <ol>
+ * <li>a {@link #headerSize} bytes header: {@link #magic}, format version,
+ * rows per block, then zeros;</li>
+ * <li>blocks of rows, each made of one Deflate compressed chunk per column;
+ * </li>
+ * <li>a footer: for each block its rows, the position and lengths of its
+ * chunks and the minimum and maximum code, birth date and place code, then
+ * the place code, surname and name dictionaries;</li>
+ * <li>the footer position and {@link #magic} again.</li>
+ * </ol>
+ * Before compression, columns are encoded as:
+ * <ul>
+ * <li>{@link #code}: packed codes, see
+ * {@link it.assetdata.lole.it.fiscalCode.PackedFiscalCode}, 16 bytes
+ * each;</li>
+ * <li>{@link #birthDate}: days since the block minimum birth date, varints;
+ * </li>
+ * <li>{@link #sex}: a bitmap, bit {@code i % 8} of byte {@code i / 8} set for
+ * females;</li>
+ * <li>{@link #placeCode}, {@link #surname} and {@link #name}: dictionary ids,
+ * varints.</li>
+ * </ul>
+ */
+public final class ColumnarFormat {
+	
+	/**
+	 * All the columns.
+	 */
+	public static final int allColumns = (1 << 6) - 1;
+	
+	/**
+	 * Birth date column, as days since 1970-01-01.
+	 */
+	public static final int birthDate = 1 << 1;
+	
+	/**
+	 * Packed code column.
+	 */
+	public static final int code = 1 << 0;
+	
+	/**
+	 * Number of columns.
+	 */
+	static final int columnsCount = 6;
+	
+	/**
+	 * Format version.
+	 */
+	static final int formatVersion = 1;
+	
+	/**
+	 * Header size, in bytes.
+	 */
+	static final int headerSize = 64;
+	
+	/**
+	 * File type marker, {@code "LOLECOL1"} in ASCII.
+	 */
+	static final long magic = 0x4C4F4C45434F4C31L;
+	
+	/**
+	 * Name segment column.
+	 */
+	public static final int name = 1 << 5;
+	
+	/**
+	 * Canonical place code column.
+	 */
+	public static final int placeCode = 1 << 3;
+	
+	/**
+	 * Number of three letter segments.
+	 */
+	static final int segmentKeysCount = 26 * 26 * 26;
+	
+	/**
+	 * Sex column.
+	 */
+	public static final int sex = 1 << 2;
+	
+	/**
+	 * Surname segment column.
+	 */
+	public static final int surname = 1 << 4;
+	
+	/**
+	 * Trailer size, in bytes: footer position and {@link #magic}.
+	 */
+	static final int trailerSize = 16;
+	
+	/**
+	 * Not instantiable.
+	 */
+	private ColumnarFormat() {
+		// Utility class.
+	}
+	
+	/**
+	 * Reads an unsigned varint.
+	 * 
+	 * @param buffer
+	 *            to read from
+	 * @return value
+	 */
+	static int getVarint(final ByteBuffer buffer) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+	
+	/**
+	 * Writes an unsigned varint: seven bits per byte, least significant
+	 * first, the high bit set on all bytes but the last.
+	 * 
+	 * @param buffer
+	 *            to write to
+	 * @param value
+	 *            non negative value
+	 */
+	static void putVarint(final ByteBuffer buffer, final int value) {
+		int rest = value;
+		while ((rest & ~0x7F) != 0) {
+			buffer.put((byte) ((rest & 0x7F) | 0x80));
+			rest >>>= 7;
+		}
+		buffer.put((byte) rest);
+	}
+	
+	/**
+	 * Unpacks a three letter segment.
+	 * 
+	 * @param key
+	 *            segment key
+	 * @return segment
+	 */
+	static String segment(final int key) {
+		final char[] letters = { (char) ('A' + (key / 676)), (char) ('A' + ((key / 26) % 26)), (char) ('A' + (key % 26)) };
+		return String.valueOf(letters);
+	}
+	
+	/**
+	 * Packs a three letter surname or name segment.
+	 * 
+	 * @param value
+	 *            holding the segment
+	 * @param offset
+	 *            first letter index
+	 * @return segment key, from {@code 0} to {@link #segmentKeysCount}
+	 *         excluded
+	 * @throws IllegalArgumentException
+	 *             if the segment is not made of upper case letters
+	 */
+	static int segmentKey(final CharSequence value, final int offset) throws IllegalArgumentException {
+		int key = 0;
+		for (int i = offset; i < (offset + 3); i++) {
+			final char letter = value.charAt(i);
+			if ((letter < 'A') || ('Z' < letter)) {
+				throw new IllegalArgumentException(value.toString());
+			}
+			key = (key * 26) + (letter - 'A');
+		}
+		return key;
+	}
+	
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.columnar;
+
+import it.assetdata.lole.it.Female;
+import it.assetdata.lole.it.Male;
+import it.assetdata.lole.it.SexIt;
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+import it.assetdata.lole.it.place.PlaceCodes;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+
+/**
+ * The rows of a block of a columnar file, decoded column by column into
+ * reusable arrays by
+ * {@link FiscalCodeColumnarReader#read(int, int, FiscalCodeBatch)}.<br/>
+ * Only the projected columns are loaded, reading any other one throws an
+ * {@link IllegalStateException}. Getters returning primitives allocate
+ * nothing, the other ones are conveniences.
+ */
+@NotThreadSafe
+public final class FiscalCodeBatch {
+	
+	/**
+	 * Milliseconds per day.
+	 */
+	private static final long millisPerDay = 24L * 60 * 60 * 1000;
+	
+	/**
+	 * Birth dates, as days since 1970-01-01.
+	 */
+	final int[] birthEpochDays;
+	
+	/**
+	 * Loaded columns, see {@link ColumnarFormat}.
+	 */
+	int columns;
+	
+	/**
+	 * Sexes, {@code true} for females.
+	 */
+	final boolean[] females;
+	
+	/**
+	 * Packed codes high halves.
+	 */
+	final long[] highs;
+	
+	/**
+	 * Packed codes low halves.
+	 */
+	final long[] lows;
+	
+	/**
+	 * Name segment keys.
+	 */
+	final int[] nameKeys;
+	
+	/**
+	 * Canonical place code keys.
+	 */
+	final int[] placeCodeKeys;
+	
+	/**
+	 * Number of rows.
+	 */
+	int size;
+	
+	/**
+	 * Surname segment keys.
+	 */
+	final int[] surnameKeys;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *            maximum number of rows, the block size of the files to read
+	 */
+	public FiscalCodeBatch(final int capacity) {
+		birthEpochDays = new int[capacity];
+		females = new boolean[capacity];
+		highs = new long[capacity];
+		lows = new long[capacity];
+		nameKeys = new int[capacity];
+		placeCodeKeys = new int[capacity];
+		surnameKeys = new int[capacity];
+	}
+	
+	/**
+	 * Throws if a column is not loaded.
+	 * 
+	 * @param column
+	 *            column, see {@link ColumnarFormat}
+	 * @param row
+	 *            row index
+	 */
+	private void check(final int column, final int row) {
+		if ((columns & column) == 0) {
+			throw new IllegalStateException("Column not projected"); //$NON-NLS-1$
+		}
+		if ((row < 0) || (size <= row)) {
+			throw new IndexOutOfBoundsException(String.valueOf(row));
+		}
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return birth date
+	 */
+	public LocalDate getBirthDate(final int row) {
+		return new LocalDate(getBirthEpochDay(row) * millisPerDay, DateTimeZone.UTC);
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return birth date, as days since 1970-01-01
+	 */
+	public int getBirthEpochDay(final int row) {
+		check(ColumnarFormat.birthDate, row);
+		return birthEpochDays[row];
+	}
+	
+	/**
+	 * @return loaded columns, see {@link ColumnarFormat}
+	 */
+	public int getColumns() {
+		return columns;
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return packed code high half
+	 */
+	public long getHigh(final int row) {
+		check(ColumnarFormat.code, row);
+		return highs[row];
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return packed code low half
+	 */
+	public long getLow(final int row) {
+		check(ColumnarFormat.code, row);
+		return lows[row];
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return three letter name segment
+	 */
+	public String getName(final int row) {
+		return ColumnarFormat.segment(getNameKey(row));
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return name segment key, the letters in base 26
+	 */
+	public int getNameKey(final int row) {
+		check(ColumnarFormat.name, row);
+		return nameKeys[row];
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return canonical place code
+	 */
+	public String getPlaceCode(final int row) {
+		return PlaceCodes.unpack(getPlaceCodeKey(row));
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return canonical place code key, see
+	 *         {@link PlaceCodes#pack(CharSequence)}
+	 */
+	public int getPlaceCodeKey(final int row) {
+		check(ColumnarFormat.placeCode, row);
+		return placeCodeKeys[row];
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return shared {@link Male} or {@link Female} instance
+	 */
+	public SexIt getSex(final int row) {
+		return isFemale(row) ? Female.getInstance() : Male.getInstance();
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return three letter surname segment
+	 */
+	public String getSurname(final int row) {
+		return ColumnarFormat.segment(getSurnameKey(row));
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return surname segment key, the letters in base 26
+	 */
+	public int getSurnameKey(final int row) {
+		check(ColumnarFormat.surname, row);
+		return surnameKeys[row];
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return fiscal code value
+	 */
+	public String getValue(final int row) {
+		final char[] value = new char[2 * PackedFiscalCode.charactersPerLong];
+		PackedFiscalCode.unpack(getHigh(row), value, 0);
+		PackedFiscalCode.unpack(getLow(row), value, PackedFiscalCode.charactersPerLong);
+		return String.valueOf(value);
+	}
+	
+	/**
+	 * @param row
+	 *            row index
+	 * @return {@code true} if the referred person is female
+	 */
+	public boolean isFemale(final int row) {
+		check(ColumnarFormat.sex, row);
+		return females[row];
+	}
+	
+	/**
+	 * @return number of rows
+	 */
+	public int size() {
+		return size;
+	}
+	
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.columnar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Reads a columnar file written by {@link FiscalCodeColumnarWriter}.<br/>
+ * Opening reads only the footer. Scans check the statistics of every
+ * {@link ColumnarBlock} to skip the blocks that cannot match, then read
+ * only the chunks of the projected columns of the others, so a pass over
+ * one or two columns reads a fraction of the file:
+ * 
+ * <pre>
+ * for (int i = 0; i &lt; reader.getBlocks().size(); i++) {
+ * 	if (reader.getBlocks().get(i).mayContainPlaceCodeKey(key)) {
+ * 		reader.read(i, ColumnarFormat.placeCode | ColumnarFormat.sex, batch);
+ * 		...
+ * 	}
+ * }
+ * </pre>
+ */
+@NotThreadSafe
+public class FiscalCodeColumnarReader implements Closeable {
+	
+	/**
+	 * Blocks.
+	 */
+	private final ImmutableList<ColumnarBlock> blocks;
+	
+	/**
+	 * Rows per block.
+	 */
+	private final int blockSize;
+	
+	/**
+	 * Bytes of column chunks read so far.
+	 */
+	private long bytesRead;
+	
+	/**
+	 * File.
+	 */
+	private final FileChannel channel;
+	
+	/**
+	 * Compressed chunk buffer, grown as needed.
+	 */
+	private ByteBuffer compressed = ByteBuffer.allocate(1 << 16);
+	
+	/**
+	 * Decompressor, reused by all the chunks.
+	 */
+	private final Inflater inflater = new Inflater();
+	
+	/**
+	 * Name segment keys by id.
+	 */
+	private final int[] nameKeys;
+	
+	/**
+	 * Path of the file.
+	 */
+	private final Path path;
+	
+	/**
+	 * Place code keys by id.
+	 */
+	private final int[] placeCodeKeys;
+	
+	/**
+	 * Uncompressed chunk buffer.
+	 */
+	private final ByteBuffer raw;
+	
+	/**
+	 * Number of rows.
+	 */
+	private final long rowCount;
+	
+	/**
+	 * Surname segment keys by id.
+	 */
+	private final int[] surnameKeys;
+	
+	/**
+	 * Constructor, opens the file and reads its footer.
+	 * 
+	 * @param path
+	 *            of the file
+	 * @throws IOException
+	 *             if the file cannot be read or is not a columnar file
+	 */
+	public FiscalCodeColumnarReader(final Path path) throws IOException {
+		this.path = path;
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			final long fileSize = channel.size();
+			final ByteBuffer header = read(0, ColumnarFormat.headerSize);
+			final ByteBuffer trailer = read(fileSize - ColumnarFormat.trailerSize, ColumnarFormat.trailerSize);
+			final long footerPosition = trailer.getLong(0);
+			if ((header.getLong(0) != ColumnarFormat.magic) || (header.getInt(8) != ColumnarFormat.formatVersion) || (trailer.getLong(8) != ColumnarFormat.magic)
+					|| (footerPosition < ColumnarFormat.headerSize) || (footerPosition > (fileSize - ColumnarFormat.trailerSize))) {
+				throw new IOException("Not a columnar fiscal code file: " + path); //$NON-NLS-1$
+			}
+			blockSize = header.getInt(12);
+			final ByteBuffer footer = read(footerPosition, (int) (fileSize - ColumnarFormat.trailerSize - footerPosition));
+			final int blocksCount = footer.getInt();
+			final ImmutableList.Builder<ColumnarBlock> blocksBuilder = ImmutableList.builder();
+			long rows = 0;
+			final long[] chunkPositions = new long[ColumnarFormat.columnsCount];
+			final int[] chunkLengths = new int[ColumnarFormat.columnsCount];
+			final int[] rawChunkLengths = new int[ColumnarFormat.columnsCount];
+			for (int i = 0; i < blocksCount; i++) {
+				final int blockRows = footer.getInt();
+				for (int column = 0; column < ColumnarFormat.columnsCount; column++) {
+					chunkPositions[column] = footer.getLong();
+					chunkLengths[column] = footer.getInt();
+					rawChunkLengths[column] = footer.getInt();
+				}
+				blocksBuilder.add(new ColumnarBlock(blockRows, chunkPositions, chunkLengths, rawChunkLengths, footer.getLong(), footer.getLong(), footer.getLong(), footer.getLong(), footer.getInt(), footer.getInt(), footer.getInt(), footer.getInt()));
+				rows += blockRows;
+			}
+			blocks = blocksBuilder.build();
+			rowCount = rows;
+			placeCodeKeys = readDictionary(footer);
+			surnameKeys = readDictionary(footer);
+			nameKeys = readDictionary(footer);
+			raw = ByteBuffer.allocate(16 * blockSize);
+		} catch (final IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Releases the decompressor and closes the file.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		channel.close();
+	}
+	
+	/**
+	 * @return blocks, with their statistics
+	 */
+	public ImmutableList<ColumnarBlock> getBlocks() {
+		return blocks;
+	}
+	
+	/**
+	 * @return rows per block, the capacity of the batches to read into
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+	
+	/**
+	 * @return bytes of column chunks read so far, compressed
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+	
+	/**
+	 * @return path of the file
+	 */
+	public Path getPath() {
+		return path;
+	}
+	
+	/**
+	 * @return number of rows
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+	
+	/**
+	 * Creates a batch large enough for the blocks of this file.
+	 * 
+	 * @return new batch
+	 */
+	public FiscalCodeBatch newBatch() {
+		return new FiscalCodeBatch(blockSize);
+	}
+	
+	/**
+	 * Reads some columns of a block, leaving the other chunks unread.
+	 * 
+	 * @param block
+	 *            block index
+	 * @param columns
+	 *            projected columns, see {@link ColumnarFormat}
+	 * @param batch
+	 *            to decode the rows into, at least {@link #getBlockSize()}
+	 *            rows large
+	 * @return {@code batch}
+	 * @throws IOException
+	 *             if the file cannot be read or is corrupted
+	 */
+	public FiscalCodeBatch read(final int block, final int columns, final FiscalCodeBatch batch) throws IOException {
+		final ColumnarBlock columnarBlock = blocks.get(block);
+		final int rows = columnarBlock.getRows();
+		batch.columns = 0;
+		batch.size = rows;
+		if ((columns & ColumnarFormat.code) != 0) {
+			final ByteBuffer chunk = readChunk(columnarBlock, ColumnarFormat.code);
+			for (int i = 0; i < rows; i++) {
+				batch.highs[i] = chunk.getLong();
+				batch.lows[i] = chunk.getLong();
+			}
+		}
+		if ((columns & ColumnarFormat.birthDate) != 0) {
+			final ByteBuffer chunk = readChunk(columnarBlock, ColumnarFormat.birthDate);
+			final int minBirthEpochDay = columnarBlock.getMinBirthEpochDay();
+			for (int i = 0; i < rows; i++) {
+				batch.birthEpochDays[i] = minBirthEpochDay + ColumnarFormat.getVarint(chunk);
+			}
+		}
+		if ((columns & ColumnarFormat.sex) != 0) {
+			final ByteBuffer chunk = readChunk(columnarBlock, ColumnarFormat.sex);
+			for (int i = 0; i < rows; i++) {
+				batch.females[i] = ((chunk.get(i >>> 3) >>> (i & 7)) & 1) != 0;
+			}
+		}
+		if ((columns & ColumnarFormat.placeCode) != 0) {
+			readIds(readChunk(columnarBlock, ColumnarFormat.placeCode), rows, placeCodeKeys, batch.placeCodeKeys);
+		}
+		if ((columns & ColumnarFormat.surname) != 0) {
+			readIds(readChunk(columnarBlock, ColumnarFormat.surname), rows, surnameKeys, batch.surnameKeys);
+		}
+		if ((columns & ColumnarFormat.name) != 0) {
+			readIds(readChunk(columnarBlock, ColumnarFormat.name), rows, nameKeys, batch.nameKeys);
+		}
+		batch.columns = columns & ColumnarFormat.allColumns;
+		return batch;
+	}
+	
+	/**
+	 * Reads bytes of the file.
+	 * 
+	 * @param position
+	 *            file position
+	 * @param length
+	 *            number of bytes
+	 * @return read bytes
+	 * @throws IOException
+	 *             if the file cannot be read or is too short
+	 */
+	private ByteBuffer read(final long position, final int length) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		readFully(buffer, position);
+		buffer.flip();
+		return buffer;
+	}
+	
+	/**
+	 * Reads and decompresses a column chunk.
+	 * 
+	 * @param block
+	 *            block
+	 * @param column
+	 *            column bit
+	 * @return uncompressed chunk
+	 * @throws IOException
+	 *             if the file cannot be read or is corrupted
+	 */
+	private ByteBuffer readChunk(final ColumnarBlock block, final int column) throws IOException {
+		final int index = FiscalCodeColumnarWriter.index(column);
+		final int length = block.getChunkLength(index);
+		final int rawLength = block.getRawChunkLength(index);
+		if ((length < 0) || (rawLength < 0) || (rawLength > raw.capacity())) {
+			throw new IOException("Corrupted block: " + path); //$NON-NLS-1$
+		}
+		if (compressed.capacity() < length) {
+			compressed = ByteBuffer.allocate(Math.max(length, 2 * compressed.capacity()));
+		}
+		compressed.clear().limit(length);
+		readFully(compressed, block.getChunkPosition(index));
+		bytesRead += length;
+		inflater.reset();
+		inflater.setInput(compressed.array(), 0, length);
+		raw.clear();
+		try {
+			if ((inflater.inflate(raw.array(), 0, rawLength) != rawLength) || !inflater.finished()) {
+				throw new IOException("Corrupted block: " + path); //$NON-NLS-1$
+			}
+		} catch (final DataFormatException e) {
+			throw new IOException("Corrupted block: " + path, e); //$NON-NLS-1$
+		}
+		raw.limit(rawLength);
+		return raw;
+	}
+	
+	/**
+	 * Reads a dictionary from the footer.
+	 * 
+	 * @param footer
+	 *            positioned at the dictionary
+	 * @return keys by id
+	 */
+	private static int[] readDictionary(final ByteBuffer footer) {
+		final int[] keys = new int[footer.getInt()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = footer.getInt();
+		}
+		return keys;
+	}
+	
+	/**
+	 * Fills a buffer from the file.
+	 * 
+	 * @param buffer
+	 *            to fill up to its limit
+	 * @param position
+	 *            file position
+	 * @throws IOException
+	 *             if the file cannot be read or is too short
+	 */
+	private void readFully(final ByteBuffer buffer, final long position) throws IOException {
+		long readPosition = position;
+		while (buffer.hasRemaining()) {
+			final int read = channel.read(buffer, readPosition);
+			if (read < 0) {
+				throw new IOException("Truncated columnar file: " + path); //$NON-NLS-1$
+			}
+			readPosition += read;
+		}
+	}
+	
+	/**
+	 * Decodes a dictionary ids chunk.
+	 * 
+	 * @param chunk
+	 *            uncompressed chunk
+	 * @param rows
+	 *            number of rows
+	 * @param dictionary
+	 *            keys by id
+	 * @param keys
+	 *            to decode the keys into
+	 */
+	private static void readIds(final ByteBuffer chunk, final int rows, final int[] dictionary, final int[] keys) {
+		for (int i = 0; i < rows; i++) {
+			keys[i] = dictionary[ColumnarFormat.getVarint(chunk)];
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.columnar;
+
+import it.assetdata.lole.it.SexIt;
+import it.assetdata.lole.it.fiscalCode.FiscalCode;
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+import it.assetdata.lole.it.fiscalCode.store.FileReplacement;
+import it.assetdata.lole.it.place.PlaceCodes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.joda.time.LocalDate;
+
+/**
+ * Writes fiscal codes into a columnar file, see {@link ColumnarFormat}, to be
+ * read by {@link FiscalCodeColumnarReader}.<br/>
+ * Rows are buffered until a block is full, then every column is encoded and
+ * compressed on its own; dictionaries are kept for the whole file, so a
+ * place, surname or name segment shared by millions of rows takes a one or
+ * two bytes id in each of them before compression. The file is written
+ * next to its path and replaces it atomically on {@link #close()}, so a
+ * failed export leaves the previous file untouched.
+ */
+@NotThreadSafe
+public class FiscalCodeColumnarWriter implements Closeable {
+	
+	/**
+	 * Compression output buffer size, in bytes.
+	 */
+	private static final int compressedBufferSize = 1 << 16;
+	
+	/**
+	 * Birth dates of the buffered rows.
+	 */
+	private final int[] birthEpochDays;
+	
+	/**
+	 * Written blocks.
+	 */
+	private final List<ColumnarBlock> blocks = new ArrayList<>();
+	
+	/**
+	 * Rows per block.
+	 */
+	private final int blockSize;
+	
+	/**
+	 * File.
+	 */
+	private final FileChannel channel;
+	
+	/**
+	 * {@code true} once closed.
+	 */
+	private boolean closed;
+	
+	/**
+	 * Compression output buffer.
+	 */
+	private final byte[] compressed = new byte[compressedBufferSize];
+	
+	/**
+	 * Compressor, reused by all the chunks.
+	 */
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	
+	/**
+	 * {@code true} if writing a block failed, so the file must not replace
+	 * the previous one.
+	 */
+	private boolean failed;
+	
+	/**
+	 * Sexes of the buffered rows, {@code true} for females.
+	 */
+	private final boolean[] females;
+	
+	/**
+	 * Packed codes high halves of the buffered rows.
+	 */
+	private final long[] highs;
+	
+	/**
+	 * Packed codes low halves of the buffered rows.
+	 */
+	private final long[] lows;
+	
+	/**
+	 * Name segments dictionary.
+	 */
+	private final IntDictionary nameDictionary = new IntDictionary(ColumnarFormat.segmentKeysCount);
+	
+	/**
+	 * Name segment ids of the buffered rows.
+	 */
+	private final int[] nameIds;
+	
+	/**
+	 * File path, replaced on {@link #close()}.
+	 */
+	private final Path path;
+	
+	/**
+	 * Place codes dictionary.
+	 */
+	private final IntDictionary placeCodeDictionary = new IntDictionary(PlaceCodes.keysCount);
+	
+	/**
+	 * Place code ids of the buffered rows.
+	 */
+	private final int[] placeCodeIds;
+	
+	/**
+	 * Place code keys of the buffered rows, for the block statistics.
+	 */
+	private final int[] placeCodeKeys;
+	
+	/**
+	 * Write position.
+	 */
+	private long position = ColumnarFormat.headerSize;
+	
+	/**
+	 * Uncompressed chunk buffer.
+	 */
+	private final ByteBuffer raw;
+	
+	/**
+	 * Number of buffered rows.
+	 */
+	private int rows;
+	
+	/**
+	 * Surname segments dictionary.
+	 */
+	private final IntDictionary surnameDictionary = new IntDictionary(ColumnarFormat.segmentKeysCount);
+	
+	/**
+	 * Surname segment ids of the buffered rows.
+	 */
+	private final int[] surnameIds;
+	
+	/**
+	 * Temporary file written until {@link #close()}.
+	 */
+	private final Path temporary;
+	
+	/**
+	 * Constructor, creates the temporary file.
+	 * 
+	 * @param path
+	 *            of the file, replaced if it exists on {@link #close()}
+	 * @param blockSize
+	 *            rows per block, from {@code 1} to {@code 2^20}: larger blocks
+	 *            compress better, smaller ones are skipped more precisely
+	 * @throws IOException
+	 *             if the file cannot be created
+	 */
+	public FiscalCodeColumnarWriter(final Path path, final int blockSize) throws IOException {
+		if ((blockSize < 1) || ((1 << 20) < blockSize)) {
+			throw new IllegalArgumentException(String.valueOf(blockSize));
+		}
+		this.blockSize = blockSize;
+		birthEpochDays = new int[blockSize];
+		females = new boolean[blockSize];
+		highs = new long[blockSize];
+		lows = new long[blockSize];
+		nameIds = new int[blockSize];
+		placeCodeIds = new int[blockSize];
+		placeCodeKeys = new int[blockSize];
+		surnameIds = new int[blockSize];
+		raw = ByteBuffer.allocate(16 * blockSize); // The widest column.
+		this.path = path;
+		temporary = FileReplacement.temporaryPath(path); // The previous file is kept until close().
+		channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			final ByteBuffer header = ByteBuffer.allocate(ColumnarFormat.headerSize);
+			header.putLong(ColumnarFormat.magic).putInt(ColumnarFormat.formatVersion).putInt(blockSize);
+			header.clear();
+			write(header, 0);
+		} catch (final IOException | RuntimeException e) {
+			deflater.end();
+			channel.close();
+			Files.deleteIfExists(temporary);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Writes the buffered rows and the footer, forces and closes the file,
+	 * then replaces the previous one; if writing a block failed, deletes it
+	 * instead. Further calls do nothing.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		boolean written = false;
+		try {
+			if (failed) {
+				return;
+			}
+			if (rows > 0) {
+				flushBlock();
+			}
+			final int[] placeCodes = placeCodeDictionary.keys();
+			final int[] surnames = surnameDictionary.keys();
+			final int[] names = nameDictionary.keys();
+			final ByteBuffer footer = ByteBuffer.allocate(4 + (blocks.size() * (4 + (ColumnarFormat.columnsCount * 16) + 48)) + (4 * (3 + placeCodes.length + surnames.length + names.length)) + ColumnarFormat.trailerSize);
+			footer.putInt(blocks.size());
+			for (final ColumnarBlock block : blocks) {
+				footer.putInt(block.getRows());
+				for (int column = 0; column < ColumnarFormat.columnsCount; column++) {
+					footer.putLong(block.getChunkPosition(column)).putInt(block.getChunkLength(column)).putInt(block.getRawChunkLength(column));
+				}
+				footer.putLong(block.getMinHigh()).putLong(block.getMinLow()).putLong(block.getMaxHigh()).putLong(block.getMaxLow());
+				footer.putInt(block.getMinBirthEpochDay()).putInt(block.getMaxBirthEpochDay()).putInt(block.getMinPlaceCodeKey()).putInt(block.getMaxPlaceCodeKey());
+			}
+			for (final int[] dictionary : new int[][] { placeCodes, surnames, names }) {
+				footer.putInt(dictionary.length);
+				for (final int key : dictionary) {
+					footer.putInt(key);
+				}
+			}
+			footer.putLong(position).putLong(ColumnarFormat.magic);
+			footer.flip();
+			write(footer, position);
+			channel.force(true);
+			written = true;
+		} finally {
+			deflater.end();
+			channel.close();
+			if (!written) {
+				Files.deleteIfExists(temporary);
+			}
+		}
+		FileReplacement.replace(temporary, path);
+	}
+	
+	/**
+	 * Encodes, compresses and writes the buffered rows as a block.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	private void flushBlock() throws IOException {
+		final long[] chunkPositions = new long[ColumnarFormat.columnsCount];
+		final int[] chunkLengths = new int[ColumnarFormat.columnsCount];
+		final int[] rawChunkLengths = new int[ColumnarFormat.columnsCount];
+		long minHigh = highs[0];
+		long minLow = lows[0];
+		long maxHigh = highs[0];
+		long maxLow = lows[0];
+		int minBirthEpochDay = birthEpochDays[0];
+		int maxBirthEpochDay = birthEpochDays[0];
+		int minPlaceCodeKey = placeCodeKeys[0];
+		int maxPlaceCodeKey = placeCodeKeys[0];
+		for (int i = 1; i < rows; i++) {
+			if (PackedFiscalCode.compare(highs[i], lows[i], minHigh, minLow) < 0) {
+				minHigh = highs[i];
+				minLow = lows[i];
+			}
+			if (PackedFiscalCode.compare(highs[i], lows[i], maxHigh, maxLow) > 0) {
+				maxHigh = highs[i];
+				maxLow = lows[i];
+			}
+			minBirthEpochDay = Math.min(minBirthEpochDay, birthEpochDays[i]);
+			maxBirthEpochDay = Math.max(maxBirthEpochDay, birthEpochDays[i]);
+			minPlaceCodeKey = Math.min(minPlaceCodeKey, placeCodeKeys[i]);
+			maxPlaceCodeKey = Math.max(maxPlaceCodeKey, placeCodeKeys[i]);
+		}
+		for (int i = 0; i < rows; i++) {
+			raw.putLong(highs[i]).putLong(lows[i]);
+		}
+		flushChunk(index(ColumnarFormat.code), chunkPositions, chunkLengths, rawChunkLengths);
+		for (int i = 0; i < rows; i++) {
+			ColumnarFormat.putVarint(raw, birthEpochDays[i] - minBirthEpochDay);
+		}
+		flushChunk(index(ColumnarFormat.birthDate), chunkPositions, chunkLengths, rawChunkLengths);
+		for (int i = 0; i < rows; i += 8) {
+			int bits = 0;
+			for (int j = i; j < Math.min(i + 8, rows); j++) {
+				bits |= (females[j] ? 1 : 0) << (j - i);
+			}
+			raw.put((byte) bits);
+		}
+		flushChunk(index(ColumnarFormat.sex), chunkPositions, chunkLengths, rawChunkLengths);
+		flushIds(placeCodeIds, index(ColumnarFormat.placeCode), chunkPositions, chunkLengths, rawChunkLengths);
+		flushIds(surnameIds, index(ColumnarFormat.surname), chunkPositions, chunkLengths, rawChunkLengths);
+		flushIds(nameIds, index(ColumnarFormat.name), chunkPositions, chunkLengths, rawChunkLengths);
+		blocks.add(new ColumnarBlock(rows, chunkPositions, chunkLengths, rawChunkLengths, minHigh, minLow, maxHigh, maxLow, minBirthEpochDay, maxBirthEpochDay, minPlaceCodeKey, maxPlaceCodeKey));
+		rows = 0;
+	}
+	
+	/**
+	 * Compresses and writes the raw chunk buffer.
+	 * 
+	 * @param column
+	 *            column index
+	 * @param chunkPositions
+	 *            chunk positions, set at {@code column}
+	 * @param chunkLengths
+	 *            compressed chunk lengths, set at {@code column}
+	 * @param rawChunkLengths
+	 *            uncompressed chunk lengths, set at {@code column}
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	private void flushChunk(final int column, final long[] chunkPositions, final int[] chunkLengths, final int[] rawChunkLengths) throws IOException {
+		chunkPositions[column] = position;
+		rawChunkLengths[column] = raw.position();
+		deflater.reset();
+		deflater.setInput(raw.array(), 0, raw.position());
+		deflater.finish();
+		while (!deflater.finished()) {
+			final int length = deflater.deflate(compressed);
+			write(ByteBuffer.wrap(compressed, 0, length), position);
+		}
+		chunkLengths[column] = (int) (position - chunkPositions[column]);
+		raw.clear();
+	}
+	
+	/**
+	 * Encodes, compresses and writes a dictionary ids column.
+	 * 
+	 * @param ids
+	 *            ids of the buffered rows
+	 * @param column
+	 *            column index
+	 * @param chunkPositions
+	 *            chunk positions, set at {@code column}
+	 * @param chunkLengths
+	 *            compressed chunk lengths, set at {@code column}
+	 * @param rawChunkLengths
+	 *            uncompressed chunk lengths, set at {@code column}
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	private void flushIds(final int[] ids, final int column, final long[] chunkPositions, final int[] chunkLengths, final int[] rawChunkLengths) throws IOException {
+		for (int i = 0; i < rows; i++) {
+			ColumnarFormat.putVarint(raw, ids[i]);
+		}
+		flushChunk(column, chunkPositions, chunkLengths, rawChunkLengths);
+	}
+	
+	/**
+	 * @return rows per block
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+	
+	/**
+	 * @param column
+	 *            column bit, see {@link ColumnarFormat}
+	 * @return column index
+	 */
+	static int index(final int column) {
+		return Integer.numberOfTrailingZeros(column);
+	}
+	
+	/**
+	 * Writes a fiscal code.
+	 * 
+	 * @param fiscalCode
+	 *            to write
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void write(final FiscalCode fiscalCode) throws IOException {
+		final LocalDate birthDate = fiscalCode.getBirthDate();
+		write(fiscalCode.getValue(), PlaceCodes.epochDay(birthDate.getYear(), birthDate.getMonthOfYear(), birthDate.getDayOfMonth()), fiscalCode.getSex(), PlaceCodes.pack(fiscalCode.getPlaceCode()));
+	}
+	
+	/**
+	 * Writes a fiscal code from its fields, without allocating; surname and
+	 * name segments are taken from {@code value}.
+	 * 
+	 * @param value
+	 *            fiscal code value, sixteen digits or upper case letters
+	 * @param birthEpochDay
+	 *            birth date, as days since 1970-01-01, see
+	 *            {@link PlaceCodes#epochDay(int, int, int)}
+	 * @param sex
+	 *            of the referred person
+	 * @param placeCodeKey
+	 *            canonical place code key, see
+	 *            {@link PlaceCodes#pack(CharSequence)}
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void write(final CharSequence value, final int birthEpochDay, final SexIt sex, final int placeCodeKey) throws IOException {
+		if ((value.length() != (2 * PackedFiscalCode.charactersPerLong)) || (placeCodeKey < 0) || (PlaceCodes.keysCount <= placeCodeKey)) {
+			throw new IllegalArgumentException(value.toString());
+		}
+		final long high = PackedFiscalCode.pack(value, 0);
+		final long low = PackedFiscalCode.pack(value, PackedFiscalCode.charactersPerLong);
+		if ((high == PackedFiscalCode.invalid) || (low == PackedFiscalCode.invalid)) {
+			throw new IllegalArgumentException(value.toString());
+		}
+		final int surnameKey = ColumnarFormat.segmentKey(value, 0);
+		final int nameKey = ColumnarFormat.segmentKey(value, 3);
+		highs[rows] = high;
+		lows[rows] = low;
+		birthEpochDays[rows] = birthEpochDay;
+		females[rows] = sex.getFiscalCodeDayAddend() != 0;
+		placeCodeKeys[rows] = placeCodeKey;
+		placeCodeIds[rows] = placeCodeDictionary.id(placeCodeKey);
+		surnameIds[rows] = surnameDictionary.id(surnameKey);
+		nameIds[rows] = nameDictionary.id(nameKey);
+		if (++rows == blockSize) {
+			failed = true; // Until the block is written.
+			flushBlock();
+			failed = false;
+		}
+	}
+	
+	/**
+	 * Writes a whole buffer.
+	 * 
+	 * @param buffer
+	 *            to write
+	 * @param at
+	 *            file position
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	private void write(final ByteBuffer buffer, final long at) throws IOException {
+		long writePosition = at;
+		while (buffer.hasRemaining()) {
+			writePosition += channel.write(buffer, writePosition);
+		}
+		position = Math.max(position, writePosition);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
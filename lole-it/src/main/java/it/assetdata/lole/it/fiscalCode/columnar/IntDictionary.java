@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.columnar;
+
+import java.util.Arrays;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Dictionary of small non negative {@code int} keys, assigning ids in order
+ * of first appearance; lookups are direct, through an array as large as the
+ * key space.
+ */
+@NotThreadSafe
+final class IntDictionary {
+	
+	/**
+	 * Ids by key, {@code -1} for keys not in the dictionary.
+	 */
+	private final int[] ids;
+	
+	/**
+	 * Keys by id.
+	 */
+	private int[] keys = new int[64];
+	
+	/**
+	 * Number of keys.
+	 */
+	private int size;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param keysCount
+	 *            keys limit, excluded
+	 */
+	IntDictionary(final int keysCount) {
+		ids = new int[keysCount];
+		Arrays.fill(ids, -1);
+	}
+	
+	/**
+	 * Returns the id of a key, adding it if needed.
+	 * 
+	 * @param key
+	 *            from {@code 0} to the keys limit excluded
+	 * @return id
+	 */
+	int id(final int key) {
+		final int id = ids[key];
+		if (id >= 0) {
+			return id;
+		}
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, 2 * size);
+		}
+		keys[size] = key;
+		ids[key] = size;
+		return size++;
+	}
+	
+	/**
+	 * @return keys by id
+	 */
+	int[] keys() {
+		return Arrays.copyOf(keys, size);
+	}
+	
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.store;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replacement of files other processes may keep open or memory-mapped: the
+ * new content is written to a temporary file next to the replaced one,
+ * forced, then atomically renamed over it, so existing mappings keep the old
+ * file and never see it truncated, and a failed write leaves it untouched.
+ */
+public final class FileReplacement {
+	
+	/**
+	 * Suffix of temporary files.
+	 */
+	public static final String temporarySuffix = ".tmp"; //$NON-NLS-1$
+	
+	/**
+	 * Not instantiable.
+	 */
+	private FileReplacement() {
+		// Utility class.
+	}
+	
+	/**
+	 * @param path
+	 *            of the replaced file
+	 * @return temporary file next to it
+	 */
+	public static Path temporaryPath(final Path path) {
+		return path.resolveSibling(path.getFileName() + temporarySuffix);
+	}
+	
+	/**
+	 * Atomically renames a written and forced temporary file over the
+	 * replaced one, then forces the directory so the rename survives a crash,
+	 * where the platform supports it.
+	 * 
+	 * @param temporary
+	 *            written file
+	 * @param path
+	 *            of the replaced file
+	 * @throws IOException
+	 *             if the file cannot be renamed
+	 */
+	public static void replace(final Path temporary, final Path path) throws IOException {
+		Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		final Path directory = path.toAbsolutePath().getParent();
+		if (directory != null) {
+			try (final FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+				channel.force(true);
+			} catch (final IOException e) {
+				// Directories cannot be opened or forced on some platforms, like Windows.
+			}
+		}
+	}
+	
+}
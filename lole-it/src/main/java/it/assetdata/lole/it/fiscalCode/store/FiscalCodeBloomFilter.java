@@ -0,0 +1,460 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.store;
+
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Immutable on-disk blocked Bloom filter of fiscal codes, memory-mapped, to
+ * reject most lookups of codes not in a set before looking them up in the
+ * authoritative store: {@link #mightContain(long, long)} never answers
+ * {@code false} for a code in the set, and answers {@code true} for a code
+ * not in the set with a probability of about 1% at
+ * {@link #defaultBitsPerCode} bits per code.<br/>
+ * Every code sets {@link #probesCount(int)} bits of a single
+ * {@link #blockSize} bytes block, a cache line, so a lookup touches one
+ * cache line and one page of the mapped file, and most lookups of codes not
+ * in the set stop at the first bit not set.<br/>
+ * The file, big endian, is made of:
+ * <ol>
+ * <li>a {@link #headerSize} bytes header: {@link #magic}, format version,
+ * number of probes, number of blocks, number of codes, then zeros;</li>
+ * <li>the blocks, eight {@code long}s each.</li>
+ * </ol>
+ * Written by {@link #write(Path, long[], long[], int, int)} or
+ * {@link #write(Path, MappedFiscalCodeIndex, int)}.
+ */
+@ThreadSafe
+public class FiscalCodeBloomFilter implements Closeable {
+	
+	/**
+	 * Block size, in bits, as a power of two.
+	 */
+	private static final int blockBitsLog2 = 9;
+	
+	/**
+	 * Block size, in bytes.
+	 */
+	static final int blockSize = (1 << blockBitsLog2) / Byte.SIZE;
+	
+	/**
+	 * Bits per code giving a false positive probability of about 1%.
+	 */
+	public static final int defaultBitsPerCode = 10;
+	
+	/**
+	 * Format version.
+	 */
+	static final int formatVersion = 1;
+	
+	/**
+	 * Header size, in bytes.
+	 */
+	static final int headerSize = 64;
+	
+	/**
+	 * File type marker, {@code "LOLEBLM1"} in ASCII.
+	 */
+	static final long magic = 0x4C4F4C45424C4D31L;
+	
+	/**
+	 * Maximum number of blocks, so that the blocks being written fit a
+	 * {@code long[]}.
+	 */
+	private static final int maxBlocksCount = 1 << 27;
+	
+	/**
+	 * Blocks write buffer size, in bytes.
+	 */
+	private static final int writeBufferSize = 1 << 16;
+	
+	/**
+	 * Mapped blocks.
+	 */
+	private final MappedRegion blocks;
+	
+	/**
+	 * Number of blocks.
+	 */
+	private final long blocksCount;
+	
+	/**
+	 * Mapped file.
+	 */
+	private final FileChannel channel;
+	
+	/**
+	 * Number of codes added.
+	 */
+	private final long codesCount;
+	
+	/**
+	 * Path of the file.
+	 */
+	private final Path path;
+	
+	/**
+	 * Bits set per code.
+	 */
+	private final int probesCount;
+	
+	/**
+	 * Constructor, opens and maps the filter.
+	 * 
+	 * @param path
+	 *            of the file written by
+	 *            {@link #write(Path, long[], long[], int, int)}
+	 * @throws IOException
+	 *             if the file cannot be read or is not a filter
+	 */
+	public FiscalCodeBloomFilter(final Path path) throws IOException {
+		this.path = path;
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			final ByteBuffer header = ByteBuffer.allocate(headerSize);
+			while (header.hasRemaining() && (channel.read(header) >= 0)) {
+				// Read the whole header.
+			}
+			header.flip();
+			if ((header.remaining() < headerSize) || (header.getLong(0) != magic) || (header.getInt(8) != formatVersion)) {
+				throw new IOException("Not a fiscal code Bloom filter: " + path); //$NON-NLS-1$
+			}
+			probesCount = header.getInt(12);
+			blocksCount = header.getLong(16);
+			codesCount = header.getLong(24);
+			if ((probesCount < 1) || (blocksCount < 1) || (blocksCount > maxBlocksCount) || (codesCount < 0) || (channel.size() != (headerSize + (blocksCount * blockSize)))) {
+				throw new IOException("Corrupted fiscal code Bloom filter: " + path); //$NON-NLS-1$
+			}
+			blocks = new MappedRegion(channel, FileChannel.MapMode.READ_ONLY, headerSize, blocksCount * blockSize);
+		} catch (final IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Sets the bits of a code.
+	 * 
+	 * @param words
+	 *            blocks
+	 * @param probesCount
+	 *            bits set per code
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 */
+	private static void add(final long[] words, final int probesCount, final long high, final long low) {
+		final long hash = hash(high, low);
+		final int firstWord = (int) (block(hash, words.length / (blockSize / 8)) * (blockSize / 8));
+		int probe = (int) hash;
+		for (int i = 0; i < probesCount; i++) {
+			final int bit = probe >>> (Integer.SIZE - blockBitsLog2);
+			words[firstWord + (bit >>> 6)] |= 1L << bit; // Shifts use the low 6 bits of bit.
+			probe = nextProbe(probe);
+		}
+	}
+	
+	/**
+	 * Returns the block of a code.
+	 * 
+	 * @param hash
+	 *            code hash, see {@link #hash(long, long)}
+	 * @param blocksCount
+	 *            number of blocks
+	 * @return block index, from {@code 0} to {@code blocksCount} excluded
+	 */
+	private static long block(final long hash, final long blocksCount) {
+		return ((hash >>> 32) * blocksCount) >>> 32; // Multiply and shift instead of the remainder, blocksCount is less than 2^32.
+	}
+	
+	/**
+	 * Returns the number of blocks for a set of codes.
+	 * 
+	 * @param codesCount
+	 *            number of codes
+	 * @param bitsPerCode
+	 *            bits per code
+	 * @return number of blocks
+	 */
+	static long blocksCount(final long codesCount, final int bitsPerCode) {
+		final long bits = Math.max(codesCount, 1) * bitsPerCode;
+		return (bits + (1 << blockBitsLog2) - 1) >>> blockBitsLog2;
+	}
+	
+	/**
+	 * Hashes a packed code to 64 bits: the high 32 select the block, the low
+	 * 32 the bits in the block.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @return hash
+	 */
+	private static long hash(final long high, final long low) {
+		long hash = (high * 0x9E3779B97F4A7C15L) ^ low;
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		return hash ^ (hash >>> 33);
+	}
+	
+	/**
+	 * Allocates the blocks of a filter.
+	 * 
+	 * @param codesCount
+	 *            number of codes
+	 * @param bitsPerCode
+	 *            bits per code
+	 * @return blocks, all bits cleared
+	 */
+	private static long[] newWords(final long codesCount, final int bitsPerCode) {
+		if ((bitsPerCode < 1) || (bitsPerCode > 64)) {
+			throw new IllegalArgumentException("Bits per code out of range: " + bitsPerCode); //$NON-NLS-1$
+		}
+		final long blocksCount = blocksCount(codesCount, bitsPerCode);
+		if (blocksCount > maxBlocksCount) {
+			throw new IllegalArgumentException("Too many codes: " + codesCount); //$NON-NLS-1$
+		}
+		return new long[(int) blocksCount * (blockSize / 8)];
+	}
+	
+	/**
+	 * Returns the next bit probe of a code: the top {@link #blockBitsLog2}
+	 * bits of the probe seed are the bit index in the block.
+	 * 
+	 * @param probe
+	 *            current probe seed, the low 32 bits of the code hash at first
+	 * @return next probe seed
+	 */
+	private static int nextProbe(final int probe) {
+		return probe * 0x9E3779B9;
+	}
+	
+	/**
+	 * Returns the number of bits set per code that minimizes false positives.
+	 * 
+	 * @param bitsPerCode
+	 *            bits per code
+	 * @return number of probes, from {@code 1} to {@code 16}
+	 */
+	static int probesCount(final int bitsPerCode) {
+		return Math.max(1, Math.min(16, (int) Math.round(bitsPerCode * Math.log(2))));
+	}
+	
+	/**
+	 * Writes a filter file of an index, streaming its codes.
+	 * 
+	 * @param path
+	 *            of the file, replaced if it exists
+	 * @param index
+	 *            codes to add
+	 * @param bitsPerCode
+	 *            bits per code, from {@code 1} to {@code 64}, see
+	 *            {@link #defaultBitsPerCode}
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void write(final Path path, final MappedFiscalCodeIndex index, final int bitsPerCode) throws IOException {
+		final long[] words = newWords(index.size(), bitsPerCode);
+		final int probesCount = probesCount(bitsPerCode);
+		for (long i = 0; i < index.size(); i++) {
+			add(words, probesCount, index.getHigh(i), index.getLow(i));
+		}
+		write(path, words, probesCount, index.size());
+	}
+	
+	/**
+	 * Writes a filter file.
+	 * 
+	 * @param path
+	 *            of the file, replaced if it exists
+	 * @param highs
+	 *            packed codes high halves
+	 * @param lows
+	 *            packed codes low halves
+	 * @param length
+	 *            number of codes in {@code highs} and {@code lows}, from index
+	 *            {@code 0}
+	 * @param bitsPerCode
+	 *            bits per code, from {@code 1} to {@code 64}, see
+	 *            {@link #defaultBitsPerCode}
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void write(final Path path, final long[] highs, final long[] lows, final int length, final int bitsPerCode) throws IOException {
+		final long[] words = newWords(length, bitsPerCode);
+		final int probesCount = probesCount(bitsPerCode);
+		for (int i = 0; i < length; i++) {
+			add(words, probesCount, highs[i], lows[i]);
+		}
+		write(path, words, probesCount, length);
+	}
+	
+	/**
+	 * Writes the header and the blocks into a temporary file, forces it and
+	 * renames it over {@code path}, so the processes having the old filter
+	 * mapped keep reading it.
+	 * 
+	 * @param path
+	 *            of the file, replaced if it exists
+	 * @param words
+	 *            blocks
+	 * @param probesCount
+	 *            bits set per code
+	 * @param codesCount
+	 *            number of codes added
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	private static void write(final Path path, final long[] words, final int probesCount, final long codesCount) throws IOException {
+		final Path temporary = FileReplacement.temporaryPath(path);
+		boolean written = false;
+		try (final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			final ByteBuffer buffer = ByteBuffer.allocate(writeBufferSize);
+			buffer.putLong(magic).putInt(formatVersion).putInt(probesCount).putLong(words.length / (blockSize / 8)).putLong(codesCount);
+			buffer.position(headerSize);
+			for (final long word : words) {
+				if (!buffer.hasRemaining()) {
+					buffer.flip();
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+					buffer.clear();
+				}
+				buffer.putLong(word);
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+			written = true;
+		} finally {
+			if (!written) {
+				Files.deleteIfExists(temporary);
+			}
+		}
+		FileReplacement.replace(temporary, path);
+	}
+	
+	/**
+	 * Closes the file; the mapping is released when this filter is garbage
+	 * collected, so it must not be used afterwards.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	/**
+	 * @return number of blocks
+	 */
+	public long getBlocksCount() {
+		return blocksCount;
+	}
+	
+	/**
+	 * @return number of codes added
+	 */
+	public long getCodesCount() {
+		return codesCount;
+	}
+	
+	/**
+	 * @return path of the file
+	 */
+	public Path getPath() {
+		return path;
+	}
+	
+	/**
+	 * @return bits set per code
+	 */
+	public int getProbesCount() {
+		return probesCount;
+	}
+	
+	/**
+	 * Checks if a code might have been added.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @return {@code false} if it has not been added, {@code true} if it
+	 *         might have been
+	 */
+	public boolean mightContain(final long high, final long low) {
+		final long hash = hash(high, low);
+		final long blockPosition = block(hash, blocksCount) * blockSize;
+		int probe = (int) hash;
+		for (int i = 0; i < probesCount; i++) {
+			final int bit = probe >>> (Integer.SIZE - blockBitsLog2);
+			if ((blocks.getLong(blockPosition + ((bit >>> 6) * 8)) & (1L << bit)) == 0) {
+				return false;
+			}
+			probe = nextProbe(probe);
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks if a fiscal code might have been added.
+	 * 
+	 * @param fiscalCode
+	 *            value
+	 * @return {@code false} if it has not been added or it is not a fiscal
+	 *         code, {@code true} if it might have been
+	 */
+	public boolean mightContain(final @Nullable CharSequence fiscalCode) {
+		if ((fiscalCode == null) || (fiscalCode.length() != (2 * PackedFiscalCode.charactersPerLong))) {
+			return false;
+		}
+		final long high = PackedFiscalCode.pack(fiscalCode, 0);
+		final long low = PackedFiscalCode.pack(fiscalCode, PackedFiscalCode.charactersPerLong);
+		return (high != PackedFiscalCode.invalid) && (low != PackedFiscalCode.invalid) && mightContain(high, low);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
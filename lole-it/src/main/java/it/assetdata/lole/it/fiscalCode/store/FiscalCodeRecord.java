@@ -0,0 +1,322 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.store;
+
+import it.assetdata.lole.it.Female;
+import it.assetdata.lole.it.Male;
+import it.assetdata.lole.it.SexIt;
+import it.assetdata.lole.it.place.PlaceCodes;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.joda.time.LocalDate;
+
+/**
+ * A flyweight view of a record of a {@link FiscalCodeRecordStore}: fields
+ * are read from the mapped bytes on every call, nothing is copied on
+ * {@link FiscalCodeRecordStore#read(long, FiscalCodeRecord)}, so a single
+ * instance can walk millions of records without allocating.<br/>
+ * It is also a {@link CharSequence} of the fiscal code value, so it can be
+ * handed to validators and decoders as is.<br/>
+ * Record layout, {@link #recordSize} bytes big endian:
+ * <ol>
+ * <li>the fiscal code value, 16 ASCII bytes;</li>
+ * <li>the birth date, {@code int}: year, month and day in bits 31-9, 8-5 and
+ * 4-0;</li>
+ * <li>the canonical place code, {@code int} key of {@link PlaceCodes};</li>
+ * <li>the sex, {@code byte}: its {@link SexIt#getFiscalCodeDayAddend()};</li>
+ * <li>the generation of the store session that appended the record, three
+ * bytes, so recovery tells appended records from older ones;</li>
+ * <li>a checksum of the previous bytes, {@code int}, so torn records are
+ * detected on recovery.</li>
+ * </ol>
+ */
+@NotThreadSafe
+public final class FiscalCodeRecord implements CharSequence {
+	
+	/**
+	 * Birth date offset in a record.
+	 */
+	static final int birthDateOffset = 16;
+	
+	/**
+	 * Checksum offset in a record.
+	 */
+	static final int checksumOffset = 28;
+	
+	/**
+	 * Fiscal code value length.
+	 */
+	static final int fiscalCodeLength = 16;
+	
+	/**
+	 * Name segment starting index.
+	 */
+	private static final int nameValueIndex = 3;
+	
+	/**
+	 * Place code offset in a record.
+	 */
+	static final int placeCodeOffset = 20;
+	
+	/**
+	 * Record size, in bytes.
+	 */
+	public static final int recordSize = 32;
+	
+	/**
+	 * Sex offset in a record.
+	 */
+	static final int sexOffset = 24;
+	
+	/**
+	 * Surname and name segments length.
+	 */
+	private static final int xameValueLength = 3;
+	
+	/**
+	 * Record start in {@link #region}.
+	 */
+	private long offset;
+	
+	/**
+	 * Record position in the store.
+	 */
+	private long position = -1;
+	
+	/**
+	 * Mapped segment holding the record, {@code null} until a record is read.
+	 */
+	private @Nullable
+	MappedRegion region;
+	
+	/**
+	 * Computes the checksum of a record.
+	 * 
+	 * @param high
+	 *            value first eight bytes
+	 * @param low
+	 *            value last eight bytes
+	 * @param birthDateAndPlaceCode
+	 *            birth date and place code
+	 * @param sex
+	 *            sex and generation bytes
+	 * @return checksum
+	 */
+	static int checksum(final long high, final long low, final long birthDateAndPlaceCode, final int sex) {
+		long hash = high * 0x9E3779B97F4A7C15L;
+		hash = (hash ^ (hash >>> 29) ^ low) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 31) ^ birthDateAndPlaceCode) * 0x94D049BB133111EBL;
+		hash = (hash ^ (hash >>> 29) ^ sex) * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+	
+	/**
+	 * Packs a birth date.
+	 * 
+	 * @param year
+	 *            year
+	 * @param month
+	 *            month, from 1 to 12
+	 * @param day
+	 *            day of month, from 1 to 31
+	 * @return packed birth date
+	 */
+	static int packBirthDate(final int year, final int month, final int day) {
+		return (year << 9) | (month << 5) | day;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public char charAt(final int index) {
+		if ((index < 0) || (fiscalCodeLength <= index)) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+		return (char) mappedRegion().getByte(offset + index);
+	}
+	
+	/**
+	 * Returns the referred person's date of birth.
+	 * 
+	 * @return date of birth
+	 */
+	public LocalDate getBirthDate() {
+		final int birthDate = mappedRegion().getInt(offset + birthDateOffset);
+		return new LocalDate(birthDate >> 9, (birthDate >>> 5) & 0x0F, birthDate & 0x1F);
+	}
+	
+	/**
+	 * Returns the referred person's day of month of birth, without creating a
+	 * {@link LocalDate}.
+	 * 
+	 * @return day of month, from 1 to 31
+	 */
+	public int getBirthDay() {
+		return mappedRegion().getInt(offset + birthDateOffset) & 0x1F;
+	}
+	
+	/**
+	 * Returns the referred person's month of birth, without creating a
+	 * {@link LocalDate}.
+	 * 
+	 * @return month, from 1 to 12
+	 */
+	public int getBirthMonth() {
+		return (mappedRegion().getInt(offset + birthDateOffset) >>> 5) & 0x0F;
+	}
+	
+	/**
+	 * Returns the referred person's year of birth, without creating a
+	 * {@link LocalDate}.
+	 * 
+	 * @return year
+	 */
+	public int getBirthYear() {
+		return mappedRegion().getInt(offset + birthDateOffset) >> 9;
+	}
+	
+	/**
+	 * Returns the three letter name segment of the value.
+	 * 
+	 * @return name segment
+	 */
+	public String getName() {
+		return subSequence(nameValueIndex, nameValueIndex + xameValueLength).toString();
+	}
+	
+	/**
+	 * Returns the referred person's canonical place of birth code.
+	 * 
+	 * @return place code
+	 */
+	public String getPlaceCode() {
+		return PlaceCodes.unpack(getPlaceCodeKey());
+	}
+	
+	/**
+	 * Returns the referred person's canonical place of birth code key, without
+	 * creating a {@link String}.
+	 * 
+	 * @return place code key, see {@link PlaceCodes#pack(CharSequence)}
+	 */
+	public int getPlaceCodeKey() {
+		return mappedRegion().getInt(offset + placeCodeOffset);
+	}
+	
+	/**
+	 * Returns the record position in the store.
+	 * 
+	 * @return position, {@code -1} until a record is read
+	 */
+	public long getPosition() {
+		return position;
+	}
+	
+	/**
+	 * Returns the referred person's sex.
+	 * 
+	 * @return shared {@link Male} or {@link Female} instance
+	 */
+	public SexIt getSex() {
+		return (mappedRegion().getByte(offset + sexOffset) == Female.getInstance().getFiscalCodeDayAddend()) ? Female.getInstance() : Male.getInstance();
+	}
+	
+	/**
+	 * Returns the three letter surname segment of the value.
+	 * 
+	 * @return surname segment
+	 */
+	public String getSurname() {
+		return subSequence(0, xameValueLength).toString();
+	}
+	
+	/**
+	 * Returns the fiscal code value.
+	 * 
+	 * @return value
+	 */
+	public String getValue() {
+		return toString();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int length() {
+		return fiscalCodeLength;
+	}
+	
+	/**
+	 * @return the region, which must have been set by
+	 *         {@link #wrap(MappedRegion, long, long)}
+	 */
+	private MappedRegion mappedRegion() {
+		if (region == null) {
+			throw new IllegalStateException("No record read"); //$NON-NLS-1$
+		}
+		return region;
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation creates a {@link String}.
+	 */
+	@Override
+	public CharSequence subSequence(final int start, final int end) {
+		if ((start < 0) || (end > fiscalCodeLength) || (start > end)) {
+			throw new IndexOutOfBoundsException(start + ", " + end); //$NON-NLS-1$
+		}
+		final char[] characters = new char[end - start];
+		for (int i = start; i < end; i++) {
+			characters[i - start] = (char) mappedRegion().getByte(offset + i);
+		}
+		return String.valueOf(characters);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * Returns the fiscal code value.
+	 */
+	@Override
+	public String toString() {
+		return subSequence(0, fiscalCodeLength).toString();
+	}
+	
+	/**
+	 * Points this flyweight to a record.
+	 * 
+	 * @param region
+	 *            mapped segment holding the record
+	 * @param offset
+	 *            record start in {@code region}
+	 * @param position
+	 *            record position in the store
+	 * @return this flyweight
+	 */
+	FiscalCodeRecord wrap(final MappedRegion region, final long offset, final long position) {
+		this.region = region;
+		this.offset = offset;
+		this.position = position;
+		return this;
+	}
+	
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.store;
+
+import it.assetdata.lole.it.SexIt;
+import it.assetdata.lole.it.fiscalCode.FiscalCode;
+import it.assetdata.lole.it.place.PlaceCodes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.joda.time.LocalDate;
+
+/**
+ * An append-only store of fiscal code records, written into memory-mapped
+ * segment files of a directory.<br/>
+ * Records are fixed-width, see {@link FiscalCodeRecord}, so the record at a
+ * position is found with no index and read with no deserialization. An
+ * append is a few writes into the page cache: forcing them to the device
+ * follows a {@link SyncPolicy}, so sustained rates are bound by the
+ * device write bandwidth rather than by its flush latency.<br/>
+ * Segments are preallocated files of {@code 2^recordsPerSegmentLog2}
+ * records named after the position of their first record; every segment
+ * but the last is forced when full. On opening, the records of the last
+ * segment appended after its last force are checked and the store is
+ * truncated at the first empty or torn one, so only the pages of the
+ * records not forced are read. Records are tagged with the generation of
+ * the session that appended them, bumped on every opening, so records
+ * written before a torn one by a crashed session are never taken for
+ * records appended later.<br/>
+ * Appends must come from a single thread at a time; records can be read by
+ * any thread, as the store size is published after the record is written.
+ */
+@NotThreadSafe
+public class FiscalCodeRecordStore implements Closeable {
+	
+	/**
+	 * Forced records count offset in a segment header.
+	 */
+	private static final int forcedCountOffset = 24;
+	
+	/**
+	 * Mask of the generation bits of a record.
+	 */
+	private static final int generationMask = 0xFFFFFF;
+	
+	/**
+	 * Generation offset in a segment header.
+	 */
+	private static final int generationOffset = 32;
+	
+	/**
+	 * Format version.
+	 */
+	static final int formatVersion = 1;
+	
+	/**
+	 * Segment header size, in bytes.
+	 */
+	static final int headerSize = 64;
+	
+	/**
+	 * Segment magic number, {@code "LOLEREC1"} in ASCII.
+	 */
+	static final long magic = 0x4C4F4C4552454331L;
+	
+	/**
+	 * Segment file name suffix.
+	 */
+	private static final String segmentSuffix = ".seg"; //$NON-NLS-1$
+	
+	/**
+	 * Directory of the segment files.
+	 */
+	private final Path directory;
+	
+	/**
+	 * {@link System#nanoTime()} of the append of the first record not forced.
+	 */
+	private long firstUnforcedNanos;
+	
+	/**
+	 * Generation of this session, tagging the records it appends.
+	 */
+	private int generation;
+	
+	/**
+	 * Records per segment, as a power of two.
+	 */
+	private final int recordsPerSegmentLog2;
+	
+	/**
+	 * Mapped segments, replaced by a longer copy when one is added.
+	 */
+	private volatile MappedRegion[] segments;
+	
+	/**
+	 * Number of records, published after they are written.
+	 */
+	private volatile long size;
+	
+	/**
+	 * Sync policy.
+	 */
+	private final SyncPolicy syncPolicy;
+	
+	/**
+	 * Number of records appended after the last force.
+	 */
+	private int unforcedRecords;
+	
+	/**
+	 * Constructor, opens the store in {@code directory}, recovering its
+	 * records, or creates it.
+	 * 
+	 * @param directory
+	 *            of the segment files, created if it does not exist
+	 * @param recordsPerSegmentLog2
+	 *            records per segment, as a power of two from {@code 10} to
+	 *            {@code 26}; it must be the same the store was created with
+	 * @param syncPolicy
+	 *            when to force appended records to the storage device
+	 * @throws IOException
+	 *             if the store cannot be opened or it is corrupted
+	 */
+	public FiscalCodeRecordStore(final Path directory, final int recordsPerSegmentLog2, final SyncPolicy syncPolicy) throws IOException {
+		if ((recordsPerSegmentLog2 < 10) || (26 < recordsPerSegmentLog2)) {
+			throw new IllegalArgumentException(String.valueOf(recordsPerSegmentLog2));
+		}
+		this.directory = directory;
+		this.recordsPerSegmentLog2 = recordsPerSegmentLog2;
+		this.syncPolicy = syncPolicy;
+		Files.createDirectories(directory);
+		final List<Path> paths = new ArrayList<>();
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + segmentSuffix)) { //$NON-NLS-1$
+			for (final Path path : stream) {
+				paths.add(path);
+			}
+		}
+		final MappedRegion[] regions = new MappedRegion[Math.max(paths.size(), 1)];
+		for (int i = 0; i < regions.length; i++) {
+			final Path path = segmentPath(i);
+			if ((i < paths.size()) && !paths.contains(path)) {
+				throw new IOException("Missing segment: " + path); //$NON-NLS-1$
+			}
+			regions[i] = map(path, i, 0); // No records yet if created, recover() starts a later generation.
+		}
+		segments = regions;
+		size = recover(regions[regions.length - 1], regions.length - 1);
+	}
+	
+	/**
+	 * Adds a mapped segment.
+	 * 
+	 * @return the new segment
+	 * @throws IOException
+	 *             if the segment cannot be created
+	 */
+	private MappedRegion addSegment() throws IOException {
+		final MappedRegion[] regions = Arrays.copyOf(segments, segments.length + 1);
+		regions[regions.length - 1] = map(segmentPath(regions.length - 1), regions.length - 1, generation);
+		segments = regions;
+		return regions[regions.length - 1];
+	}
+	
+	/**
+	 * Appends a record of a fiscal code.
+	 * 
+	 * @param fiscalCode
+	 *            to append
+	 * @return record position
+	 * @throws IOException
+	 *             if a segment cannot be created
+	 */
+	public long append(final FiscalCode fiscalCode) throws IOException {
+		final LocalDate birthDate = fiscalCode.getBirthDate();
+		return append(fiscalCode.getValue(), birthDate.getYear(), birthDate.getMonthOfYear(), birthDate.getDayOfMonth(), fiscalCode.getSex(), PlaceCodes.pack(fiscalCode.getPlaceCode()));
+	}
+	
+	/**
+	 * Appends a record from its fields, without allocating.
+	 * 
+	 * @param value
+	 *            fiscal code value, 16 ASCII characters
+	 * @param year
+	 *            year of birth
+	 * @param month
+	 *            month of birth, from 1 to 12
+	 * @param day
+	 *            day of month of birth, from 1 to 31
+	 * @param sex
+	 *            of the referred person
+	 * @param placeCodeKey
+	 *            canonical place of birth code key, see
+	 *            {@link PlaceCodes#pack(CharSequence)}
+	 * @return record position
+	 * @throws IOException
+	 *             if a segment cannot be created
+	 */
+	public long append(final CharSequence value, final int year, final int month, final int day, final SexIt sex, final int placeCodeKey) throws IOException {
+		if ((value.length() != FiscalCodeRecord.fiscalCodeLength) || (month < 1) || (12 < month) || (day < 1) || (31 < day) || (placeCodeKey < 0) || (PlaceCodes.keysCount <= placeCodeKey)) {
+			throw new IllegalArgumentException(value.toString());
+		}
+		final long position = size;
+		final int segmentIndex = (int) (position >>> recordsPerSegmentLog2);
+		final MappedRegion segment;
+		if (segmentIndex < segments.length) {
+			segment = segments[segmentIndex];
+		} else {
+			forceSegment(segments[segmentIndex - 1], 1 << recordsPerSegmentLog2);
+			segment = addSegment();
+		}
+		final long offset = recordOffset(position);
+		final long high = pack(value, 0);
+		final long low = pack(value, 8);
+		final long birthDateAndPlaceCode = ((long) FiscalCodeRecord.packBirthDate(year, month, day) << 32) | (placeCodeKey & 0xFFFFFFFFL);
+		final int sexAndGeneration = (sex.getFiscalCodeDayAddend() << 24) | generation;
+		segment.putLong(offset, high);
+		segment.putLong(offset + 8, low);
+		segment.putLong(offset + FiscalCodeRecord.birthDateOffset, birthDateAndPlaceCode);
+		segment.putInt(offset + FiscalCodeRecord.sexOffset, sexAndGeneration);
+		segment.putInt(offset + FiscalCodeRecord.checksumOffset, FiscalCodeRecord.checksum(high, low, birthDateAndPlaceCode, sexAndGeneration));
+		size = position + 1;
+		if (unforcedRecords++ == 0) {
+			firstUnforcedNanos = System.nanoTime();
+		}
+		if (syncPolicy.isDue(unforcedRecords, firstUnforcedNanos)) {
+			force();
+		}
+		return position;
+	}
+	
+	/**
+	 * Forces the appended records; the mappings are released when this store
+	 * is garbage collected, so it must not be used afterwards.
+	 */
+	@Override
+	public void close() {
+		force();
+	}
+	
+	/**
+	 * Forces the records appended after the last force to the storage
+	 * device, whatever the sync policy.
+	 */
+	public void force() {
+		final long currentSize = size;
+		if (currentSize > 0) {
+			final long lastPosition = currentSize - 1;
+			forceSegment(segments[(int) (lastPosition >>> recordsPerSegmentLog2)], (int) (lastPosition & ((1 << recordsPerSegmentLog2) - 1)) + 1);
+		}
+		unforcedRecords = 0;
+	}
+	
+	/**
+	 * Forces the records of a segment, then records their number in its
+	 * header and forces it again: page writes are not ordered, so the header
+	 * must not reach the device before the records it counts, which recovery
+	 * trusts without checking them.
+	 * 
+	 * @param segment
+	 *            to force
+	 * @param count
+	 *            number of records of the segment
+	 */
+	private static void forceSegment(final MappedRegion segment, final int count) {
+		segment.force();
+		segment.putInt(forcedCountOffset, count);
+		segment.force(); // Only the header page is dirty.
+	}
+	
+	/**
+	 * @return directory of the segment files
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * @return sync policy
+	 */
+	public SyncPolicy getSyncPolicy() {
+		return syncPolicy;
+	}
+	
+	/**
+	 * Finds the highest generation of the complete records of a segment
+	 * whose header was lost, reading all of them.
+	 * 
+	 * @param segment
+	 *            to scan
+	 * @return highest generation, {@code 0} if there are no complete records
+	 */
+	private int highestGeneration(final MappedRegion segment) {
+		int highest = 0;
+		for (int i = 0; i < (1 << recordsPerSegmentLog2); i++) {
+			final long offset = headerSize + ((long) i * FiscalCodeRecord.recordSize);
+			if (isComplete(segment, offset)) {
+				highest = Math.max(highest, segment.getInt(offset + FiscalCodeRecord.sexOffset) & generationMask);
+			}
+		}
+		return highest;
+	}
+	
+	/**
+	 * Checks if a record is complete: not empty and not torn.
+	 * 
+	 * @param segment
+	 *            segment holding the record
+	 * @param offset
+	 *            record offset
+	 * @return {@code true} if the record is not empty and its checksum
+	 *         matches, {@code false} otherwise
+	 */
+	private static boolean isComplete(final MappedRegion segment, final long offset) {
+		final long high = segment.getLong(offset);
+		return (high != 0)
+				&& (FiscalCodeRecord.checksum(high, segment.getLong(offset + 8), segment.getLong(offset + FiscalCodeRecord.birthDateOffset), segment.getInt(offset + FiscalCodeRecord.sexOffset)) == segment.getInt(offset + FiscalCodeRecord.checksumOffset));
+	}
+	
+	/**
+	 * Checks if a record is complete and was appended by a session.
+	 * 
+	 * @param segment
+	 *            segment holding the record
+	 * @param offset
+	 *            record offset
+	 * @param generation
+	 *            generation of the session
+	 * @return {@code true} if the record is not empty, its checksum matches
+	 *         and it has {@code generation}, {@code false} otherwise
+	 */
+	private static boolean isValid(final MappedRegion segment, final long offset, final int generation) {
+		return ((segment.getInt(offset + FiscalCodeRecord.sexOffset) & generationMask) == generation) && isComplete(segment, offset);
+	}
+	
+	/**
+	 * Maps a segment file, creating and preallocating it if it does not
+	 * exist, and checks its header.<br/>
+	 * An existing segment whose header was lost by a crash may hold records
+	 * of the crashed session: its header gets their generation, so that
+	 * recovery starts a later one and never takes them for its own.
+	 * 
+	 * @param path
+	 *            of the segment file
+	 * @param segmentIndex
+	 *            segment index
+	 * @param newGeneration
+	 *            generation in the header of a created segment
+	 * @return mapped segment
+	 * @throws IOException
+	 *             if the segment cannot be mapped or it is not a segment of
+	 *             this store
+	 */
+	private MappedRegion map(final Path path, final int segmentIndex, final int newGeneration) throws IOException {
+		final long segmentSize = headerSize + ((long) FiscalCodeRecord.recordSize << recordsPerSegmentLog2);
+		final boolean created = !Files.exists(path);
+		final MappedRegion segment;
+		try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			segment = new MappedRegion(channel, FileChannel.MapMode.READ_WRITE, 0, segmentSize); // Extends new files.
+		}
+		final long firstPosition = (long) segmentIndex << recordsPerSegmentLog2;
+		if (segment.getLong(0) == 0) { // New, or created by a crashed session.
+			segment.putInt(8, formatVersion);
+			segment.putInt(12, FiscalCodeRecord.recordSize);
+			segment.putLong(16, firstPosition);
+			segment.putInt(forcedCountOffset, 0);
+			segment.putInt(28, recordsPerSegmentLog2);
+			segment.putInt(generationOffset, created ? newGeneration : highestGeneration(segment));
+			segment.putLong(0, magic);
+		} else if ((segment.getLong(0) != magic) || (segment.getInt(8) != formatVersion) || (segment.getInt(12) != FiscalCodeRecord.recordSize)
+				|| (segment.getLong(16) != firstPosition) || (segment.getInt(28) != recordsPerSegmentLog2)) {
+			throw new IOException("Not a segment of this store: " + path); //$NON-NLS-1$
+		}
+		return segment;
+	}
+	
+	/**
+	 * Packs eight ASCII characters of {@code value} into a {@code long}, the
+	 * first one in the most significant byte.
+	 * 
+	 * @param value
+	 *            fiscal code value
+	 * @param offset
+	 *            first character index
+	 * @return packed characters
+	 */
+	private static long pack(final CharSequence value, final int offset) {
+		long packed = 0;
+		for (int i = 0; i < 8; i++) {
+			final char character = value.charAt(offset + i);
+			if (character >= 0x80) {
+				throw new IllegalArgumentException(value.toString());
+			}
+			packed = (packed << 8) | character;
+		}
+		return packed;
+	}
+	
+	/**
+	 * Points a flyweight to a record, without copying it.
+	 * 
+	 * @param position
+	 *            record position, from {@code 0} to {@link #size()} excluded
+	 * @param record
+	 *            flyweight to point, it can be reused for any number of reads
+	 * @return {@code record}
+	 */
+	public FiscalCodeRecord read(final long position, final FiscalCodeRecord record) {
+		if ((position < 0) || (size <= position)) {
+			throw new IndexOutOfBoundsException(String.valueOf(position));
+		}
+		return record.wrap(segments[(int) (position >>> recordsPerSegmentLog2)], recordOffset(position), position);
+	}
+	
+	/**
+	 * Computes the offset of a record in its segment.
+	 * 
+	 * @param position
+	 *            record position
+	 * @return offset
+	 */
+	private long recordOffset(final long position) {
+		return headerSize + ((position & ((1L << recordsPerSegmentLog2) - 1)) * FiscalCodeRecord.recordSize);
+	}
+	
+	/**
+	 * Finds the number of records of the store from its last segment: the
+	 * records after the forced ones are checked up to the first empty, torn
+	 * or older one. Then it starts a new generation, forcing the records
+	 * found so that every record after the forced ones is always of the
+	 * generation in the header.
+	 * 
+	 * @param segment
+	 *            last segment
+	 * @param segmentIndex
+	 *            last segment index
+	 * @return number of records
+	 * @throws IOException
+	 *             if the header is corrupted
+	 */
+	private long recover(final MappedRegion segment, final int segmentIndex) throws IOException {
+		final int capacity = 1 << recordsPerSegmentLog2;
+		final int forcedCount = segment.getInt(forcedCountOffset);
+		final int lastGeneration = segment.getInt(generationOffset);
+		if ((forcedCount < 0) || (capacity < forcedCount) || ((lastGeneration & ~generationMask) != 0)) {
+			throw new IOException("Corrupted segment: " + segmentPath(segmentIndex)); //$NON-NLS-1$
+		}
+		final long firstPosition = (long) segmentIndex << recordsPerSegmentLog2;
+		int count = forcedCount;
+		while ((count < capacity) && isValid(segment, recordOffset(firstPosition + count), lastGeneration)) {
+			count++;
+		}
+		generation = (lastGeneration + 1) & generationMask;
+		segment.force();
+		segment.putInt(forcedCountOffset, count);
+		segment.putInt(generationOffset, generation); // Same sector of the count.
+		segment.force();
+		return firstPosition + count;
+	}
+	
+	/**
+	 * Names a segment file after the position of its first record, zero
+	 * padded so names sort like positions.
+	 * 
+	 * @param segmentIndex
+	 *            segment index
+	 * @return segment file path
+	 */
+	private Path segmentPath(final int segmentIndex) {
+		return directory.resolve(String.format("%019d", Long.valueOf((long) segmentIndex << recordsPerSegmentLog2)) + segmentSuffix); //$NON-NLS-1$
+	}
+	
+	/**
+	 * @return number of records
+	 */
+	public long size() {
+		return size;
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
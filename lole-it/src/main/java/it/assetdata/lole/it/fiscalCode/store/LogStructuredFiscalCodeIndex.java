@@ -0,0 +1,972 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.store;
+
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A log-structured index of fiscal codes for write-heavy workloads: codes are
+ * added and revoked at any time and lookups see them as soon as the call
+ * returns.<br/>
+ * Writes go into a concurrent in-memory memtable. When it reaches its limit
+ * it is frozen, and a dedicated background thread flushes it into an
+ * immutable sorted run, a {@link MappedFiscalCodeIndex} file, then merges
+ * the newest runs while they have similar sizes, so {@code n} codes take
+ * about {@code log2(n / memtableLimit)} runs, and never more than
+ * {@code maxRuns}. A lookup checks the memtable, the frozen memtables not
+ * flushed yet (at most {@link #maxFrozenMemtables}) and the runs, newest
+ * first, stopping at the first entry found; revoking a code writes a
+ * tombstone hiding the older entries, dropped by the first merge including
+ * the oldest run.<br/>
+ * Lookups take no locks, so writes, flushes and merges never block them:
+ * they read an immutable snapshot of memtables and runs, replaced at every
+ * change. Writers share a lock taken exclusively only to swap the memtable,
+ * and wait if flushing falls behind.<br/>
+ * Entries in memtables are lost on a crash, {@link #flush()} makes them
+ * durable. Runs are named after the flush sequence numbers they cover: runs
+ * left behind by an interrupted merge are covered by the merged one and
+ * deleted on opening.
+ */
+@ThreadSafe
+public class LogStructuredFiscalCodeIndex implements Closeable {
+	
+	/**
+	 * Maximum number of frozen memtables waiting to be flushed, writers wait
+	 * beyond it.
+	 */
+	private static final int maxFrozenMemtables = 2;
+	
+	/**
+	 * Key of the memtable lookups of every thread, reused so lookups do not
+	 * allocate; it is never inserted.
+	 */
+	private static final ThreadLocal<MemtableKey> lookupKey = new ThreadLocal<MemtableKey>() {
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected MemtableKey initialValue() {
+			return new MemtableKey(0, 0);
+		}
+		
+	};
+	
+	/**
+	 * Run file name prefix.
+	 */
+	private static final String runPrefix = "run-"; //$NON-NLS-1$
+	
+	/**
+	 * Run file name suffix.
+	 */
+	private static final String runSuffix = ".idx"; //$NON-NLS-1$
+	
+	/**
+	 * Maximum ratio between the sizes of an older and a newer run to merge
+	 * them.
+	 */
+	private static final int sizeRatio = 2;
+	
+	/**
+	 * Temporary file name suffix, for runs being written.
+	 */
+	private static final String temporarySuffix = ".tmp"; //$NON-NLS-1$
+	
+	/**
+	 * Dedicated thread flushing and merging runs.
+	 */
+	private final ExecutorService backgroundExecutor;
+	
+	/**
+	 * Set by {@link #close()}.
+	 */
+	private volatile boolean closed;
+	
+	/**
+	 * Directory of the runs.
+	 */
+	private final Path directory;
+	
+	/**
+	 * First background failure, writes fail afterwards.
+	 */
+	private volatile @Nullable
+	IOException failure;
+	
+	/**
+	 * Permits to freeze a memtable, released when it is flushed.
+	 */
+	private final Semaphore frozenMemtablesPermits = new Semaphore(maxFrozenMemtables);
+	
+	/**
+	 * Maximum number of runs.
+	 */
+	private final int maxRuns;
+	
+	/**
+	 * Number of writes freezing the memtable.
+	 */
+	private final int memtableLimit;
+	
+	/**
+	 * Sequence number of the next flushed run, used by the background thread
+	 * only.
+	 */
+	private long nextSequence;
+	
+	/**
+	 * Current snapshot, replaced under {@link #stateLock}.
+	 */
+	private volatile State state;
+	
+	/**
+	 * Serializes the snapshot replacements.
+	 */
+	private final Object stateLock = new Object();
+	
+	/**
+	 * Shared by writers, exclusive to swap the memtable, so a frozen memtable
+	 * receives no more writes.
+	 */
+	private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+	
+	/**
+	 * Constructor, opens the index in {@code directory}, or creates it, and
+	 * starts its background thread.
+	 * 
+	 * @param directory
+	 *            of the runs, created if it does not exist
+	 * @param memtableLimit
+	 *            number of writes freezing the memtable, so about the heap
+	 *            taken by a memtable, some 100 bytes per write, and the size
+	 *            of the smallest runs
+	 * @param maxRuns
+	 *            maximum number of runs, the read amplification bound
+	 * @throws IOException
+	 *             if the runs cannot be opened
+	 */
+	public LogStructuredFiscalCodeIndex(final Path directory, final int memtableLimit, final int maxRuns) throws IOException {
+		if ((memtableLimit < 1) || (maxRuns < 1)) {
+			throw new IllegalArgumentException();
+		}
+		this.directory = directory;
+		this.maxRuns = maxRuns;
+		this.memtableLimit = memtableLimit;
+		final List<Run> runs = openRuns(directory);
+		nextSequence = runs.isEmpty() ? 0 : (runs.get(0).lastSequence + 1);
+		state = new State(new Memtable(), ImmutableList.<Memtable> of(), ImmutableList.copyOf(runs));
+		backgroundExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "lole-lsm-" + directory.getFileName()); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+			
+		});
+	}
+	
+	/**
+	 * Adds a code.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @throws IOException
+	 *             if a background flush or merge failed
+	 */
+	public void add(final long high, final long low) throws IOException {
+		put(high, low, Boolean.TRUE);
+	}
+	
+	/**
+	 * Adds a fiscal code.
+	 * 
+	 * @param fiscalCode
+	 *            value, sixteen digits or upper case letters
+	 * @throws IOException
+	 *             if a background flush or merge failed
+	 */
+	public void add(final CharSequence fiscalCode) throws IOException {
+		final PackedFiscalCode packedFiscalCode = packed(fiscalCode);
+		put(packedFiscalCode.getHigh(), packedFiscalCode.getLow(), Boolean.TRUE);
+	}
+	
+	/**
+	 * Throws if this index is closed or if a background flush or merge
+	 * failed.
+	 * 
+	 * @throws IOException
+	 *             if a background flush or merge failed
+	 */
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IllegalStateException("Closed"); //$NON-NLS-1$
+		}
+		final IOException currentFailure = failure;
+		if (currentFailure != null) {
+			throw new IOException("Background flush or merge failed", currentFailure); //$NON-NLS-1$
+		}
+	}
+	
+	/**
+	 * Flushes the memtable, waits for the background thread to finish and
+	 * closes the runs.
+	 * 
+	 * @throws IOException
+	 *             if the memtable cannot be flushed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			closed = true;
+			backgroundExecutor.shutdown();
+			try {
+				backgroundExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			for (final Run run : state.runs) {
+				run.index.close();
+			}
+		}
+	}
+	
+	/**
+	 * Merges the newest runs while they have similar sizes or there are too
+	 * many, on the background thread.
+	 * 
+	 * @throws IOException
+	 *             if a merged run cannot be written
+	 */
+	private void compact() throws IOException {
+		while (true) {
+			final ImmutableList<Run> runs = state.runs; // Only changed by this thread.
+			if (runs.size() < 2) {
+				return;
+			}
+			final Run newer = runs.get(0);
+			final Run older = runs.get(1);
+			if ((runs.size() <= maxRuns) && (older.index.size() > (sizeRatio * newer.index.size()))) {
+				return;
+			}
+			final Run merged = merge(newer, older, runs.size() == 2);
+			synchronized (stateLock) {
+				state = new State(state.memtable, state.frozen, ImmutableList.<Run> builder().add(merged).addAll(runs.subList(2, runs.size())).build());
+			}
+			newer.delete();
+			older.delete();
+		}
+	}
+	
+	/**
+	 * Checks if a code is in the index.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @return {@code true} if it was added and not revoked afterwards,
+	 *         {@code false} otherwise
+	 */
+	public boolean contains(final long high, final long low) {
+		if (!PackedFiscalCode.isPacked(high) || !PackedFiscalCode.isPacked(low)) {
+			return false;
+		}
+		final State current = state;
+		final MemtableKey key = lookupKey.get();
+		key.high = high;
+		key.low = low;
+		Boolean live = current.memtable.entries.get(key);
+		for (int i = 0; (live == null) && (i < current.frozen.size()); i++) {
+			live = current.frozen.get(i).entries.get(key);
+		}
+		if (live != null) {
+			return live.booleanValue();
+		}
+		for (final Run run : current.runs) {
+			final int entry = run.lookup(high, low);
+			if (entry != Run.absent) {
+				return entry == Run.live;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks if a fiscal code is in the index.
+	 * 
+	 * @param fiscalCode
+	 *            value
+	 * @return {@code true} if it was added and not revoked afterwards,
+	 *         {@code false} otherwise
+	 */
+	public boolean contains(final @Nullable CharSequence fiscalCode) {
+		final PackedFiscalCode packedFiscalCode = PackedFiscalCode.valueOf(fiscalCode);
+		return (packedFiscalCode != null) && contains(packedFiscalCode.getHigh(), packedFiscalCode.getLow());
+	}
+	
+	/**
+	 * Makes the writes completed before this call durable: freezes the
+	 * memtable and waits for the background thread to flush it and to merge
+	 * runs.
+	 * 
+	 * @throws IOException
+	 *             if a background flush or merge failed
+	 */
+	public void flush() throws IOException {
+		checkOpen();
+		final Memtable memtable = state.memtable;
+		if (memtable.writes.get() > 0) {
+			freeze(memtable);
+		}
+		try {
+			backgroundExecutor.submit(new Runnable() {
+				
+				/**
+				 * {@inheritDoc}
+				 */
+				@Override
+				public void run() {
+					// Queued after the flushes, which the single thread runs in order.
+				}
+				
+			}).get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException(e);
+		}
+		checkOpen();
+	}
+	
+	/**
+	 * Flushes a frozen memtable into a run, on the background thread.
+	 * 
+	 * @param memtable
+	 *            frozen memtable
+	 */
+	private void flushFrozen(final Memtable memtable) {
+		try {
+			if (failure == null) {
+				final long sequence = nextSequence++;
+				final Path temporary = runPath(sequence, sequence, temporarySuffix);
+				try (final MappedFiscalCodeIndex.Writer writer = new MappedFiscalCodeIndex.Writer(temporary)) {
+					for (final Map.Entry<MemtableKey, Boolean> entry : memtable.entries.entrySet()) {
+						writer.add(entry.getKey().high, Run.encode(entry.getKey().low, entry.getValue().booleanValue()));
+					}
+				}
+				final Run run = install(temporary, sequence, sequence);
+				synchronized (stateLock) {
+					final List<Memtable> frozen = new ArrayList<>(state.frozen);
+					frozen.remove(memtable);
+					state = new State(state.memtable, ImmutableList.copyOf(frozen), ImmutableList.<Run> builder().add(run).addAll(state.runs).build());
+				}
+				compact();
+			}
+		} catch (final IOException e) {
+			failure = e; // The memtable stays frozen, so its entries can still be looked up.
+		} finally {
+			frozenMemtablesPermits.release();
+		}
+	}
+	
+	/**
+	 * Freezes a memtable, if it is still the current one, and queues its
+	 * flush; waits if {@link #maxFrozenMemtables} are already waiting.
+	 * 
+	 * @param memtable
+	 *            to freeze
+	 */
+	private void freeze(final Memtable memtable) {
+		frozenMemtablesPermits.acquireUninterruptibly();
+		swapLock.writeLock().lock();
+		try {
+			synchronized (stateLock) {
+				if (state.memtable != memtable) { // Frozen by another thread.
+					frozenMemtablesPermits.release();
+					return;
+				}
+				state = new State(new Memtable(), ImmutableList.<Memtable> builder().add(memtable).addAll(state.frozen).build(), state.runs);
+				backgroundExecutor.execute(new Runnable() { // Queued along with the swap, so flush() waits for it.
+					
+					/**
+					 * {@inheritDoc}
+					 */
+					@Override
+					public void run() {
+						flushFrozen(memtable);
+					}
+					
+				});
+			}
+		} finally {
+			swapLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * @return directory of the runs
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * @return number of runs a lookup may read
+	 */
+	public int getRunsCount() {
+		return state.runs.size();
+	}
+	
+	/**
+	 * Renames a written run to its final name, durably, and opens it.
+	 * 
+	 * @param temporary
+	 *            written run
+	 * @param firstSequence
+	 *            first flush sequence number covered by the run
+	 * @param lastSequence
+	 *            last flush sequence number covered by the run
+	 * @return opened run
+	 * @throws IOException
+	 *             if the run cannot be renamed or opened
+	 */
+	private Run install(final Path temporary, final long firstSequence, final long lastSequence) throws IOException {
+		final Path path = runPath(firstSequence, lastSequence, runSuffix);
+		FileReplacement.replace(temporary, path); // Forces the directory too, so flushed runs survive a crash.
+		return new Run(new MappedFiscalCodeIndex(path), firstSequence, lastSequence);
+	}
+	
+	/**
+	 * Merges two adjacent runs, the newer entry winning on equal codes.
+	 * 
+	 * @param newer
+	 *            newer run
+	 * @param older
+	 *            older run
+	 * @param dropTombstones
+	 *            {@code true} if {@code older} is the oldest run, so
+	 *            tombstones hide nothing anymore
+	 * @return merged run
+	 * @throws IOException
+	 *             if the merged run cannot be written
+	 */
+	private Run merge(final Run newer, final Run older, final boolean dropTombstones) throws IOException {
+		final Path temporary = runPath(older.firstSequence, newer.lastSequence, temporarySuffix);
+		try (final MappedFiscalCodeIndex.Writer writer = new MappedFiscalCodeIndex.Writer(temporary)) {
+			final MappedFiscalCodeIndex newerIndex = newer.index;
+			final MappedFiscalCodeIndex olderIndex = older.index;
+			long i = 0;
+			long j = 0;
+			while ((i < newerIndex.size()) || (j < olderIndex.size())) {
+				final int comparison;
+				if (i == newerIndex.size()) {
+					comparison = 1;
+				} else if (j == olderIndex.size()) {
+					comparison = -1;
+				} else {
+					comparison = PackedFiscalCode.compare(newerIndex.getHigh(i), newerIndex.getLow(i) >>> 1, olderIndex.getHigh(j), olderIndex.getLow(j) >>> 1);
+				}
+				final long high;
+				final long low;
+				if (comparison <= 0) {
+					high = newerIndex.getHigh(i);
+					low = newerIndex.getLow(i);
+					i++;
+					if (comparison == 0) {
+						j++; // Hidden by the newer entry.
+					}
+				} else {
+					high = olderIndex.getHigh(j);
+					low = olderIndex.getLow(j);
+					j++;
+				}
+				if (!dropTombstones || !Run.isTombstone(low)) {
+					writer.add(high, low);
+				}
+			}
+		}
+		return install(temporary, older.firstSequence, newer.lastSequence);
+	}
+	
+	/**
+	 * Opens the runs of a directory, deleting the ones covered by a merged
+	 * run and the temporary files of interrupted writes.
+	 * 
+	 * @param directory
+	 *            of the runs
+	 * @return runs, newest first
+	 * @throws IOException
+	 *             if the runs cannot be opened
+	 */
+	private static List<Run> openRuns(final Path directory) throws IOException {
+		Files.createDirectories(directory);
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + temporarySuffix)) { //$NON-NLS-1$
+			for (final Path path : stream) {
+				Files.delete(path);
+			}
+		}
+		final List<long[]> sequences = new ArrayList<>();
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, runPrefix + "*" + runSuffix)) { //$NON-NLS-1$
+			for (final Path path : stream) {
+				final String name = path.getFileName().toString();
+				final String[] bounds = name.substring(runPrefix.length(), name.length() - runSuffix.length()).split("-"); //$NON-NLS-1$
+				try {
+					sequences.add(new long[] { Long.parseLong(bounds[0]), Long.parseLong(bounds[1]) });
+				} catch (final NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					throw new IOException("Not a run: " + path, e); //$NON-NLS-1$
+				}
+			}
+		}
+		Collections.sort(sequences, new Comparator<long[]>() {
+			
+			/**
+			 * {@inheritDoc}<br/>
+			 * <br/>
+			 * Newest last sequence first, then widest range first.
+			 */
+			@Override
+			public int compare(final long[] o1, final long[] o2) {
+				final int lastComparison = Long.compare(o2[1], o1[1]);
+				return (lastComparison != 0) ? lastComparison : Long.compare(o1[0], o2[0]);
+			}
+			
+		});
+		final List<Run> runs = new ArrayList<>();
+		try {
+			long coveredFrom = Long.MAX_VALUE;
+			for (final long[] bounds : sequences) {
+				final Path path = runPath(directory, bounds[0], bounds[1], runSuffix);
+				if (bounds[1] < coveredFrom) {
+					runs.add(new Run(new MappedFiscalCodeIndex(path), bounds[0], bounds[1]));
+					coveredFrom = bounds[0];
+				} else {
+					Files.delete(path); // Merged into a newer run.
+				}
+			}
+		} catch (final IOException | RuntimeException e) {
+			for (final Run run : runs) {
+				run.index.close();
+			}
+			throw e;
+		}
+		return runs;
+	}
+	
+	/**
+	 * Packs a fiscal code to write.
+	 * 
+	 * @param fiscalCode
+	 *            value
+	 * @return packed value
+	 * @throws IllegalArgumentException
+	 *             if {@code fiscalCode} is not made of sixteen digits or upper
+	 *             case letters
+	 */
+	private static PackedFiscalCode packed(final CharSequence fiscalCode) throws IllegalArgumentException {
+		final PackedFiscalCode packedFiscalCode = PackedFiscalCode.valueOf(fiscalCode);
+		if (packedFiscalCode == null) {
+			throw new IllegalArgumentException(fiscalCode.toString());
+		}
+		return packedFiscalCode;
+	}
+	
+	/**
+	 * Writes an entry into the memtable, freezing it when full.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @param live
+	 *            {@link Boolean#TRUE} to add the code, {@link Boolean#FALSE}
+	 *            to revoke it
+	 * @throws IllegalArgumentException
+	 *             if either half is not a packed code
+	 * @throws IOException
+	 *             if a background flush or merge failed
+	 */
+	private void put(final long high, final long low, final Boolean live) throws IOException {
+		if (!PackedFiscalCode.isPacked(high) || !PackedFiscalCode.isPacked(low)) {
+			throw new IllegalArgumentException();
+		}
+		final MemtableKey key = new MemtableKey(high, low);
+		checkOpen();
+		final Memtable memtable;
+		final int writes;
+		swapLock.readLock().lock();
+		try {
+			memtable = state.memtable;
+			memtable.entries.put(key, live);
+			writes = memtable.writes.incrementAndGet();
+		} finally {
+			swapLock.readLock().unlock();
+		}
+		if (writes == memtableLimit) {
+			freeze(memtable);
+		}
+	}
+	
+	/**
+	 * Revokes a code, writing a tombstone.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @throws IOException
+	 *             if a background flush or merge failed
+	 */
+	public void revoke(final long high, final long low) throws IOException {
+		put(high, low, Boolean.FALSE);
+	}
+	
+	/**
+	 * Revokes a fiscal code, writing a tombstone.
+	 * 
+	 * @param fiscalCode
+	 *            value, sixteen digits or upper case letters
+	 * @throws IOException
+	 *             if a background flush or merge failed
+	 */
+	public void revoke(final CharSequence fiscalCode) throws IOException {
+		final PackedFiscalCode packedFiscalCode = packed(fiscalCode);
+		put(packedFiscalCode.getHigh(), packedFiscalCode.getLow(), Boolean.FALSE);
+	}
+	
+	/**
+	 * Names a run file after the flush sequence numbers it covers.
+	 * 
+	 * @param directory
+	 *            of the runs
+	 * @param firstSequence
+	 *            first flush sequence number
+	 * @param lastSequence
+	 *            last flush sequence number
+	 * @param suffix
+	 *            {@link #runSuffix} or {@link #temporarySuffix}
+	 * @return run file path
+	 */
+	private static Path runPath(final Path directory, final long firstSequence, final long lastSequence, final String suffix) {
+		return directory.resolve(String.format("%s%019d-%019d%s", runPrefix, Long.valueOf(firstSequence), Long.valueOf(lastSequence), suffix)); //$NON-NLS-1$
+	}
+	
+	/**
+	 * Names a run file of this index, see
+	 * {@link #runPath(Path, long, long, String)}.
+	 * 
+	 * @param firstSequence
+	 *            first flush sequence number
+	 * @param lastSequence
+	 *            last flush sequence number
+	 * @param suffix
+	 *            {@link #runSuffix} or {@link #temporarySuffix}
+	 * @return run file path
+	 */
+	private Path runPath(final long firstSequence, final long lastSequence, final String suffix) {
+		return runPath(directory, firstSequence, lastSequence, suffix);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+	/**
+	 * In-memory sorted entries: {@link Boolean#TRUE} for added codes,
+	 * {@link Boolean#FALSE} for revoked ones.
+	 */
+	@ThreadSafe
+	private static final class Memtable {
+		
+		/**
+		 * Entries.
+		 */
+		final ConcurrentSkipListMap<MemtableKey, Boolean> entries = new ConcurrentSkipListMap<>();
+		
+		/**
+		 * Number of writes, overwrites included, cheaper than
+		 * {@link ConcurrentSkipListMap#size()}.
+		 */
+		final AtomicInteger writes = new AtomicInteger();
+		
+	}
+	
+	/**
+	 * Packed code keying memtable entries, ordered like
+	 * {@link PackedFiscalCode}s; mutable only so that the lookup keys of
+	 * {@link LogStructuredFiscalCodeIndex#lookupKey} can be reused, inserted
+	 * keys are never changed.
+	 */
+	private static final class MemtableKey implements Comparable<MemtableKey> {
+		
+		/**
+		 * Packed code high half.
+		 */
+		long high;
+		
+		/**
+		 * Packed code low half.
+		 */
+		long low;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param high
+		 *            packed code high half
+		 * @param low
+		 *            packed code low half
+		 */
+		MemtableKey(final long high, final long low) {
+			this.high = high;
+			this.low = low;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int compareTo(final MemtableKey o) {
+			return PackedFiscalCode.compare(high, low, o.high, o.low);
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean equals(final @Nullable Object obj) {
+			if (obj == null) {
+				return false;
+			} else if (obj == this) {
+				return true;
+			} else if (!(obj instanceof MemtableKey)) {
+				return false;
+			} else {
+				final MemtableKey o = (MemtableKey) obj;
+				return (high == o.high) && (low == o.low);
+			}
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int hashCode() {
+			return PackedFiscalCode.hash(high, low);
+		}
+		
+	}
+	
+	/**
+	 * An immutable sorted run: a {@link MappedFiscalCodeIndex} whose low
+	 * halves are shifted left by one bit, the freed bit flagging tombstones,
+	 * so an added and a revoked entry of the same code sort together.
+	 */
+	@Immutable
+	private static final class Run {
+		
+		/**
+		 * {@link #lookup(long, long)} result for codes without entries.
+		 */
+		static final int absent = -1;
+		
+		/**
+		 * {@link #lookup(long, long)} result for added codes.
+		 */
+		static final int live = 1;
+		
+		/**
+		 * {@link #lookup(long, long)} result for revoked codes.
+		 */
+		static final int revoked = 0;
+		
+		/**
+		 * First flush sequence number covered.
+		 */
+		final long firstSequence;
+		
+		/**
+		 * Entries.
+		 */
+		final MappedFiscalCodeIndex index;
+		
+		/**
+		 * Last flush sequence number covered.
+		 */
+		final long lastSequence;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param index
+		 *            entries
+		 * @param firstSequence
+		 *            first flush sequence number covered
+		 * @param lastSequence
+		 *            last flush sequence number covered
+		 */
+		Run(final MappedFiscalCodeIndex index, final long firstSequence, final long lastSequence) {
+			this.firstSequence = firstSequence;
+			this.index = index;
+			this.lastSequence = lastSequence;
+		}
+		
+		/**
+		 * Encodes the low half of an entry.
+		 * 
+		 * @param low
+		 *            packed code low half
+		 * @param live
+		 *            {@code false} for tombstones
+		 * @return encoded low half
+		 */
+		static long encode(final long low, final boolean live) {
+			return (low << 1) | (live ? 0 : 1);
+		}
+		
+		/**
+		 * @param encodedLow
+		 *            encoded low half
+		 * @return {@code true} if the entry is a tombstone
+		 */
+		static boolean isTombstone(final long encodedLow) {
+			return (encodedLow & 1) != 0;
+		}
+		
+		/**
+		 * Closes and deletes the run; readers of older snapshots can still
+		 * use its mapping. A run that cannot be deleted, for example because
+		 * the platform does not delete mapped files, is covered by the merged
+		 * one and deleted on the next opening.
+		 */
+		void delete() {
+			try {
+				index.close();
+				Files.delete(index.getPath());
+			} catch (final IOException e) {
+				// Deleted on the next opening.
+			}
+		}
+		
+		/**
+		 * Looks a code up.
+		 * 
+		 * @param high
+		 *            packed code high half
+		 * @param low
+		 *            packed code low half
+		 * @return {@link #live}, {@link #revoked} or {@link #absent}
+		 */
+		int lookup(final long high, final long low) {
+			final long encodedLow = low << 1;
+			final long position = index.lowerBound(high, encodedLow);
+			if ((position == index.size()) || (index.getHigh(position) != high) || ((index.getLow(position) >>> 1) != low)) {
+				return absent;
+			}
+			return isTombstone(index.getLow(position)) ? revoked : live;
+		}
+		
+	}
+	
+	/**
+	 * A snapshot of memtables and runs, replaced as a whole.
+	 */
+	@Immutable
+	private static final class State {
+		
+		/**
+		 * Frozen memtables not flushed yet, newest first.
+		 */
+		final ImmutableList<Memtable> frozen;
+		
+		/**
+		 * Memtable receiving the writes.
+		 */
+		final Memtable memtable;
+		
+		/**
+		 * Runs, newest first.
+		 */
+		final ImmutableList<Run> runs;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param memtable
+		 *            memtable receiving the writes
+		 * @param frozen
+		 *            frozen memtables not flushed yet, newest first
+		 * @param runs
+		 *            runs, newest first
+		 */
+		State(final Memtable memtable, final ImmutableList<Memtable> frozen, final ImmutableList<Run> runs) {
+			this.frozen = frozen;
+			this.memtable = memtable;
+			this.runs = runs;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.store;
+
+import it.assetdata.lole.it.fiscalCode.PackedFiscalCode;
+import it.assetdata.lole.it.fiscalCode.collect.PackedFiscalCodeArrays;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Immutable on-disk index of fiscal codes, memory-mapped so that opening it
+ * only reads its header and fence pointers, and the operating system page
+ * cache holding it is shared by all the processes using it.<br/>
+ * The file, big endian, is made of:
+ * <ol>
+ * <li>a {@link #headerSize} bytes header: {@link #magic}, format version,
+ * fence interval, number of codes, fence pointers position, then zeros;</li>
+ * <li>the packed codes, see {@link PackedFiscalCode}, sorted and unique, 16
+ * bytes each: high half then low half;</li>
+ * <li>the fence pointers: every {@link #fenceInterval}-th code, 16 bytes
+ * each.</li>
+ * </ol>
+ * A lookup binary searches the fence pointers, kept on the heap, then the
+ * {@link #fenceInterval} codes of a single 4 KB block of the mapped file.
+ * Written by {@link #write(Path, long[], long[], int)}, or streamed in
+ * order by a {@link Writer}.
+ */
+@ThreadSafe
+public class MappedFiscalCodeIndex implements Closeable {
+	
+	/**
+	 * Size of a packed code, in bytes.
+	 */
+	static final int codeSize = 16;
+	
+	/**
+	 * Codes between two fence pointers.
+	 */
+	static final int fenceInterval = 256;
+	
+	/**
+	 * Format version.
+	 */
+	static final int formatVersion = 1;
+	
+	/**
+	 * Header size, in bytes.
+	 */
+	static final int headerSize = 64;
+	
+	/**
+	 * File type marker, {@code "LOLEIDX1"} in ASCII.
+	 */
+	static final long magic = 0x4C4F4C4549445831L;
+	
+	/**
+	 * Greatest packed half, {@code "ZZZZZZZZ"}.
+	 */
+	private static final long maxPacked = 2821109907455L; // 36^8 - 1
+	
+	/**
+	 * Codes write buffer size, in bytes.
+	 */
+	private static final int writeBufferSize = 1 << 16;
+	
+	/**
+	 * Mapped file.
+	 */
+	private final FileChannel channel;
+	
+	/**
+	 * Mapped codes.
+	 */
+	private final MappedRegion codes;
+	
+	/**
+	 * Fence pointers high halves.
+	 */
+	private final long[] fenceHighs;
+	
+	/**
+	 * Fence pointers low halves.
+	 */
+	private final long[] fenceLows;
+	
+	/**
+	 * Path of the file.
+	 */
+	private final Path path;
+	
+	/**
+	 * Number of codes.
+	 */
+	private final long size;
+	
+	/**
+	 * Constructor, opens and maps the index.
+	 * 
+	 * @param path
+	 *            of the file written by
+	 *            {@link #write(Path, long[], long[], int)}
+	 * @throws IOException
+	 *             if the file cannot be read or is not an index
+	 */
+	public MappedFiscalCodeIndex(final Path path) throws IOException {
+		this.path = path;
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			final ByteBuffer header = ByteBuffer.allocate(headerSize);
+			while (header.hasRemaining() && (channel.read(header) >= 0)) {
+				// Read the whole header.
+			}
+			header.flip();
+			if ((header.remaining() < headerSize) || (header.getLong(0) != magic) || (header.getInt(8) != formatVersion) || (header.getInt(12) != fenceInterval)) {
+				throw new IOException("Not a fiscal code index: " + path); //$NON-NLS-1$
+			}
+			size = header.getLong(16);
+			final long fencesPosition = header.getLong(24);
+			final int fencesCount = (int) ((size + fenceInterval - 1) / fenceInterval);
+			if ((size < 0) || (fencesPosition != (headerSize + (size * codeSize))) || (channel.size() != (fencesPosition + ((long) fencesCount * codeSize)))) {
+				throw new IOException("Corrupted fiscal code index: " + path); //$NON-NLS-1$
+			}
+			codes = new MappedRegion(channel, FileChannel.MapMode.READ_ONLY, headerSize, size * codeSize);
+			final MappedRegion fences = new MappedRegion(channel, FileChannel.MapMode.READ_ONLY, fencesPosition, (long) fencesCount * codeSize);
+			fenceHighs = new long[fencesCount];
+			fenceLows = new long[fencesCount];
+			for (int i = 0; i < fencesCount; i++) {
+				fenceHighs[i] = fences.getLong((long) i * codeSize);
+				fenceLows[i] = fences.getLong(((long) i * codeSize) + 8);
+			}
+		} catch (final IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Writes an index file, replacing it atomically so that the processes
+	 * having it mapped keep reading the old one.
+	 * 
+	 * @param path
+	 *            of the file, replaced if it exists
+	 * @param highs
+	 *            packed codes high halves, sorted in place along with
+	 *            {@code lows}
+	 * @param lows
+	 *            packed codes low halves
+	 * @param length
+	 *            number of codes in {@code highs} and {@code lows}, from index
+	 *            {@code 0}; duplicates are written once
+	 * @return number of codes written
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static long write(final Path path, final long[] highs, final long[] lows, final int length) throws IOException {
+		PackedFiscalCodeArrays.sort(highs, lows, 0, length);
+		final int size = PackedFiscalCodeArrays.unique(highs, lows, 0, length);
+		final Path temporary = FileReplacement.temporaryPath(path); // Readers may keep the file mapped.
+		try (final Writer writer = new Writer(temporary)) {
+			for (int i = 0; i < size; i++) {
+				writer.add(highs[i], lows[i]);
+			}
+		}
+		FileReplacement.replace(temporary, path);
+		return size;
+	}
+	
+	/**
+	 * Closes the file; the mapping is released when this index is garbage
+	 * collected, so it must not be used afterwards.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	/**
+	 * Checks if a code is in the index.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @return {@code true} if it is in the index, {@code false} otherwise
+	 */
+	public boolean contains(final long high, final long low) {
+		final long position = lowerBound(high, low);
+		return (position < size) && (getHigh(position) == high) && (getLow(position) == low);
+	}
+	
+	/**
+	 * Checks if a fiscal code is in the index.
+	 * 
+	 * @param fiscalCode
+	 *            value
+	 * @return {@code true} if it is in the index, {@code false} otherwise
+	 */
+	public boolean contains(final @Nullable CharSequence fiscalCode) {
+		if ((fiscalCode == null) || (fiscalCode.length() != (2 * PackedFiscalCode.charactersPerLong))) {
+			return false;
+		}
+		final long high = PackedFiscalCode.pack(fiscalCode, 0);
+		final long low = PackedFiscalCode.pack(fiscalCode, PackedFiscalCode.charactersPerLong);
+		return (high != PackedFiscalCode.invalid) && (low != PackedFiscalCode.invalid) && contains(high, low);
+	}
+	
+	/**
+	 * @param position
+	 *            of a code, from {@code 0} to {@link #size()} excluded
+	 * @return high half of the code at {@code position}
+	 */
+	public long getHigh(final long position) {
+		return codes.getLong(position * codeSize);
+	}
+	
+	/**
+	 * @param position
+	 *            of a code, from {@code 0} to {@link #size()} excluded
+	 * @return low half of the code at {@code position}
+	 */
+	public long getLow(final long position) {
+		return codes.getLong((position * codeSize) + 8);
+	}
+	
+	/**
+	 * @return path of the file
+	 */
+	public Path getPath() {
+		return path;
+	}
+	
+	/**
+	 * Finds where a code is or would be, for lookups and range scans.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @return position of the first code not less than the given one,
+	 *         {@link #size()} if there is none
+	 */
+	public long lowerBound(final long high, final long low) {
+		int fenceLow = 0;
+		int fenceHigh = fenceHighs.length - 1;
+		while (fenceLow <= fenceHigh) { // Last fence not greater than the code.
+			final int middle = (fenceLow + fenceHigh) >>> 1;
+			if (PackedFiscalCode.compare(fenceHighs[middle], fenceLows[middle], high, low) <= 0) {
+				fenceLow = middle + 1;
+			} else {
+				fenceHigh = middle - 1;
+			}
+		}
+		if (fenceHigh < 0) {
+			return 0;
+		}
+		long from = (long) fenceHigh * fenceInterval;
+		long to = Math.min(from + fenceInterval, size);
+		while (from < to) { // First code not less than the given one.
+			final long middle = (from + to) >>> 1;
+			if (PackedFiscalCode.compare(getHigh(middle), getLow(middle), high, low) < 0) {
+				from = middle + 1;
+			} else {
+				to = middle;
+			}
+		}
+		return from;
+	}
+	
+	/**
+	 * @return number of codes
+	 */
+	public long size() {
+		return size;
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+	/**
+	 * Finds where the codes greater than a code start, so that the codes from
+	 * {@link #lowerBound(long, long)} of a code to this position of another
+	 * one are the codes between the two, both included.
+	 * 
+	 * @param high
+	 *            packed code high half
+	 * @param low
+	 *            packed code low half
+	 * @return position of the first code greater than the given one,
+	 *         {@link #size()} if there is none
+	 */
+	public long upperBound(final long high, final long low) {
+		if (low < maxPacked) {
+			return lowerBound(high, low + 1);
+		} else if (high < maxPacked) {
+			return lowerBound(high + 1, 0);
+		} else {
+			return size;
+		}
+	}
+	
+	/**
+	 * Streams sorted codes into an index file, keeping only the fence
+	 * pointers on the heap, so indexes larger than the heap can be written,
+	 * for example by merging other indexes.<br/>
+	 * The header is written and the file forced on {@link #close()}.
+	 */
+	@NotThreadSafe
+	static final class Writer implements Closeable {
+		
+		/**
+		 * Write buffer.
+		 */
+		private final ByteBuffer buffer = ByteBuffer.allocate(writeBufferSize);
+		
+		/**
+		 * File.
+		 */
+		private final FileChannel channel;
+		
+		/**
+		 * Fence pointers high halves.
+		 */
+		private long[] fenceHighs = new long[16];
+		
+		/**
+		 * Fence pointers low halves.
+		 */
+		private long[] fenceLows = new long[16];
+		
+		/**
+		 * File path.
+		 */
+		private final Path path;
+		
+		/**
+		 * {@code true} if an {@link #add(long, long)} failed.
+		 */
+		private boolean failed;
+		
+		/**
+		 * Last code high half.
+		 */
+		private long lastHigh;
+		
+		/**
+		 * Last code low half.
+		 */
+		private long lastLow;
+		
+		/**
+		 * Number of codes written.
+		 */
+		private long size;
+		
+		/**
+		 * Constructor, creates the file.
+		 * 
+		 * @param path
+		 *            of the file, truncated if it exists, so it must not be
+		 *            an index in use but a temporary file renamed once
+		 *            written
+		 * @throws IOException
+		 *             if the file cannot be created
+		 */
+		Writer(final Path path) throws IOException {
+			this.path = path;
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			buffer.position(headerSize); // Zeros until the header is written.
+		}
+		
+		/**
+		 * Appends a code.
+		 * 
+		 * @param high
+		 *            packed code high half
+		 * @param low
+		 *            packed code low half, the code must be greater than the
+		 *            previous one
+		 * @throws IOException
+		 *             if the file cannot be written
+		 */
+		void add(final long high, final long low) throws IOException {
+			if ((size > 0) && (PackedFiscalCode.compare(lastHigh, lastLow, high, low) >= 0)) {
+				failed = true;
+				throw new IllegalArgumentException("Codes out of order"); //$NON-NLS-1$
+			}
+			failed = true; // Until the code is buffered.
+			if ((size % fenceInterval) == 0) {
+				final int fence = (int) (size / fenceInterval);
+				if (fence == fenceHighs.length) {
+					fenceHighs = Arrays.copyOf(fenceHighs, 2 * fence);
+					fenceLows = Arrays.copyOf(fenceLows, 2 * fence);
+				}
+				fenceHighs[fence] = high;
+				fenceLows[fence] = low;
+			}
+			write(high, low);
+			lastHigh = high;
+			lastLow = low;
+			size++;
+			failed = false;
+		}
+		
+		/**
+		 * Writes the fence pointers and the header, forces and closes the
+		 * file; if an {@link #add(long, long)} failed, deletes it instead.
+		 * 
+		 * @throws IOException
+		 *             if the file cannot be written
+		 */
+		@Override
+		public void close() throws IOException {
+			if (failed) {
+				try {
+					channel.close();
+				} finally {
+					Files.deleteIfExists(path);
+				}
+				return;
+			}
+			try {
+				final int fencesCount = (int) ((size + fenceInterval - 1) / fenceInterval);
+				for (int i = 0; i < fencesCount; i++) {
+					write(fenceHighs[i], fenceLows[i]);
+				}
+				flush();
+				final ByteBuffer header = ByteBuffer.allocate(headerSize);
+				header.putLong(magic).putInt(formatVersion).putInt(fenceInterval).putLong(size).putLong(headerSize + (size * codeSize));
+				header.clear();
+				while (header.hasRemaining()) {
+					channel.write(header, header.position());
+				}
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+		}
+		
+		/**
+		 * Writes the buffer.
+		 * 
+		 * @throws IOException
+		 *             if the file cannot be written
+		 */
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+		
+		/**
+		 * @return number of codes written
+		 */
+		long size() {
+			return size;
+		}
+		
+		/**
+		 * Buffers a code, writing the buffer when full.
+		 * 
+		 * @param high
+		 *            packed code high half
+		 * @param low
+		 *            packed code low half
+		 * @throws IOException
+		 *             if the file cannot be written
+		 */
+		private void write(final long high, final long low) throws IOException {
+			if (buffer.remaining() < codeSize) {
+				flush();
+			}
+			buffer.putLong(high).putLong(low);
+		}
+		
+	}
+	
+}
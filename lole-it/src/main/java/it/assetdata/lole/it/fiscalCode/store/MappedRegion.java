@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.store;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A file region memory-mapped in chunks, as a single {@link MappedByteBuffer}
+ * cannot be larger than 2 GB.<br/>
+ * Chunks are 1 GB, so values aligned to their size never straddle two of
+ * them. Values are big endian, so files are portable. Absolute reads and
+ * writes need no synchronization, as long as values written by a thread are
+ * published to the readers by other means, like a {@code volatile} size.
+ */
+@ThreadSafe
+final class MappedRegion {
+	
+	/**
+	 * Chunk size, as a power of two.
+	 */
+	private static final int chunkSizeLog2 = 30;
+	
+	/**
+	 * Mask of positions inside a chunk.
+	 */
+	private static final long chunkMask = (1L << chunkSizeLog2) - 1;
+	
+	/**
+	 * Mapped chunks.
+	 */
+	private final MappedByteBuffer[] chunks;
+	
+	/**
+	 * Mapped size, in bytes.
+	 */
+	private final long size;
+	
+	/**
+	 * Constructor, maps the region.
+	 * 
+	 * @param channel
+	 *            file to map, it can be closed afterwards
+	 * @param mode
+	 *            mapping mode
+	 * @param position
+	 *            region start in the file
+	 * @param size
+	 *            region size, in bytes
+	 * @throws IOException
+	 *             if the region cannot be mapped
+	 */
+	MappedRegion(final FileChannel channel, final FileChannel.MapMode mode, final long position, final long size) throws IOException {
+		this.size = size;
+		chunks = new MappedByteBuffer[(int) ((size + chunkMask) >>> chunkSizeLog2)];
+		for (int i = 0; i < chunks.length; i++) {
+			final long chunkPosition = (long) i << chunkSizeLog2;
+			chunks[i] = channel.map(mode, position + chunkPosition, Math.min(size - chunkPosition, 1L << chunkSizeLog2));
+		}
+	}
+	
+	/**
+	 * Forces the mapped content to the storage device, see
+	 * {@link MappedByteBuffer#force()}.
+	 */
+	void force() {
+		for (final MappedByteBuffer chunk : chunks) {
+			chunk.force();
+		}
+	}
+	
+	/**
+	 * @param position
+	 *            of the value
+	 * @return {@code byte} value
+	 */
+	byte getByte(final long position) {
+		return chunks[(int) (position >>> chunkSizeLog2)].get((int) (position & chunkMask));
+	}
+	
+	/**
+	 * @param position
+	 *            of the value, aligned to its size
+	 * @return {@code int} value
+	 */
+	int getInt(final long position) {
+		return chunks[(int) (position >>> chunkSizeLog2)].getInt((int) (position & chunkMask));
+	}
+	
+	/**
+	 * @param position
+	 *            of the value, aligned to its size
+	 * @return {@code long} value
+	 */
+	long getLong(final long position) {
+		return chunks[(int) (position >>> chunkSizeLog2)].getLong((int) (position & chunkMask));
+	}
+	
+	/**
+	 * @param position
+	 *            of the value
+	 * @param value
+	 *            {@code byte} value
+	 */
+	void putByte(final long position, final byte value) {
+		chunks[(int) (position >>> chunkSizeLog2)].put((int) (position & chunkMask), value);
+	}
+	
+	/**
+	 * @param position
+	 *            of the value, aligned to its size
+	 * @param value
+	 *            {@code int} value
+	 */
+	void putInt(final long position, final int value) {
+		chunks[(int) (position >>> chunkSizeLog2)].putInt((int) (position & chunkMask), value);
+	}
+	
+	/**
+	 * @param position
+	 *            of the value, aligned to its size
+	 * @param value
+	 *            {@code long} value
+	 */
+	void putLong(final long position, final long value) {
+		chunks[(int) (position >>> chunkSizeLog2)].putLong((int) (position & chunkMask), value);
+	}
+	
+	/**
+	 * @return mapped size, in bytes
+	 */
+	long size() {
+		return size;
+	}
+	
+}
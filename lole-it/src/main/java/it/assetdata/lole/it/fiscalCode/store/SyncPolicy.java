@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.fiscalCode.store;
+
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * When a {@link FiscalCodeRecordStore} forces appended records to the
+ * storage device.<br/>
+ * Forcing after every record bounds appends to the device flush rate, a few
+ * hundreds or thousands per second, so records are forced in batches: after
+ * a number of records, after an amount of time, or whichever comes first.
+ * Records appended after the last force can be lost on an operating system
+ * crash or a power loss, never on a JVM crash, as they are already in the
+ * page cache.
+ */
+@Immutable
+public final class SyncPolicy {
+	
+	/**
+	 * Leaves flushing to the operating system, segments are only forced when
+	 * full and on close.
+	 */
+	public static final SyncPolicy osManaged = new SyncPolicy(0, 0);
+	
+	/**
+	 * Maximum time records stay not forced, in milliseconds; {@code 0} for no
+	 * limit.
+	 */
+	private final long maxUnforcedMillis;
+	
+	/**
+	 * Maximum number of records not forced; {@code 0} for no limit.
+	 */
+	private final int maxUnforcedRecords;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxUnforcedRecords
+	 *            maximum number of records not forced, {@code 1} to force
+	 *            every record; {@code 0} for no limit
+	 * @param maxUnforcedMillis
+	 *            maximum time records stay not forced, in milliseconds, checked
+	 *            on append; {@code 0} for no limit
+	 */
+	public SyncPolicy(final int maxUnforcedRecords, final long maxUnforcedMillis) {
+		if ((maxUnforcedRecords < 0) || (maxUnforcedMillis < 0)) {
+			throw new IllegalArgumentException();
+		}
+		this.maxUnforcedMillis = maxUnforcedMillis;
+		this.maxUnforcedRecords = maxUnforcedRecords;
+	}
+	
+	/**
+	 * @return maximum time records stay not forced, in milliseconds;
+	 *         {@code 0} for no limit
+	 */
+	public long getMaxUnforcedMillis() {
+		return maxUnforcedMillis;
+	}
+	
+	/**
+	 * @return maximum number of records not forced; {@code 0} for no limit
+	 */
+	public int getMaxUnforcedRecords() {
+		return maxUnforcedRecords;
+	}
+	
+	/**
+	 * Checks if records must be forced.
+	 * 
+	 * @param unforcedRecords
+	 *            number of records not forced, at least {@code 1}
+	 * @param firstUnforcedNanos
+	 *            {@link System#nanoTime()} of the append of the first record
+	 *            not forced
+	 * @return {@code true} if records must be forced now
+	 */
+	boolean isDue(final int unforcedRecords, final long firstUnforcedNanos) {
+		if ((maxUnforcedRecords != 0) && (unforcedRecords >= maxUnforcedRecords)) {
+			return true;
+		}
+		return (maxUnforcedMillis != 0) && ((System.nanoTime() - firstUnforcedNanos) >= (maxUnforcedMillis * 1000000L));
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
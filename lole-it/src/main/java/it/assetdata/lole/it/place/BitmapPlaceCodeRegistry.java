@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.place;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * This implementation keeps one bit per possible place code key, see
+ * {@link PlaceCodes}, in about 3 KB.<br/>
+ * Lookups are a shift and a mask, with no allocation.<br/>
+ * Validity dates are ignored: existing place codes are valid on any day, see
+ * {@link PlaceCodeValidityIndex} to take them into account.
+ */
+@Immutable
+public class BitmapPlaceCodeRegistry implements PlaceCodeRegistry {
+	
+	/**
+	 * Bit {@code key % 64} of word {@code key / 64} is set if the place code
+	 * of {@code key} exists.
+	 */
+	private final long[] bitmap;
+	
+	/**
+	 * Number of existing place codes.
+	 */
+	private final int size;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param records
+	 *            existing places, duplicates are ignored
+	 */
+	public BitmapPlaceCodeRegistry(final Iterable<PlaceCodeRecord> records) {
+		bitmap = new long[(PlaceCodes.keysCount + 63) >>> 6];
+		int count = 0;
+		for (final PlaceCodeRecord record : records) {
+			final int key = PlaceCodes.pack(record.getPlaceCode());
+			final long bit = 1L << key;
+			if ((bitmap[key >>> 6] & bit) == 0) {
+				bitmap[key >>> 6] |= bit;
+				count++;
+			}
+		}
+		size = count;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(final @Nullable CharSequence placeCode) {
+		return contains(PlaceCodes.pack(placeCode));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(final int key) {
+		return (0 <= key) && (key < PlaceCodes.keysCount) && ((bitmap[key >>> 6] & (1L << key)) != 0);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation ignores {@code epochDay}.
+	 */
+	@Override
+	public boolean contains(final int key, final int epochDay) {
+		return contains(key);
+	}
+	
+	/**
+	 * @return number of existing place codes
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
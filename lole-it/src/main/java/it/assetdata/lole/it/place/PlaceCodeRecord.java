@@ -0,0 +1,193 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.place;
+
+import java.io.Serializable;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.joda.time.LocalDate;
+
+/**
+ * A place of birth as listed in place codes data files, see
+ * {@link PlaceCodeRecordReader}.
+ */
+@Immutable
+public class PlaceCodeRecord implements Serializable {
+	
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Place name, like {@code ROMA} or {@code FRANCIA}.
+	 */
+	private final @Nullable
+	String name;
+	
+	/**
+	 * Place code, like {@code H501}.
+	 */
+	private final String placeCode;
+	
+	/**
+	 * Province abbreviation, like {@code RM}, {@code EE} for foreign states.
+	 */
+	private final @Nullable
+	String province;
+	
+	/**
+	 * First day the place code is valid, {@code null} if valid since ever.
+	 */
+	private final @Nullable
+	LocalDate validFrom;
+	
+	/**
+	 * Last day the place code is valid, {@code null} if still valid.
+	 */
+	private final @Nullable
+	LocalDate validTo;
+	
+	/**
+	 * Constructor for places valid since ever and still valid.
+	 * 
+	 * @param placeCode
+	 *            place code
+	 * @param name
+	 *            place name
+	 * @param province
+	 *            province abbreviation
+	 * @throws IllegalArgumentException
+	 *             if {@code placeCode} is not shaped like a place code, see
+	 *             {@link PlaceCodes#pack(CharSequence)}
+	 */
+	public PlaceCodeRecord(final String placeCode, final @Nullable String name, final @Nullable String province) throws IllegalArgumentException {
+		this(placeCode, name, province, null, null);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param placeCode
+	 *            place code
+	 * @param name
+	 *            place name
+	 * @param province
+	 *            province abbreviation
+	 * @param validFrom
+	 *            first day the place code is valid, {@code null} if valid since
+	 *            ever
+	 * @param validTo
+	 *            last day the place code is valid, {@code null} if still valid
+	 * @throws IllegalArgumentException
+	 *             if {@code placeCode} is not shaped like a place code, see
+	 *             {@link PlaceCodes#pack(CharSequence)}
+	 */
+	public PlaceCodeRecord(final String placeCode, final @Nullable String name, final @Nullable String province, final @Nullable LocalDate validFrom, final @Nullable LocalDate validTo) throws IllegalArgumentException {
+		if (PlaceCodes.pack(placeCode) == PlaceCodes.invalid) {
+			throw new IllegalArgumentException("Invalid place code: " + placeCode); //$NON-NLS-1$
+		}
+		this.name = name;
+		this.placeCode = placeCode;
+		this.province = province;
+		this.validFrom = validFrom;
+		this.validTo = validTo;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(final @Nullable Object obj) {
+		if (obj == null) {
+			return false;
+		} else if (obj == this) {
+			return true;
+		} else if (!(obj instanceof PlaceCodeRecord)) {
+			return false;
+		} else {
+			final PlaceCodeRecord o = (PlaceCodeRecord) obj;
+			return java.util.Objects.equals(name, o.name)
+					&& java.util.Objects.equals(placeCode, o.placeCode)
+					&& java.util.Objects.equals(province, o.province)
+					&& java.util.Objects.equals(validFrom, o.validFrom)
+					&& java.util.Objects.equals(validTo, o.validTo);
+		}
+	}
+	
+	/**
+	 * @return place name, like {@code ROMA} or {@code FRANCIA}
+	 */
+	public @Nullable
+	String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return place code, like {@code H501}
+	 */
+	public String getPlaceCode() {
+		return placeCode;
+	}
+	
+	/**
+	 * @return province abbreviation, like {@code RM}, {@code EE} for foreign
+	 *         states
+	 */
+	public @Nullable
+	String getProvince() {
+		return province;
+	}
+	
+	/**
+	 * @return first day the place code is valid, {@code null} if valid since
+	 *         ever
+	 */
+	public @Nullable
+	LocalDate getValidFrom() {
+		return validFrom;
+	}
+	
+	/**
+	 * @return last day the place code is valid, {@code null} if still valid
+	 */
+	public @Nullable
+	LocalDate getValidTo() {
+		return validTo;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		return java.util.Objects.hash(name, placeCode, province, validFrom, validTo);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
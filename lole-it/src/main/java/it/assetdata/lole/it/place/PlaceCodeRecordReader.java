@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.place;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.joda.time.LocalDate;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Reads place codes data files.<br/>
+ * They are UTF-8 text files with one place per line, made of {@code ';'}
+ * separated columns:
+ * 
+ * <pre>
+ * PLACE_CODE;NAME;PROVINCE;VALID_FROM;VALID_TO
+ * </pre>
+ * 
+ * Only the place code is mandatory, trailing columns can be omitted and
+ * columns this reader does not know about are ignored. Validity dates are ISO
+ * ({@code yyyy-MM-dd}) and inclusive, empty if valid since ever or still
+ * valid. Empty lines and lines
+ * starting with {@code '#'} are skipped. For example:
+ * 
+ * <pre>
+ * # Municipalities
+ * H501;ROMA;RM
+ * F205;MILANO;MI
+ * # Foreign states
+ * Z110;FRANCIA;EE
+ * </pre>
+ */
+@Immutable
+public class PlaceCodeRecordReader {
+	
+	/**
+	 * Comment lines start character.
+	 */
+	private static final char commentCharacter = '#';
+	
+	/**
+	 * Columns separator.
+	 */
+	private static final String separator = ";"; //$NON-NLS-1$
+	
+	/**
+	 * @param columns
+	 *            of a line
+	 * @param index
+	 *            of the column
+	 * @return trimmed column value, {@code null} if missing or empty
+	 */
+	private static @Nullable
+	String column(final String[] columns, final int index) {
+		if (columns.length <= index) {
+			return null;
+		}
+		final String column = columns[index].trim();
+		return column.isEmpty() ? null : column;
+	}
+	
+	/**
+	 * @param columns
+	 *            of a line
+	 * @param index
+	 *            of the column
+	 * @return date column value, {@code null} if missing or empty
+	 * @throws IllegalArgumentException
+	 *             if the column is not an ISO date
+	 */
+	private static @Nullable
+	LocalDate date(final String[] columns, final int index) {
+		final String column = column(columns, index);
+		return (column == null) ? null : LocalDate.parse(column);
+	}
+	
+	/**
+	 * Reads all the places of {@code reader}.
+	 * 
+	 * @param reader
+	 *            data file content, closed by the caller
+	 * @return places in file order
+	 * @throws IOException
+	 *             if {@code reader} cannot be read or a line is not valid
+	 */
+	public ImmutableList<PlaceCodeRecord> read(final Reader reader) throws IOException {
+		final BufferedReader bufferedReader = new BufferedReader(reader);
+		final List<PlaceCodeRecord> records = new ArrayList<PlaceCodeRecord>();
+		int lineNumber = 0;
+		for (String line = bufferedReader.readLine(); line != null; line = bufferedReader.readLine()) {
+			lineNumber++;
+			final String trimmedLine = line.trim();
+			if (trimmedLine.isEmpty() || (trimmedLine.charAt(0) == commentCharacter)) {
+				continue;
+			}
+			final String[] columns = trimmedLine.split(separator, -1);
+			final String placeCode = columns[0].trim();
+			if (PlaceCodes.pack(placeCode) == PlaceCodes.invalid) {
+				throw new IOException("Invalid place code at line " + lineNumber + ": " + line); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			final LocalDate validFrom;
+			final LocalDate validTo;
+			try {
+				validFrom = date(columns, 3);
+				validTo = date(columns, 4);
+			} catch (final IllegalArgumentException e) {
+				throw new IOException("Invalid validity date at line " + lineNumber + ": " + line, e); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			if ((validFrom != null) && (validTo != null) && validTo.isBefore(validFrom)) {
+				throw new IOException("Validity ends before it starts at line " + lineNumber + ": " + line); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			records.add(new PlaceCodeRecord(placeCode, column(columns, 1), column(columns, 2), validFrom, validTo));
+		}
+		return ImmutableList.copyOf(records);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.place;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Registry of existing place codes, to tell real places of birth from codes
+ * that are only well formed.
+ */
+@ThreadSafe
+public interface PlaceCodeRegistry {
+	
+	/**
+	 * Checks if {@code placeCode} exists.
+	 * 
+	 * @param placeCode
+	 *            to check
+	 * @return {@code true} if it exists, {@code false} otherwise
+	 */
+	public boolean contains(final @Nullable CharSequence placeCode);
+	
+	/**
+	 * Checks if the place code packed by {@link PlaceCodes#pack(CharSequence)}
+	 * into {@code key} exists.
+	 * 
+	 * @param key
+	 *            to check, any value
+	 * @return {@code true} if it exists, {@code false} otherwise
+	 */
+	public boolean contains(final int key);
+	
+	/**
+	 * Checks if the place code packed by {@link PlaceCodes#pack(CharSequence)}
+	 * into {@code key} was valid on {@code epochDay}, for places that merge,
+	 * split or are created over time.
+	 * 
+	 * @param key
+	 *            to check, any value
+	 * @param epochDay
+	 *            day, see {@link PlaceCodes#epochDay(int, int, int)}
+	 * @return {@code true} if it was valid, {@code false} otherwise
+	 */
+	public boolean contains(final int key, final int epochDay);
+	
+}
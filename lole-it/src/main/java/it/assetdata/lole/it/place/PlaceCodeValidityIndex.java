@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.place;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.joda.time.LocalDate;
+
+/**
+ * This implementation knows when every place code was valid, as places merge,
+ * split or are created over time.<br/>
+ * Validity intervals are kept in primitive arrays, sorted and merged per
+ * place code: {@link #contains(int, int)} is a binary search among the
+ * intervals of a single place code, so {@code O(log k)} with {@code k}
+ * usually 1 or 2, with no allocation.
+ */
+@Immutable
+public class PlaceCodeValidityIndex implements PlaceCodeRegistry {
+	
+	/**
+	 * Intervals of key {@code k} are from {@code offsets[k]} included to
+	 * {@code offsets[k + 1]} excluded.
+	 */
+	private final int[] offsets;
+	
+	/**
+	 * Validity intervals first epoch days, ascending per key.
+	 */
+	private final int[] validFroms;
+	
+	/**
+	 * Validity intervals last epoch days, included.
+	 */
+	private final int[] validTos;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param records
+	 *            places with their validity dates, overlapping intervals of a
+	 *            place code are merged
+	 */
+	public PlaceCodeValidityIndex(final Iterable<PlaceCodeRecord> records) {
+		final int[] counts = new int[PlaceCodes.keysCount + 1];
+		int recordsCount = 0;
+		for (final PlaceCodeRecord record : records) {
+			counts[PlaceCodes.pack(record.getPlaceCode()) + 1]++;
+			recordsCount++;
+		}
+		for (int key = 0; key < PlaceCodes.keysCount; key++) {
+			counts[key + 1] += counts[key];
+		}
+		final long[] intervals = new long[recordsCount]; // Valid from in the high half, so they sort by it.
+		final int[] positions = Arrays.copyOf(counts, PlaceCodes.keysCount);
+		for (final PlaceCodeRecord record : records) {
+			final int validFrom = epochDay(record.getValidFrom(), Integer.MIN_VALUE);
+			final int validTo = epochDay(record.getValidTo(), Integer.MAX_VALUE);
+			intervals[positions[PlaceCodes.pack(record.getPlaceCode())]++] = ((long) validFrom << 32) | (validTo & 0xFFFFFFFFL);
+		}
+		offsets = new int[PlaceCodes.keysCount + 1];
+		final int[] froms = new int[recordsCount];
+		final int[] tos = new int[recordsCount];
+		int size = 0;
+		for (int key = 0; key < PlaceCodes.keysCount; key++) {
+			offsets[key] = size;
+			Arrays.sort(intervals, counts[key], counts[key + 1]);
+			for (int i = counts[key]; i < counts[key + 1]; i++) {
+				final int validFrom = (int) (intervals[i] >> 32);
+				final int validTo = (int) intervals[i];
+				if ((size > offsets[key]) && ((validFrom <= tos[size - 1]) || (validFrom == tos[size - 1] + 1))) {
+					tos[size - 1] = Math.max(tos[size - 1], validTo); // Overlapping or adjacent.
+				} else {
+					froms[size] = validFrom;
+					tos[size] = validTo;
+					size++;
+				}
+			}
+		}
+		offsets[PlaceCodes.keysCount] = size;
+		validFroms = Arrays.copyOf(froms, size);
+		validTos = Arrays.copyOf(tos, size);
+	}
+	
+	/**
+	 * @param date
+	 *            to convert
+	 * @param defaultEpochDay
+	 *            returned if {@code date} is {@code null}
+	 * @return epoch day of {@code date}
+	 */
+	private static int epochDay(final @Nullable LocalDate date, final int defaultEpochDay) {
+		return (date == null) ? defaultEpochDay : PlaceCodes.epochDay(date.getYear(), date.getMonthOfYear(), date.getDayOfMonth());
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(final @Nullable CharSequence placeCode) {
+		return contains(PlaceCodes.pack(placeCode));
+	}
+	
+	/**
+	 * Checks if {@code placeCode} was valid on {@code date}.
+	 * 
+	 * @param placeCode
+	 *            to check
+	 * @param date
+	 *            day
+	 * @return {@code true} if it was valid, {@code false} otherwise or if
+	 *         {@code date} is {@code null}
+	 */
+	public boolean contains(final @Nullable CharSequence placeCode, final @Nullable LocalDate date) {
+		return (date != null) && contains(PlaceCodes.pack(placeCode), epochDay(date, 0));
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation checks if the place code has been valid on any day.
+	 */
+	@Override
+	public boolean contains(final int key) {
+		return (0 <= key) && (key < PlaceCodes.keysCount) && (offsets[key] < offsets[key + 1]);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(final int key, final int epochDay) {
+		if ((key < 0) || (PlaceCodes.keysCount <= key)) {
+			return false;
+		}
+		int low = offsets[key];
+		int high = offsets[key + 1] - 1;
+		while (low <= high) { // Last interval starting on or before epochDay.
+			final int middle = (low + high) >>> 1;
+			if (validFroms[middle] <= epochDay) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return (high >= offsets[key]) && (epochDay <= validTos[high]);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+}
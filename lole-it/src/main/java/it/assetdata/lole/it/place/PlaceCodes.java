@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.place;
+
+import javax.annotation.Nullable;
+
+/**
+ * Packs place codes into {@code int} keys and back.<br/>
+ * A place code is an upper case letter followed by three digits: Italian
+ * municipalities use {@code A} to {@code M}, foreign states {@code Z}. The
+ * key is {@code (letter - 'A') * 1000 + digits}, so every code has a key
+ * from {@code 0} to {@link #keysCount} {@code - 1} that can directly index
+ * arrays and bitmaps.
+ */
+public final class PlaceCodes {
+	
+	/**
+	 * Days from 0000-03-01 to 1970-01-01 in the proleptic Gregorian calendar.
+	 */
+	private static final int epochDayOffset = 719468;
+	
+	/**
+	 * Value of things that are not place codes.
+	 */
+	public static final int invalid = -1;
+	
+	/**
+	 * Number of possible keys.
+	 */
+	public static final int keysCount = 26 * 1000;
+	
+	/**
+	 * Place code length.
+	 */
+	public static final int placeCodeLength = 4;
+	
+	/**
+	 * Not instantiable.
+	 */
+	private PlaceCodes() {
+		// Utility class.
+	}
+	
+	/**
+	 * Converts a date of the proleptic Gregorian calendar to the number of
+	 * days since 1970-01-01 without allocating, so bulk loops can check place
+	 * code validity dates on plain {@code int}s.
+	 * 
+	 * @param year
+	 *            year
+	 * @param month
+	 *            month, from 1 to 12
+	 * @param day
+	 *            day of month, from 1
+	 * @return days since 1970-01-01, negative before it
+	 */
+	public static int epochDay(final int year, final int month, final int day) {
+		final int marchYear = (month <= 2) ? (year - 1) : year; // Years starting in March put leap days last.
+		final int era = ((marchYear >= 0) ? marchYear : (marchYear - 399)) / 400;
+		final int yearOfEra = marchYear - (era * 400);
+		final int dayOfYear = ((((153 * (month + ((month > 2) ? -3 : 9))) + 2) / 5) + day) - 1;
+		final int dayOfEra = ((yearOfEra * 365) + (yearOfEra / 4)) - (yearOfEra / 100) + dayOfYear;
+		return ((era * 146097) + dayOfEra) - epochDayOffset;
+	}
+	
+	/**
+	 * Packs {@code placeCode} without allocating.
+	 * 
+	 * @param placeCode
+	 *            to pack, any value
+	 * @return key of {@code placeCode}, or {@link #invalid} if it is not
+	 *         shaped like a place code
+	 */
+	public static int pack(final @Nullable CharSequence placeCode) {
+		if ((placeCode == null) || (placeCode.length() != placeCodeLength)) {
+			return invalid;
+		}
+		return pack(placeCode.charAt(0), placeCode.charAt(1), placeCode.charAt(2), placeCode.charAt(3));
+	}
+	
+	/**
+	 * Packs the place code made of the given characters without allocating.
+	 * 
+	 * @param letter
+	 *            first place code character
+	 * @param hundreds
+	 *            second place code character
+	 * @param tens
+	 *            third place code character
+	 * @param units
+	 *            fourth place code character
+	 * @return key of the place code, or {@link #invalid} if it is not shaped
+	 *         like a place code
+	 */
+	public static int pack(final int letter, final int hundreds, final int tens, final int units) {
+		if ((letter < 'A') || ('Z' < letter)
+				|| (hundreds < '0') || ('9' < hundreds)
+				|| (tens < '0') || ('9' < tens)
+				|| (units < '0') || ('9' < units)) {
+			return invalid;
+		}
+		return ((letter - 'A') * 1000) + ((hundreds - '0') * 100) + ((tens - '0') * 10) + (units - '0');
+	}
+	
+	/**
+	 * Writes the place code of {@code key} into {@code destination}.
+	 * 
+	 * @param key
+	 *            from {@code 0} to {@link #keysCount} {@code - 1}
+	 * @param destination
+	 *            where to write the {@link #placeCodeLength} characters
+	 * @param offset
+	 *            first index of {@code destination} to write
+	 */
+	public static void unpack(final int key, final char[] destination, final int offset) {
+		final int digits = key % 1000;
+		destination[offset] = (char) ('A' + (key / 1000));
+		destination[offset + 1] = (char) ('0' + (digits / 100));
+		destination[offset + 2] = (char) ('0' + ((digits / 10) % 10));
+		destination[offset + 3] = (char) ('0' + (digits % 10));
+	}
+	
+	/**
+	 * Returns the place code of {@code key}.
+	 * 
+	 * @param key
+	 *            from {@code 0} to {@link #keysCount} {@code - 1}
+	 * @return place code
+	 */
+	public static String unpack(final int key) {
+		final char[] placeCode = new char[placeCodeLength];
+		unpack(key, placeCode, 0);
+		return String.valueOf(placeCode);
+	}
+	
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.place;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Resolves place names, municipalities or foreign states, to place codes.<br/>
+ * Names are normalized by removing accents, folding case and dropping any
+ * character other than letters and digits, so {@code "L'Aquila"},
+ * {@code "L AQUILA"} and {@code "laquila"} are the same name, as are
+ * {@code "Cantù"} and {@code "CANTU'"}.<br/>
+ * Normalized names are kept in a trie flattened into primitive arrays, with
+ * the children of every node contiguous and sorted: lookups normalize on the
+ * fly and walk the trie with no allocation.<br/>
+ * A name shared by places with different place codes in different
+ * provinces needs the province to be resolved; a name shared by places with
+ * different place codes in the same province, like a suppressed municipality
+ * and a newer one, resolves to the one still valid, if it is the only one.
+ * Records of the same place code never compete, as with a municipality moved
+ * to a new province.
+ */
+@Immutable
+public class PlaceNameResolver {
+	
+	/**
+	 * Normalized value of characters that are dropped from names.
+	 */
+	private static final char dropped = 0;
+	
+	/**
+	 * Normalized characters of the first {@link #normalizationTableLength}
+	 * characters: upper case ASCII letters and digits, {@link #dropped} or
+	 * {@link #rejected}.
+	 */
+	private static final char[] normalizationTable;
+	
+	/**
+	 * Characters that {@link #normalizationTable} covers: Latin-1 and Latin
+	 * Extended-A.
+	 */
+	private static final int normalizationTableLength = 0x180;
+	
+	/**
+	 * Value of names that cannot be resolved, not found or ambiguous.
+	 */
+	public static final int notFound = PlaceCodes.invalid;
+	
+	/**
+	 * Normalized value of characters that no name can contain.
+	 */
+	private static final char rejected = 1;
+	
+	static {
+		normalizationTable = new char[normalizationTableLength];
+		for (char c = 0; c < normalizationTableLength; c++) {
+			final char base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0);
+			if (('A' <= base) && (base <= 'Z')) {
+				normalizationTable[c] = base;
+			} else if (('a' <= base) && (base <= 'z')) {
+				normalizationTable[c] = (char) (base - 'a' + 'A');
+			} else if (('0' <= base) && (base <= '9')) {
+				normalizationTable[c] = base;
+			} else {
+				normalizationTable[c] = Character.isLetterOrDigit(c) ? rejected : dropped;
+			}
+		}
+	}
+	
+	/**
+	 * Children of node {@code n} are from {@code childOffsets[n]} included to
+	 * {@code childOffsets[n + 1]} excluded, the root is node {@code 0}.
+	 */
+	private final int[] childOffsets;
+	
+	/**
+	 * Whether the places of entries are still valid.
+	 */
+	private final boolean[] entryCurrents;
+	
+	/**
+	 * Entries of node {@code n} are from {@code entryOffsets[n]} included to
+	 * {@code entryOffsets[n + 1]} excluded.
+	 */
+	private final int[] entryOffsets;
+	
+	/**
+	 * Place codes of entries, shared so lookups do not allocate.
+	 */
+	private final String[] entryPlaceCodes;
+	
+	/**
+	 * Normalized provinces of entries, packed by {@link #packProvince(CharSequence)}.
+	 */
+	private final int[] entryProvinces;
+	
+	/**
+	 * Normalized character leading to every node.
+	 */
+	private final char[] labels;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param records
+	 *            places, the ones with no name are ignored
+	 */
+	public PlaceNameResolver(final Iterable<PlaceCodeRecord> records) {
+		final Node root = new Node();
+		int entriesCount = 0;
+		int nodesCount = 1;
+		for (final PlaceCodeRecord record : records) {
+			final String name = record.getName();
+			if (name == null) {
+				continue;
+			}
+			Node node = root;
+			for (int i = 0; i < name.length(); i++) {
+				final char c = normalize(name.charAt(i));
+				if (c == rejected) {
+					throw new IllegalArgumentException("Unsupported character in place name: " + name); //$NON-NLS-1$
+				} else if (c != dropped) {
+					Node child = node.children.get(Character.valueOf(c));
+					if (child == null) {
+						child = new Node();
+						node.children.put(Character.valueOf(c), child);
+						nodesCount++;
+					}
+					node = child;
+				}
+			}
+			if ((node != root) && node.add(record)) {
+				entriesCount++;
+			}
+		}
+		childOffsets = new int[nodesCount + 1];
+		entryCurrents = new boolean[entriesCount];
+		entryOffsets = new int[nodesCount + 1];
+		entryPlaceCodes = new String[entriesCount];
+		entryProvinces = new int[entriesCount];
+		labels = new char[nodesCount];
+		final List<Node> queue = new ArrayList<Node>(nodesCount); // Breadth first, so children are contiguous.
+		queue.add(root);
+		int entry = 0;
+		for (int n = 0; n < nodesCount; n++) {
+			final Node node = queue.get(n);
+			childOffsets[n] = queue.size();
+			for (final Map.Entry<Character, Node> child : node.children.entrySet()) {
+				labels[queue.size()] = child.getKey().charValue();
+				queue.add(child.getValue());
+			}
+			entryOffsets[n] = entry;
+			for (final PlaceCodeRecord record : node.records) {
+				entryCurrents[entry] = record.getValidTo() == null;
+				entryPlaceCodes[entry] = record.getPlaceCode();
+				entryProvinces[entry] = packProvince(record.getProvince());
+				entry++;
+			}
+		}
+		childOffsets[nodesCount] = nodesCount;
+		entryOffsets[nodesCount] = entry;
+	}
+	
+	/**
+	 * @param c
+	 *            character of a name
+	 * @return normalized character, {@link #dropped} or {@link #rejected}
+	 */
+	private static char normalize(final char c) {
+		if (c < normalizationTableLength) {
+			return normalizationTable[c];
+		}
+		return Character.isLetterOrDigit(c) ? rejected : dropped;
+	}
+	
+	/**
+	 * Packs a province abbreviation, normalized like names, into an
+	 * {@code int}.
+	 * 
+	 * @param province
+	 *            to pack
+	 * @return packed province, {@code 0} if {@code province} is {@code null}
+	 *         or empty
+	 */
+	private static int packProvince(final @Nullable CharSequence province) {
+		if (province == null) {
+			return 0;
+		}
+		int packed = 0;
+		for (int i = 0; i < province.length(); i++) {
+			final char c = normalize(province.charAt(i));
+			if (c == rejected) {
+				return -1;
+			} else if (c != dropped) {
+				packed = (packed << 6) | (c - '0' + 1); // Digits and letters are in 1 to 43.
+				if (packed >= (1 << 24)) {
+					return -1; // Longer than province abbreviations.
+				}
+			}
+		}
+		return packed;
+	}
+	
+	/**
+	 * Resolves {@code name} to its place code.
+	 * 
+	 * @param name
+	 *            place name, any form
+	 * @param province
+	 *            province abbreviation, {@code null} if not known
+	 * @return place code, {@code null} if not found or ambiguous
+	 */
+	public @Nullable
+	String resolve(final CharSequence name, final @Nullable CharSequence province) {
+		final int entry = resolveEntry(name, province);
+		return (entry < 0) ? null : entryPlaceCodes[entry];
+	}
+	
+	/**
+	 * @param name
+	 *            place name, any form
+	 * @param province
+	 *            province abbreviation, {@code null} if not known
+	 * @return entry of the place, {@code -1} if not found or ambiguous
+	 */
+	private int resolveEntry(final CharSequence name, final @Nullable CharSequence province) {
+		int node = 0;
+		for (int i = 0; i < name.length(); i++) {
+			final char c = normalize(name.charAt(i));
+			if (c == rejected) {
+				return -1;
+			} else if (c != dropped) {
+				int child = childOffsets[node];
+				final int end = childOffsets[node + 1];
+				while ((child < end) && (labels[child] < c)) {
+					child++;
+				}
+				if ((child == end) || (labels[child] != c)) {
+					return -1;
+				}
+				node = child;
+			}
+		}
+		final int packedProvince = packProvince(province);
+		if (packedProvince < 0) {
+			return -1;
+		}
+		int found = -1;
+		boolean manyCodes = false;
+		int current = -1;
+		boolean manyCurrentCodes = false;
+		boolean manyProvinces = false;
+		for (int entry = entryOffsets[node]; entry < entryOffsets[node + 1]; entry++) {
+			if ((packedProvince == 0) || (packedProvince == entryProvinces[entry])) {
+				for (int other = entryOffsets[node]; other < entry; other++) { // Entries of a name are a few.
+					if (((packedProvince == 0) || (packedProvince == entryProvinces[other])) && !entryPlaceCodes[other].equals(entryPlaceCodes[entry])) {
+						manyCodes = true;
+						manyProvinces |= entryProvinces[other] != entryProvinces[entry];
+					}
+				}
+				found = entry;
+				if (entryCurrents[entry]) {
+					manyCurrentCodes |= (current >= 0) && !entryPlaceCodes[current].equals(entryPlaceCodes[entry]);
+					current = entry;
+				}
+			}
+		}
+		if (!manyCodes) {
+			return found; // Records of the same place, possibly moved to another province.
+		}
+		return ((current >= 0) && !manyCurrentCodes && !manyProvinces) ? current : -1;
+	}
+	
+	/**
+	 * Resolves {@code name} to the key of its place code, see
+	 * {@link PlaceCodes}.
+	 * 
+	 * @param name
+	 *            place name, any form
+	 * @param province
+	 *            province abbreviation, {@code null} if not known
+	 * @return place code key, {@link #notFound} if not found or ambiguous
+	 */
+	public int resolveKey(final CharSequence name, final @Nullable CharSequence province) {
+		final int entry = resolveEntry(name, province);
+		return (entry < 0) ? notFound : PlaceCodes.pack(entryPlaceCodes[entry]);
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+	/**
+	 * Trie node used while building.
+	 */
+	private static final class Node {
+		
+		/**
+		 * Children by normalized character, sorted.
+		 */
+		final Map<Character, Node> children = new TreeMap<Character, Node>();
+		
+		/**
+		 * Places with the name ending here, one per place code and province.
+		 */
+		final List<PlaceCodeRecord> records = new ArrayList<PlaceCodeRecord>(1);
+		
+		/**
+		 * Adds a place with the name ending here, unless one with the same
+		 * place code and province is already there; the one still valid is
+		 * kept.
+		 * 
+		 * @param record
+		 *            place to add
+		 * @return {@code true} if a new entry was added
+		 */
+		boolean add(final PlaceCodeRecord record) {
+			final int province = packProvince(record.getProvince());
+			for (int i = 0; i < records.size(); i++) {
+				final PlaceCodeRecord other = records.get(i);
+				if (other.getPlaceCode().equals(record.getPlaceCode()) && (packProvince(other.getProvince()) == province)) {
+					if (record.getValidTo() == null) {
+						records.set(i, record);
+					}
+					return false;
+				}
+			}
+			records.add(record);
+			return true;
+		}
+		
+	}
+	
+}
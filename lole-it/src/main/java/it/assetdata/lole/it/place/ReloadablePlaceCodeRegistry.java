@@ -0,0 +1,217 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.assetdata.lole.it.place;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.joda.time.DateTime;
+
+/**
+ * This implementation loads place codes from a versioned data file and can
+ * reload it while running, for services that cannot be restarted when place
+ * codes change.<br/>
+ * The data file is read by {@link PlaceCodeRecordReader} and its first line
+ * must be a version header, like:
+ * 
+ * <pre>
+ * #version 2026.2
+ * H501;ROMA;RM
+ * ...
+ * </pre>
+ * 
+ * Every load builds a new immutable {@link PlaceCodeValidityIndex} and
+ * publishes it with a single atomic reference swap: lookups never lock and
+ * see either the old or the new data, never a mix. If a reload fails the
+ * current data stays active.
+ */
+@ThreadSafe
+public class ReloadablePlaceCodeRegistry implements PlaceCodeRegistry {
+	
+	/**
+	 * Version header prefix.
+	 */
+	private static final String versionPrefix = "#version "; //$NON-NLS-1$
+	
+	/**
+	 * Data file.
+	 */
+	private final Path path;
+	
+	/**
+	 * Data file reader.
+	 */
+	private final PlaceCodeRecordReader placeCodeRecordReader = new PlaceCodeRecordReader();
+	
+	/**
+	 * Active data.
+	 */
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>();
+	
+	/**
+	 * Constructor, loads {@code path}.
+	 * 
+	 * @param path
+	 *            UTF-8 data file
+	 * @throws IOException
+	 *             if {@code path} cannot be read or is not valid
+	 */
+	public ReloadablePlaceCodeRegistry(final Path path) throws IOException {
+		this.path = path;
+		reload();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(final @Nullable CharSequence placeCode) {
+		return snapshot.get().index.contains(placeCode);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(final int key) {
+		return snapshot.get().index.contains(key);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(final int key, final int epochDay) {
+		return snapshot.get().index.contains(key, epochDay);
+	}
+	
+	/**
+	 * @return when the active data has been loaded
+	 */
+	public DateTime getLoadedAt() {
+		return snapshot.get().loadedAt;
+	}
+	
+	/**
+	 * @return how long reading the data file and building the active data
+	 *         took, in milliseconds
+	 */
+	public long getLoadMillis() {
+		return snapshot.get().loadMillis;
+	}
+	
+	/**
+	 * @return version of the active data
+	 */
+	public String getVersion() {
+		return snapshot.get().version;
+	}
+	
+	/**
+	 * Reads the data file again and, if its version changed, makes it the
+	 * active data.<br/>
+	 * Lookups keep running on the previous data while the new one is built.
+	 * 
+	 * @return {@code true} if the active data changed, {@code false} if the
+	 *         data file has the same version
+	 * @throws IOException
+	 *             if the data file cannot be read or is not valid, the
+	 *             active data does not change
+	 */
+	public synchronized boolean reload() throws IOException {
+		final long start = System.nanoTime();
+		final Snapshot current = snapshot.get();
+		final String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		final int headerEnd = content.indexOf('\n');
+		final String header = (headerEnd < 0) ? content : content.substring(0, headerEnd);
+		final String version = header.startsWith(versionPrefix) ? header.substring(versionPrefix.length()).trim() : ""; //$NON-NLS-1$
+		if (version.isEmpty()) {
+			throw new IOException("Missing version header in " + path); //$NON-NLS-1$
+		} else if ((current != null) && current.version.equals(version)) {
+			return false;
+		}
+		final PlaceCodeValidityIndex index = new PlaceCodeValidityIndex(placeCodeRecordReader.read(new StringReader(content)));
+		snapshot.set(new Snapshot(index, new DateTime(), (System.nanoTime() - start) / 1000000L, version));
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}<br/>
+	 * <br/>
+	 * This implementation uses reflection.
+	 */
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+	
+	/**
+	 * Data loaded from a version of the data file.
+	 */
+	@Immutable
+	private static final class Snapshot {
+		
+		/**
+		 * Place codes.
+		 */
+		final PlaceCodeValidityIndex index;
+		
+		/**
+		 * When it has been loaded.
+		 */
+		final DateTime loadedAt;
+		
+		/**
+		 * How long loading took, in milliseconds.
+		 */
+		final long loadMillis;
+		
+		/**
+		 * Data file version.
+		 */
+		final String version;
+		
+		/**
+		 * Constructor.
+		 * 
+		 * @param index
+		 *            place codes
+		 * @param loadedAt
+		 *            when it has been loaded
+		 * @param loadMillis
+		 *            how long loading took, in milliseconds
+		 * @param version
+		 *            data file version
+		 */
+		Snapshot(final PlaceCodeValidityIndex index, final DateTime loadedAt, final long loadMillis, final String version) {
+			this.index = index;
+			this.loadedAt = loadedAt;
+			this.loadMillis = loadMillis;
+			this.version = version;
+		}
+		
+	}
+	
+}
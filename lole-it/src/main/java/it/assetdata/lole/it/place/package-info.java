@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012 Asset Data (info--at--assetdata.it)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Contains places of birth codes (Belfiore codes, "codici catastali") used
+ * by {@link it.assetdata.lole.it.fiscalCode.FiscalCode} and related classes.
+ * <br/>
+ * No place codes data file is bundled, as the list changes over time: get
+ * one from the official sources, read it with
+ * {@link it.assetdata.lole.it.place.PlaceCodeRecordReader} and build a
+ * {@link it.assetdata.lole.it.place.PlaceCodeRegistry} from its records, for
+ * example:
+ * 
+ * <pre>
+ * try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+ * 	registry = new PlaceCodeValidityIndex(new PlaceCodeRecordReader().read(reader));
+ * }
+ * </pre>
+ */
+@javax.annotation.ParametersAreNonnullByDefault
+package it.assetdata.lole.it.place;
\ No newline at end of file